@@ -0,0 +1,86 @@
+package org.railwaystations.api.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.railwaystations.api.model.Circle;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationFilter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filters of the station list endpoints over the whole dataset, one operation checks every station
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StationFilterBenchmark {
+
+    @Benchmark
+    public int appliesToPhotographer(final StationsDataset dataset) {
+        final String photographer = dataset.getTopPhotographer();
+        int count = 0;
+        for (final Station station : dataset.getStations()) {
+            if (station.appliesTo(true, photographer, null, null, null, null)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int appliesToMaxDistance(final StationsDataset dataset) {
+        int count = 0;
+        for (final Station station : dataset.getStations()) {
+            if (station.appliesTo(null, null, 50, StationsDataset.CENTER_LAT, StationsDataset.CENTER_LON, true)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The radius filter of the endpoints: the chord prefilter of {@link Circle}, with the Haversine fallback
+     * close to the boundary, compared to the plain Haversine check of {@link #appliesToMaxDistance}
+     */
+    @Benchmark
+    public int filterAppliesToMaxDistance(final StationsDataset dataset) {
+        final StationFilter filter = new StationFilter(null, null, 50, StationsDataset.CENTER_LAT, StationsDataset.CENTER_LON, true, null);
+        int count = 0;
+        for (final Station station : dataset.getStations()) {
+            if (filter.appliesTo(station)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int circleContains(final StationsDataset dataset) {
+        final Circle circle = new Circle(StationsDataset.CENTER_LAT, StationsDataset.CENTER_LON, 50);
+        int count = 0;
+        for (final Station station : dataset.getStations()) {
+            if (circle.contains(station)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public double distanceTo(final StationsDataset dataset) {
+        double sum = 0;
+        for (final Station station : dataset.getStations()) {
+            sum += station.distanceTo(StationsDataset.CENTER_LAT, StationsDataset.CENTER_LON);
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,177 @@
+package org.railwaystations.api.benchmark;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.railwaystations.api.db.StationDao;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Photo;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.User;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the whole dataset from an in-memory H2 database through the {@link StationDao.StationMapper},
+ * like the reload of the in-memory snapshot, and through the former mapping of a new photographer per row as the baseline
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StationMapperBenchmark {
+
+    @Benchmark
+    public List<Station> map(final StationsDatabase database) {
+        return database.readAll(new StationDao.StationMapper());
+    }
+
+    @Benchmark
+    public List<Station> mapPerRow(final StationsDatabase database) {
+        return database.readAll(new PerRowStationMapper());
+    }
+
+    /**
+     * Heap retained by the mapped stations, measured once with full garbage collections around the mapping.
+     * H2 hands out the strings it stores, so this is a lower bound of what the rows of a remote database retain.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public List<Station> retainedHeap(final StationsDatabase database, final Footprint footprint) {
+        return retainedHeap(database, new StationDao.StationMapper(), footprint);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public List<Station> retainedHeapPerRow(final StationsDatabase database, final Footprint footprint) {
+        return retainedHeap(database, new PerRowStationMapper(), footprint);
+    }
+
+    private static List<Station> retainedHeap(final StationsDatabase database, final RowMapper<Station> mapper, final Footprint footprint) {
+        final long before = usedHeap();
+        final List<Station> stations = database.readAll(mapper);
+        footprint.retainedBytesPerStation = (usedHeap() - before) / Math.max(1, stations.size());
+        return stations;
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long retainedBytesPerStation;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytesPerStation = 0;
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class StationsDatabase {
+
+        private static final int BATCH_SIZE = 10_000;
+
+        private Handle handle;
+
+        @Setup(Level.Trial)
+        public void setUp(final StationsDataset dataset) {
+            handle = Jdbi.create("jdbc:h2:mem:stations" + dataset.size + ";DB_CLOSE_DELAY=-1").open();
+            handle.execute("create table countries (id char(2) primary key, active boolean)");
+            handle.execute("create table stations (countryCode char(2), id varchar(30), DS100 varchar(30), title varchar(100),"
+                    + " lat double, lon double, active boolean, primary key (countryCode, id))");
+            handle.execute("create table photos (countryCode char(2), id varchar(30), url varchar(200), license varchar(100),"
+                    + " createdAt bigint, photographerId int, primary key (countryCode, id))");
+            handle.execute("create table users (id int primary key, name varchar(50), url varchar(1024), license varchar(50),"
+                    + " anonymous boolean)");
+            handle.execute("insert into countries (id, active) values ('de', true)");
+
+            insert(dataset.getPhotographers(), "insert into users (id, name, url, license, anonymous) values (?, ?, ?, ?, ?)",
+                    (batch, user) -> batch.add(user.getId(), user.getName(), user.getUrl(), user.getLicense(), user.isAnonymous()));
+            insert(dataset.getStations(), "insert into stations (countryCode, id, DS100, title, lat, lon, active) values (?, ?, ?, ?, ?, ?, ?)",
+                    (batch, station) -> batch.add(station.getKey().getCountry(), station.getKey().getId(), station.getDS100(),
+                            station.getTitle(), station.getCoordinates().getLat(), station.getCoordinates().getLon(), station.isActive()));
+            insert(dataset.getStations().stream().filter(Station::hasPhoto).collect(Collectors.toList()),
+                    "insert into photos (countryCode, id, url, license, createdAt, photographerId) values (?, ?, ?, ?, ?, ?)",
+                    (batch, station) -> batch.add(station.getKey().getCountry(), station.getKey().getId(), station.getPhotoUrl(),
+                            station.getLicense(), station.getCreatedAt(), station.getPhotographerId()));
+        }
+
+        private <T> void insert(final List<T> rows, final String sql, final BiConsumer<PreparedBatch, T> binder) {
+            for (int start = 0; start < rows.size(); start += BATCH_SIZE) {
+                final PreparedBatch batch = handle.prepareBatch(sql);
+                rows.subList(start, Math.min(rows.size(), start + BATCH_SIZE)).forEach(row -> binder.accept(batch, row));
+                batch.execute();
+            }
+        }
+
+        public List<Station> readAll(final RowMapper<Station> mapper) {
+            return handle.createQuery(StationDao.JOIN_QUERY + " where c.active = true")
+                    .map(mapper)
+                    .list();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            handle.execute("drop all objects");
+            handle.close();
+        }
+
+    }
+
+    /**
+     * The mapping before the photographers and licenses were shared: a new photographer and new strings for every row
+     */
+    private static class PerRowStationMapper implements RowMapper<Station> {
+
+        @Override
+        public Station map(final ResultSet rs, final StatementContext ctx) throws SQLException {
+            final Station.Key key = new Station.Key(rs.getString("countryCode"), rs.getString("id"));
+            final String photoUrl = rs.getString("url");
+            Photo photo = null;
+            if (photoUrl != null) {
+                final User photographer = new User(rs.getString("name"), rs.getString("photographerUrl"), rs.getString("photographerLicense"),
+                        rs.getInt("photographerId"), null, true, rs.getBoolean("anonymous"), null, null, false, null, false);
+                photo = new Photo(key, photoUrl, photographer, rs.getLong("createdAt"), rs.getString("license"));
+            }
+            return new Station(key, rs.getString("title"),
+                    new Coordinates(rs.getDouble("lat"), rs.getDouble("lon")),
+                    rs.getString("DS100"), photo, rs.getBoolean("active"));
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.railwaystations.api.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Photo;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic stations spread over Germany, 60 % of them with a photo of one of 500 photographers.
+ * Always generated from the same seed, so runs are comparable.
+ */
+@State(Scope.Benchmark)
+public class StationsDataset {
+
+    public static final double CENTER_LAT = 51.0;
+    public static final double CENTER_LON = 10.0;
+
+    private static final int PHOTOGRAPHERS = 500;
+    private static final String[] LICENSES = {"CC0 1.0 Universell (CC0 1.0)", "CC BY-SA 4.0", "CC BY-NC 4.0 International"};
+    private static final String[] WORDS = {"Hauptbahnhof", "Süd", "Nord", "Mitte", "Ost", "West", "Müllheim", "Görlitz",
+            "Frankfurt (Main)", "Bad", "Neustadt", "Kirchheim", "Straße", "Weißenburg", "Haltepunkt"};
+
+    @Param({"1000", "10000", "50000", "500000"})
+    public int size;
+
+    private List<User> photographers;
+    private List<Station> stations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(size);
+        photographers = new ArrayList<>(PHOTOGRAPHERS);
+        for (int id = 1; id <= PHOTOGRAPHERS; id++) {
+            photographers.add(new User("Photographer " + id, "https://example.com/" + id, LICENSES[id % LICENSES.length],
+                    id, null, true, id % 20 == 0, null, null, false, null, false));
+        }
+        stations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final Station.Key key = new Station.Key("de", String.valueOf(8000000 + i));
+            final String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            final Coordinates coordinates = new Coordinates(47.3 + random.nextDouble() * 7.7, 5.9 + random.nextDouble() * 9.1);
+            Photo photo = null;
+            if (random.nextInt(10) < 6) {
+                // a few prolific photographers, like in the real data
+                final User photographer = photographers.get((int) (Math.pow(random.nextDouble(), 3) * PHOTOGRAPHERS));
+                photo = new Photo(key, "/de/" + key.getId() + ".jpg", photographer,
+                        1500000000000L + random.nextInt(Integer.MAX_VALUE) * 100L, photographer.getLicense());
+            }
+            stations.add(new Station(key, title, coordinates, i % 3 == 0 ? "DS" + i : null, photo, random.nextInt(20) != 0));
+        }
+    }
+
+    public List<User> getPhotographers() {
+        return photographers;
+    }
+
+    public List<Station> getStations() {
+        return stations;
+    }
+
+    /**
+     * Name of the photographer with the most photos
+     */
+    public String getTopPhotographer() {
+        return photographers.get(0).getDisplayName();
+    }
+
+}
@@ -0,0 +1,90 @@
+package org.railwaystations.api.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+import org.railwaystations.api.StationsColumns;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Station;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained heap per station of a country partition, measured with JOL: the map of stations the snapshot held before,
+ * compared to the column store. The result is the bytesPerStation counter, the time is only that of one build.
+ * Both are built from copies of the stations with strings of their own, like rows read from the database.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class StationsFootprintBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long bytesPerStation;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesPerStation = 0;
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class Rows {
+
+        private List<Station> stations;
+
+        @Setup(Level.Trial)
+        public void setUp(final StationsDataset dataset) {
+            stations = new ArrayList<>(dataset.getStations().size());
+            for (final Station station : dataset.getStations()) {
+                stations.add(new Station(station.getKey(), copy(station.getTitle()),
+                        new Coordinates(station.getCoordinates().getLat(), station.getCoordinates().getLon()),
+                        copy(station.getDS100()), station.isActive(), station.getPhotographerId(), copy(station.getPhotographer()),
+                        copy(station.getPhotographerUrl()), copy(station.getPhotoUrl()), copy(station.getLicense()),
+                        copy(station.getLicenseUrl()), station.getCreatedAt()));
+            }
+        }
+
+        @SuppressWarnings("PMD.StringInstantiation")
+        private static String copy(final String value) {
+            return value != null ? new String(value) : null;
+        }
+
+    }
+
+    @Benchmark
+    public Map<Station.Key, Station> stationsMap(final Rows rows, final Footprint footprint) {
+        final Map<Station.Key, Station> stations = new HashMap<>();
+        rows.stations.forEach(station -> stations.put(station.getKey(), station));
+        footprint.bytesPerStation = GraphLayout.parseInstance(stations).totalSize() / rows.stations.size();
+        return stations;
+    }
+
+    @Benchmark
+    public StationsColumns columns(final Rows rows, final Footprint footprint) {
+        final StationsColumns columns = new StationsColumns(rows.stations);
+        footprint.bytesPerStation = GraphLayout.parseInstance(columns).totalSize() / rows.stations.size();
+        return columns;
+    }
+
+}
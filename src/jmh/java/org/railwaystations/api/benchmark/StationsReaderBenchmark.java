@@ -0,0 +1,66 @@
+package org.railwaystations.api.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.railwaystations.api.writer.StationsBinaryDecoder;
+import org.railwaystations.api.writer.StationsBinaryWriter;
+import org.railwaystations.api.writer.StationsJsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reads the whole dataset as a client would, from the JSON and from the binary station list
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StationsReaderBenchmark {
+
+    @Benchmark
+    public JsonNode json(final StationLists lists) throws IOException {
+        return lists.mapper.readTree(lists.json);
+    }
+
+    @Benchmark
+    public List<StationsBinaryDecoder.Record> binary(final StationLists lists) throws IOException {
+        return new StationsBinaryDecoder(lists.binary).decode();
+    }
+
+    @State(Scope.Benchmark)
+    public static class StationLists {
+
+        private final ObjectMapper mapper = Jackson.newObjectMapper();
+        private byte[] json;
+        private byte[] binary;
+
+        @Setup(Level.Trial)
+        public void setUp(final StationsDataset dataset) throws IOException {
+            final ByteArrayOutputStream jsonStream = new ByteArrayOutputStream();
+            new StationsJsonWriter(mapper).writeTo(dataset.getStations().stream(), Stream.class, null, null, null, null, jsonStream);
+            json = jsonStream.toByteArray();
+            final ByteArrayOutputStream binaryStream = new ByteArrayOutputStream();
+            new StationsBinaryWriter().writeTo(dataset.getStations().stream(), Stream.class, null, null, null, null, binaryStream);
+            binary = binaryStream.toByteArray();
+        }
+
+    }
+
+}
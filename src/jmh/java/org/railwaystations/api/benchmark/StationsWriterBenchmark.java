@@ -0,0 +1,68 @@
+package org.railwaystations.api.benchmark;
+
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.writer.StationsBinaryWriter;
+import org.railwaystations.api.writer.StationsGpxWriter;
+import org.railwaystations.api.writer.StationsJsonWriter;
+import org.railwaystations.api.writer.StationsTxtWriter;
+
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole dataset in each format of the station list endpoints to a discarding stream,
+ * the 10k dataset gives the costs per 10k stations.
+ * The JSON writer uses the object mapper of Dropwizard, like the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StationsWriterBenchmark {
+
+    private final StationsJsonWriter jsonWriter = new StationsJsonWriter(Jackson.newObjectMapper());
+    private final StationsGpxWriter gpxWriter = new StationsGpxWriter();
+    private final StationsTxtWriter txtWriter = new StationsTxtWriter();
+    private final StationsBinaryWriter binaryWriter = new StationsBinaryWriter();
+
+    @Benchmark
+    public void json(final StationsDataset dataset) throws IOException {
+        write(jsonWriter, dataset);
+    }
+
+    @Benchmark
+    public void gpx(final StationsDataset dataset) throws IOException {
+        write(gpxWriter, dataset);
+    }
+
+    @Benchmark
+    public void txt(final StationsDataset dataset) throws IOException {
+        write(txtWriter, dataset);
+    }
+
+    @Benchmark
+    public void binary(final StationsDataset dataset) throws IOException {
+        write(binaryWriter, dataset);
+    }
+
+    private void write(final MessageBodyWriter<Stream<Station>> writer, final StationsDataset dataset) throws IOException {
+        // a new stream each time, as the JSON writer closes it
+        writer.writeTo(dataset.getStations().stream(), Stream.class, null, null, null, null, OutputStream.nullOutputStream());
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.db.SequenceDao;
+
+/**
+ * Hands out the values of a database sequence from blocks reserved in one transaction, so most allocations
+ * don't touch the database. Values are unique across nodes, but not gapless: unused values of a block are lost on restart.
+ */
+public class IdBlockAllocator {
+
+    private final SequenceDao sequenceDao;
+    private final String sequence;
+    private final int blockSize;
+
+    private long next;
+    private long end;
+
+    public IdBlockAllocator(final SequenceDao sequenceDao, final String sequence, final int blockSize) {
+        this.sequenceDao = sequenceDao;
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+    }
+
+    public synchronized long next() {
+        if (next == end) {
+            next = sequenceDao.allocate(sequence, blockSize);
+            end = next + blockSize;
+        }
+        return next++;
+    }
+
+}
@@ -0,0 +1,214 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.db.InboxDao;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.InboxEntry;
+import org.railwaystations.api.model.Station;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of the pending inbox entries by station key and by a grid of their uploaded coordinates,
+ * so conflict checks don't have to query the inbox table. It is loaded at startup and kept up to date by
+ * running all inserts and completions of inbox entries through it. Those of other instances are picked up
+ * by the periodic {@link #reload()}.
+ */
+public class PendingInboxIndex {
+
+    private static final double NEARBY_DISTANCE = 0.5;
+
+    /**
+     * Larger than the nearby distance in both directions, so the 3x3 cells around a cell contain all nearby entries
+     */
+    private static final double CELL_DEGREES = 0.01;
+
+    private final InboxDao inboxDao;
+
+    private final Map<Integer, Pending> entries = new HashMap<>();
+    private final Map<Station.Key, Set<Integer>> byStation = new HashMap<>();
+    private final Map<Long, Set<Integer>> byCell = new HashMap<>();
+
+    private final Object reloadLock = new Object();
+    /**
+     * The adds (with an entry) and removes (without) since the running reload started to read, null if none is running
+     */
+    private List<Map.Entry<Integer, Pending>> recorded;
+
+    public PendingInboxIndex(final InboxDao inboxDao) {
+        this.inboxDao = inboxDao;
+        reload();
+    }
+
+    /**
+     * Replaces the index with the pending entries of the inbox table. The inbox is read without blocking the checks,
+     * the inserts and completions meanwhile are recorded and applied again to the loaded entries.
+     */
+    public void reload() {
+        synchronized (reloadLock) {
+            synchronized (this) {
+                recorded = new ArrayList<>();
+            }
+            final List<InboxEntry> pending;
+            try {
+                pending = inboxDao.findPendingInboxIndexEntries();
+            } catch (final RuntimeException e) {
+                synchronized (this) {
+                    recorded = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                final List<Map.Entry<Integer, Pending>> meanwhile = recorded;
+                recorded = null;
+                entries.clear();
+                byStation.clear();
+                byCell.clear();
+                pending.forEach(entry -> add(entry.getId(), Pending.of(entry)));
+                for (final Map.Entry<Integer, Pending> mutation : meanwhile) {
+                    if (mutation.getValue() != null) {
+                        add(mutation.getKey(), mutation.getValue());
+                    } else {
+                        remove(mutation.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the new inbox entry and adds it to the index
+     * @return the id of the new entry
+     */
+    public Integer insert(final InboxEntry inboxEntry) {
+        final Integer id = inboxDao.insert(inboxEntry);
+        if (id != null) {
+            add(id, Pending.of(inboxEntry));
+        }
+        return id;
+    }
+
+    public void done(final int id) {
+        inboxDao.done(id);
+        remove(id);
+    }
+
+    public void reject(final int id, final String rejectReason) {
+        inboxDao.reject(id, rejectReason);
+        remove(id);
+    }
+
+    public synchronized int countPendingInboxEntries() {
+        return entries.size();
+    }
+
+    /**
+     * Counts the pending entries for the station
+     * @param id of an entry to exclude, may be null
+     */
+    public synchronized int countPendingInboxEntriesForStation(final Integer id, final Station.Key key) {
+        final Set<Integer> ids = byStation.getOrDefault(key, Collections.emptySet());
+        return id != null && ids.contains(id) ? ids.size() - 1 : ids.size();
+    }
+
+    /**
+     * Counts the pending entries uploaded within 0.5 km, by the simple pythagoras (only valid for a few km) of the former query
+     * @param id of an entry to exclude, may be null
+     */
+    public synchronized int countPendingInboxEntriesForNearbyCoordinates(final Integer id, final Coordinates coordinates) {
+        final long latCell = cell(coordinates.getLat());
+        final long lonCell = cell(coordinates.getLon());
+        int count = 0;
+        for (long lat = latCell - 1; lat <= latCell + 1; lat++) {
+            for (long lon = lonCell - 1; lon <= lonCell + 1; lon++) {
+                for (final Integer candidate : byCell.getOrDefault(cellKey(lat, lon), Collections.emptySet())) {
+                    if (!candidate.equals(id) && isNearby(entries.get(candidate).coordinates, coordinates)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean isNearby(final Coordinates a, final Coordinates b) {
+        return Math.sqrt(Math.pow(71.5 * (a.getLon() - b.getLon()), 2) + Math.pow(111.3 * (a.getLat() - b.getLat()), 2)) < NEARBY_DISTANCE;
+    }
+
+    private synchronized void add(final int id, final Pending pending) {
+        if (recorded != null) {
+            recorded.add(new AbstractMap.SimpleImmutableEntry<>(id, pending));
+        }
+        if (entries.put(id, pending) != null) {
+            return;
+        }
+        if (pending.key != null) {
+            byStation.computeIfAbsent(pending.key, k -> new HashSet<>()).add(id);
+        }
+        if (pending.coordinates != null) {
+            byCell.computeIfAbsent(cellKey(pending.coordinates), k -> new HashSet<>()).add(id);
+        }
+    }
+
+    private synchronized void remove(final int id) {
+        if (recorded != null) {
+            recorded.add(new AbstractMap.SimpleImmutableEntry<>(id, null));
+        }
+        final Pending pending = entries.remove(id);
+        if (pending == null) {
+            return;
+        }
+        if (pending.key != null) {
+            removeFrom(byStation, pending.key, id);
+        }
+        if (pending.coordinates != null) {
+            removeFrom(byCell, cellKey(pending.coordinates), id);
+        }
+    }
+
+    private static <K> void removeFrom(final Map<K, Set<Integer>> index, final K key, final int id) {
+        final Set<Integer> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static long cell(final double degrees) {
+        return (long) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(final Coordinates coordinates) {
+        return cellKey(cell(coordinates.getLat()), cell(coordinates.getLon()));
+    }
+
+    private static long cellKey(final long latCell, final long lonCell) {
+        return (latCell << 32) | (lonCell & 0xffffffffL);
+    }
+
+    private static final class Pending {
+
+        private final Station.Key key;
+        private final Coordinates coordinates;
+
+        private Pending(final Station.Key key, final Coordinates coordinates) {
+            this.key = key;
+            this.coordinates = coordinates;
+        }
+
+        private static Pending of(final InboxEntry inboxEntry) {
+            final Station.Key key = inboxEntry.getCountryCode() != null && inboxEntry.getStationId() != null
+                    ? new Station.Key(inboxEntry.getCountryCode(), inboxEntry.getStationId()) : null;
+            final Coordinates coordinates = inboxEntry.getCoordinates() != null && !inboxEntry.getCoordinates().hasZeroCoords()
+                    ? inboxEntry.getCoordinates() : null;
+            return new Pending(key, coordinates);
+        }
+
+    }
+
+}
@@ -0,0 +1,241 @@
+package org.railwaystations.api;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+/**
+ * Immutable sorted map as a persistent AVL tree. A change copies only the nodes on the path to the changed key
+ * and shares all others with the previous version, so it costs O(log n) and every published version stays unchanged.
+ * Keys and values must not be null.
+ */
+public final class PersistentTreeMap<K extends Comparable<? super K>, V> implements Iterable<Map.Entry<K, V>> {
+
+    private final Node<K, V> root;
+    private final int size;
+
+    private PersistentTreeMap(final Node<K, V> root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static <K extends Comparable<? super K>, V> PersistentTreeMap<K, V> empty() {
+        return new PersistentTreeMap<>(null, 0);
+    }
+
+    /**
+     * Builds a balanced tree of the given entries in linear time after sorting them
+     */
+    public static <K extends Comparable<? super K>, V> PersistentTreeMap<K, V> of(final Map<K, V> entries) {
+        final List<Map.Entry<K, V>> sorted = new ArrayList<>(entries.entrySet());
+        sorted.sort(Map.Entry.comparingByKey());
+        return new PersistentTreeMap<>(build(sorted, 0, sorted.size()), sorted.size());
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> build(final List<Map.Entry<K, V>> sorted, final int from, final int to) {
+        if (from >= to) {
+            return null;
+        }
+        final int middle = (from + to) >>> 1;
+        final Map.Entry<K, V> entry = sorted.get(middle);
+        return new Node<>(entry.getKey(), Objects.requireNonNull(entry.getValue()), build(sorted, from, middle), build(sorted, middle + 1, to));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V get(final K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            final int comparison = key.compareTo(node.key);
+            if (comparison == 0) {
+                return node.value;
+            }
+            node = comparison < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public V getOrDefault(final K key, final V defaultValue) {
+        final V value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public PersistentTreeMap<K, V> put(final K key, final V value) {
+        Objects.requireNonNull(value);
+        return new PersistentTreeMap<>(insert(root, key, value), get(key) != null ? size : size + 1);
+    }
+
+    public PersistentTreeMap<K, V> remove(final K key) {
+        if (get(key) == null) {
+            return this;
+        }
+        return new PersistentTreeMap<>(delete(root, key), size - 1);
+    }
+
+    /**
+     * Maps the key to the result of the function on its current value (null if absent), removes it if the result is null
+     * @return this map if the value stays the same instance
+     */
+    public PersistentTreeMap<K, V> compute(final K key, final BiFunction<? super K, ? super V, ? extends V> remapping) {
+        final V old = get(key);
+        final V value = remapping.apply(key, old);
+        if (value == old) {
+            return this;
+        }
+        return value != null ? put(key, value) : remove(key);
+    }
+
+    /**
+     * Iterates over all entries in key order
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator<>(root, null);
+    }
+
+    /**
+     * Iterates in key order over the entries with keys greater than or equal to the given one
+     */
+    public Iterator<Map.Entry<K, V>> iterator(final K from) {
+        return new EntryIterator<>(root, from);
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> insert(final Node<K, V> node, final K key, final V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null);
+        }
+        final int comparison = key.compareTo(node.key);
+        if (comparison < 0) {
+            return balance(node.key, node.value, insert(node.left, key, value), node.right);
+        }
+        if (comparison > 0) {
+            return balance(node.key, node.value, node.left, insert(node.right, key, value));
+        }
+        return new Node<>(node.key, value, node.left, node.right);
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> delete(final Node<K, V> node, final K key) {
+        final int comparison = key.compareTo(node.key);
+        if (comparison < 0) {
+            return balance(node.key, node.value, delete(node.left, key), node.right);
+        }
+        if (comparison > 0) {
+            return balance(node.key, node.value, node.left, delete(node.right, key));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node<K, V> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.key, successor.value, node.left, deleteFirst(node.right));
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> deleteFirst(final Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, deleteFirst(node.left), node.right);
+    }
+
+    /**
+     * Creates the node with the given children, rotated if their heights differ by two after a single insert or delete
+     */
+    private static <K extends Comparable<? super K>, V> Node<K, V> balance(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            final Node<K, V> pivot = left.right;
+            return new Node<>(pivot.key, pivot.value, new Node<>(left.key, left.value, left.left, pivot.left),
+                    new Node<>(key, value, pivot.right, right));
+        }
+        if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            final Node<K, V> pivot = right.left;
+            return new Node<>(pivot.key, pivot.value, new Node<>(key, value, left, pivot.left),
+                    new Node<>(right.key, right.value, pivot.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    private static int height(final Node<?, ?> node) {
+        return node != null ? node.height : 0;
+    }
+
+    private static final class Node<K, V> {
+
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+
+        private Node(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+
+    }
+
+    private static final class EntryIterator<K extends Comparable<? super K>, V> implements Iterator<Map.Entry<K, V>> {
+
+        /**
+         * The nodes still to visit on the path from the root, the next one on top
+         */
+        private final Deque<Node<K, V>> path = new ArrayDeque<>();
+
+        private EntryIterator(final Node<K, V> root, final K from) {
+            Node<K, V> node = root;
+            while (node != null) {
+                if (from == null || from.compareTo(node.key) <= 0) {
+                    path.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            final Node<K, V> node = path.pop();
+            for (Node<K, V> child = node.right; child != null; child = child.left) {
+                path.push(child);
+            }
+            return new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+        }
+
+    }
+
+}
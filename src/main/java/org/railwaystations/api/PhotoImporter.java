@@ -3,8 +3,6 @@ package org.railwaystations.api;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.railwaystations.api.db.CountryDao;
-import org.railwaystations.api.db.InboxDao;
-import org.railwaystations.api.db.PhotoDao;
 import org.railwaystations.api.db.UserDao;
 import org.railwaystations.api.model.Country;
 import org.railwaystations.api.model.Photo;
@@ -34,24 +32,22 @@ public class PhotoImporter {
 
     private final StationsRepository repository;
     private final UserDao userDao;
-    private final PhotoDao photoDao;
     private final CountryDao countryDao;
     private final Monitor monitor;
     private final File uploadDir;
     private final File photoDir;
-    private final InboxDao inboxDao;
+    private final PendingInboxIndex pendingInbox;
 
-    public PhotoImporter(final StationsRepository repository, final UserDao userDao, final PhotoDao photoDao,
+    public PhotoImporter(final StationsRepository repository, final UserDao userDao,
                          final CountryDao countryDao, final Monitor monitor, final String uploadDir,
-                         final String photoDir, final InboxDao inboxDao) {
+                         final String photoDir, final PendingInboxIndex pendingInbox) {
         this.repository = repository;
         this.userDao = userDao;
-        this.photoDao = photoDao;
         this.countryDao = countryDao;
         this.monitor = monitor;
         this.uploadDir = new File(uploadDir);
         this.photoDir = new File(photoDir);
-        this.inboxDao = inboxDao;
+        this.pendingInbox = pendingInbox;
     }
 
     public void importPhotosAsync() {
@@ -156,12 +152,12 @@ public class PhotoImporter {
                 }
 
                 if (photosToImport.entrySet().stream().anyMatch(e -> e.getKey() != importFile && e.getValue().getStationKey().equals(photo.getStationKey()))
-                    || inboxDao.countPendingInboxEntriesForStation(null, photo.getStationKey().getCountry(), photo.getStationKey().getId()) > 0) {
+                    || pendingInbox.countPendingInboxEntriesForStation(null, photo.getStationKey()) > 0) {
                     report.add(new ReportEntry(true, countryCode, importFile.getAbsolutePath(), "conflict with another photo in inbox"));
                     continue;
                 }
 
-                photoDao.insert(photo);
+                repository.insertPhoto(photo);
 
                 moveFile(importFile, countryDir, photo.getStationKey().getId(), ImageUtil.JPG);
                 LOG.info("Photo " + importFile.getAbsolutePath() + " imported");
@@ -0,0 +1,130 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.model.Station;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * The most recent photo imports, ordered by their creation time and station key.
+ * A station is contained once, with its latest import, which is found by the index of the station keys.
+ * When full, the oldest import is dropped and the buffer no longer covers its timestamp,
+ * so queries reaching back that far have to go to the database.
+ */
+public class RecentImports {
+
+    private final int capacity;
+    private final NavigableSet<Import> imports = new TreeSet<>();
+    private final Map<Station.Key, Import> byKey = new HashMap<>();
+    private long coveredAfter = Long.MIN_VALUE;
+
+    public RecentImports(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Fills the buffer with the imports of the given stations
+     * @param stations the newest imports from the database, newest first and at most capacity
+     * @param complete whether the stations are all imports, otherwise only the imports after the oldest one are covered
+     */
+    public static RecentImports of(final int capacity, final List<Station> stations, final boolean complete) {
+        final RecentImports recentImports = new RecentImports(capacity);
+        for (final Station station : stations) {
+            recentImports.put(new Import(station.getCreatedAt(), station.getKey()));
+        }
+        if (!complete && !stations.isEmpty()) {
+            recentImports.coveredAfter = recentImports.imports.first().createdAt;
+        }
+        return recentImports;
+    }
+
+    public synchronized void add(final Station.Key key, final long createdAt) {
+        remove(key);
+        if (createdAt <= coveredAfter) {
+            return;
+        }
+        // an import older than a full buffer must not evict a newer one, it is just no longer covered
+        if (imports.size() == capacity && createdAt <= imports.first().createdAt) {
+            coveredAfter = createdAt;
+            return;
+        }
+        if (imports.size() == capacity) {
+            final Import oldest = imports.pollFirst();
+            byKey.remove(oldest.key);
+            coveredAfter = oldest.createdAt;
+        }
+        put(new Import(createdAt, key));
+    }
+
+    public synchronized void remove(final Station.Key key) {
+        final Import removed = byKey.remove(key);
+        if (removed != null) {
+            imports.remove(removed);
+        }
+    }
+
+    /**
+     * Finds the keys of the stations imported after from and before the given import, newest first
+     * @param beforeKey of the import before which to continue, together with beforeCreatedAt, null to start with the newest
+     * @return up to limit keys, null if the buffer doesn't cover all of them
+     */
+    public synchronized List<Station.Key> find(final long from, final long beforeCreatedAt, final Station.Key beforeKey, final int limit) {
+        final Iterator<Import> newestFirst = (beforeKey != null ? imports.headSet(new Import(beforeCreatedAt, beforeKey), false) : imports)
+                .descendingIterator();
+        final List<Station.Key> result = new ArrayList<>();
+        while (newestFirst.hasNext() && result.size() < limit) {
+            final Import recentImport = newestFirst.next();
+            if (recentImport.createdAt <= from) {
+                return result;
+            }
+            result.add(recentImport.key);
+        }
+        return result.size() == limit || from >= coveredAfter ? result : null;
+    }
+
+    private void put(final Import recentImport) {
+        imports.add(recentImport);
+        byKey.put(recentImport.key, recentImport);
+    }
+
+    private static final class Import implements Comparable<Import> {
+
+        private final long createdAt;
+        private final Station.Key key;
+
+        private Import(final long createdAt, final Station.Key key) {
+            this.createdAt = createdAt;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(final Import other) {
+            final int byCreatedAt = Long.compare(createdAt, other.createdAt);
+            return byCreatedAt != 0 ? byCreatedAt : key.compareTo(other.key);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Import other = (Import) o;
+            return createdAt == other.createdAt && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(createdAt) + key.hashCode();
+        }
+
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.railwaystations.api;
+
+import io.dropwizard.servlets.tasks.Task;
+import org.railwaystations.api.monitoring.Monitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recomputes the in-memory statistics from the database and reports any drift of the incrementally updated counters
+ */
+public class ReconcileStatisticsTask extends Task {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReconcileStatisticsTask.class);
+
+    private final StationsRepository repository;
+    private final Monitor monitor;
+
+    public ReconcileStatisticsTask(final StationsRepository repository, final Monitor monitor) {
+        super("ReconcileStatistics");
+        this.repository = repository;
+        this.monitor = monitor;
+    }
+
+    @Override
+    public void execute(final Map<String, List<String>> map, final PrintWriter printWriter) {
+        final List<String> drift = repository.reconcileStatistics();
+        if (drift.isEmpty()) {
+            printWriter.println("No drift");
+            return;
+        }
+        final String message = "Statistics drift corrected:\n" + String.join("\n", drift);
+        LOG.warn(message);
+        printWriter.println(message);
+        monitor.sendMessage(message);
+    }
+
+}
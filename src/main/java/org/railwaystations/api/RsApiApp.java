@@ -23,15 +23,23 @@ import org.jdbi.v3.core.h2.H2DatabasePlugin;
 import org.railwaystations.api.auth.*;
 import org.railwaystations.api.db.*;
 import org.railwaystations.api.resources.*;
+import org.railwaystations.api.writer.CompressionInterceptor;
 import org.railwaystations.api.writer.PhotographersTxtWriter;
+import org.railwaystations.api.writer.StationsBinaryWriter;
 import org.railwaystations.api.writer.StationsGpxWriter;
+import org.railwaystations.api.writer.StationsJsonWriter;
 import org.railwaystations.api.writer.StationsTxtWriter;
 import org.railwaystations.api.writer.StatisticTxtWriter;
+import org.railwaystations.api.writer.StatisticsTxtWriter;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.FilterRegistration;
+import javax.ws.rs.core.MediaType;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static org.eclipse.jetty.servlets.CrossOriginFilter.*;
 
@@ -80,33 +88,53 @@ public class RsApiApp extends Application<RsApiConfiguration> {
 
         final CountryDao countryDao = jdbi.onDemand(CountryDao.class);
         final UserDao userDao = jdbi.onDemand(UserDao.class);
-        final PhotoDao photoDao = jdbi.onDemand(PhotoDao.class);
         final StationDao stationDao = jdbi.onDemand(StationDao.class);
         StationDao.StationMapper.setPhotoBaseUrl(config.getPhotoBaseUrl());
         final InboxDao inboxDao = jdbi.onDemand(InboxDao.class);
 
         final StationsRepository repository = new StationsRepository(countryDao,
-                stationDao);
+                stationDao, jdbi.onDemand(ChangeDao.class), jdbi.onDemand(SequenceDao.class), config.isInMemoryStations());
+        final ScheduledExecutorService stationChanges = environment.lifecycle().scheduledExecutorService("station-changes").build();
+        stationChanges.scheduleWithFixedDelay(new StationChangesPruner(repository, config.getStationChangesRetention()), 1, 24, TimeUnit.HOURS);
+        final PendingInboxIndex pendingInbox = new PendingInboxIndex(inboxDao);
+        final long syncInterval = config.getStationsSyncInterval().toMilliseconds();
+        stationChanges.scheduleWithFixedDelay(new StationsSync(repository, pendingInbox), syncInterval, syncInterval, TimeUnit.MILLISECONDS);
 
         final UploadTokenAuthenticator authenticator = registerAuthFilter(config, environment, userDao);
 
         environment.admin().addTask(new NotifyUsersTask(userDao, inboxDao, config.getMailer()));
-        environment.jersey().register(new StationsResource(repository));
+        environment.admin().addTask(new ReconcileStatisticsTask(repository, config.getMonitor()));
+        final StationsJsonWriter stationsJsonWriter = new StationsJsonWriter(environment.getObjectMapper());
+        final StationsGpxWriter stationsGpxWriter = new StationsGpxWriter();
+        final StationsTxtWriter stationsTxtWriter = new StationsTxtWriter();
+        final StationsBinaryWriter stationsBinaryWriter = new StationsBinaryWriter();
+        final StationsResponseCache responseCache = new StationsResponseCache(repository, Map.of(
+                MediaType.APPLICATION_JSON_TYPE, stationsJsonWriter,
+                MediaType.valueOf(StationsGpxWriter.GPX_MIME_TYPE), stationsGpxWriter,
+                MediaType.TEXT_PLAIN_TYPE, stationsTxtWriter,
+                MediaType.valueOf(StationsBinaryWriter.BINARY_MIME_TYPE), stationsBinaryWriter),
+                config.getStationsResponseCacheSize().toBytes());
+        environment.jersey().register(new StationsResource(repository, responseCache));
         environment.jersey().register(new PhotographersResource(repository));
         environment.jersey().register(new CountriesResource(countryDao));
         environment.jersey().register(new StatisticResource(repository));
+        environment.jersey().register(new TilesResource(repository));
         environment.jersey().register(new PhotoDownloadResource(config.getPhotosDir(), config.getInboxDir(), config.getInboxProcessedDir()));
         environment.jersey().register(new InboxResource(repository, config.getInboxDir(), config.getInboxToProcessDir(),
                 config.getInboxProcessedDir(), config.getPhotosDir(), config.getMonitor(), authenticator,
-                inboxDao, userDao, countryDao, photoDao, config.getInboxBaseUrl(), config.getMastodonBot()));
-        environment.jersey().register(new ProfileResource(config.getMonitor(), config.getMailer(), userDao, config.getMailVerificationUrl()));
-        environment.jersey().register(new StationsGpxWriter());
-        environment.jersey().register(new StationsTxtWriter());
+                inboxDao, pendingInbox, userDao, countryDao, config.getInboxBaseUrl(), config.getMastodonBot()));
+        environment.jersey().register(new ProfileResource(config.getMonitor(), config.getMailer(), userDao, repository, config.getMailVerificationUrl()));
+        environment.jersey().register(stationsJsonWriter);
+        environment.jersey().register(stationsGpxWriter);
+        environment.jersey().register(stationsTxtWriter);
+        environment.jersey().register(stationsBinaryWriter);
         environment.jersey().register(new StatisticTxtWriter());
+        environment.jersey().register(new StatisticsTxtWriter());
         environment.jersey().register(new PhotographersTxtWriter());
         environment.jersey().register(new RootResource());
+        environment.jersey().register(new CompressionInterceptor((int) config.getCompressionThreshold().toBytes(), environment.metrics()));
         environment.jersey().property("jersey.config.server.mediaTypeMappings",
-                "gpx : application/gpx+xml, json : application/json, txt : text/plain");
+                "gpx : application/gpx+xml, json : application/json, txt : text/plain, bin : " + StationsBinaryWriter.BINARY_MIME_TYPE);
         config.getMonitor().sendMessage(repository.getCountryStatisticMessage());
     }
 
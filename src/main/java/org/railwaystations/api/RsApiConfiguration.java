@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.DataSize;
+import io.dropwizard.util.Duration;
 import org.railwaystations.api.auth.TokenGenerator;
 import org.railwaystations.api.mail.Mailer;
 import org.railwaystations.api.monitoring.Monitor;
@@ -31,6 +33,16 @@ public class RsApiConfiguration extends Configuration {
 
     private String mailVerificationUrl;
 
+    private boolean inMemoryStations = true;
+
+    private DataSize stationsResponseCacheSize = DataSize.mebibytes(64);
+
+    private DataSize compressionThreshold = DataSize.kibibytes(1);
+
+    private Duration stationChangesRetention = Duration.days(30);
+
+    private Duration stationsSyncInterval = Duration.seconds(10);
+
     private MastodonBot mastodonBot = new MastodonBot();
 
     @Valid
@@ -92,6 +104,46 @@ public class RsApiConfiguration extends Configuration {
         this.inboxBaseUrl = inboxBaseUrl;
     }
 
+    public boolean isInMemoryStations() {
+        return inMemoryStations;
+    }
+
+    public void setInMemoryStations(final boolean inMemoryStations) {
+        this.inMemoryStations = inMemoryStations;
+    }
+
+    public DataSize getStationsResponseCacheSize() {
+        return stationsResponseCacheSize;
+    }
+
+    public void setStationsResponseCacheSize(final DataSize stationsResponseCacheSize) {
+        this.stationsResponseCacheSize = stationsResponseCacheSize;
+    }
+
+    public DataSize getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(final DataSize compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public Duration getStationChangesRetention() {
+        return stationChangesRetention;
+    }
+
+    public void setStationChangesRetention(final Duration stationChangesRetention) {
+        this.stationChangesRetention = stationChangesRetention;
+    }
+
+    public Duration getStationsSyncInterval() {
+        return stationsSyncInterval;
+    }
+
+    public void setStationsSyncInterval(final Duration stationsSyncInterval) {
+        this.stationsSyncInterval = stationsSyncInterval;
+    }
+
     public String getPhotosDir() {
         return getWorkDir() + File.separator + "photos";
     }
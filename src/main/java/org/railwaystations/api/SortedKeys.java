@@ -0,0 +1,54 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.model.Station;
+
+import java.util.Arrays;
+
+/**
+ * Sorted station key arrays as posting lists of the indexes, which are replaced as a whole on change
+ */
+final class SortedKeys {
+
+    private SortedKeys() {
+    }
+
+    /**
+     * @return the keys with the given one, the same array if it was contained already
+     */
+    static Station.Key[] insert(final Station.Key[] keys, final Station.Key key) {
+        if (keys == null) {
+            return new Station.Key[]{key};
+        }
+        final int index = Arrays.binarySearch(keys, key);
+        if (index >= 0) {
+            return keys;
+        }
+        final int position = -index - 1;
+        final Station.Key[] inserted = new Station.Key[keys.length + 1];
+        System.arraycopy(keys, 0, inserted, 0, position);
+        inserted[position] = key;
+        System.arraycopy(keys, position, inserted, position + 1, keys.length - position);
+        return inserted;
+    }
+
+    /**
+     * @return the keys without the given one, null if none are left
+     */
+    static Station.Key[] remove(final Station.Key[] keys, final Station.Key key) {
+        if (keys == null) {
+            return null;
+        }
+        final int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            return keys;
+        }
+        if (keys.length == 1) {
+            return null;
+        }
+        final Station.Key[] removed = new Station.Key[keys.length - 1];
+        System.arraycopy(keys, 0, removed, 0, index);
+        System.arraycopy(keys, index + 1, removed, index, keys.length - index - 1);
+        return removed;
+    }
+
+}
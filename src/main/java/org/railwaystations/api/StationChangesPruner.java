@@ -0,0 +1,33 @@
+package org.railwaystations.api;
+
+import io.dropwizard.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes the station changes older than the retention, run periodically
+ */
+public class StationChangesPruner implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StationChangesPruner.class);
+
+    private final StationsRepository repository;
+    private final Duration retention;
+
+    public StationChangesPruner(final StationsRepository repository, final Duration retention) {
+        this.repository = repository;
+        this.retention = retention;
+    }
+
+    @Override
+    public void run() {
+        try {
+            final int pruned = repository.pruneChanges(System.currentTimeMillis() - retention.toMilliseconds());
+            LOG.info("Pruned {} station changes", pruned);
+        } catch (final RuntimeException e) {
+            // an exception would cancel the next runs
+            LOG.error("Pruning station changes failed", e);
+        }
+    }
+
+}
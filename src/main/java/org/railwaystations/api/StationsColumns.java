@@ -0,0 +1,549 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.model.BoundingBox;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationFilter;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Column store of the stations of one country, ordered by key, which holds the stations of the snapshot.
+ * The rows are kept in blocks of primitive columns: double[] lat/lon, bit sets for hasPhoto/active, the photographer ids,
+ * the ordinals of the strings in a dictionary and the creation times with a presence bit.
+ * Filters run as loops over the columns, stations are only created for the rows returned.
+ * It is immutable once published, changes copy only the blocks of the changed stations and share all others.
+ */
+public final class StationsColumns {
+
+    /**
+     * Rows per block when built, a block is split once changes grow it to twice the size
+     */
+    static final int BLOCK_SIZE = 512;
+
+    private static final int NONE = -1;
+
+    private static final int TITLE = 0;
+    private static final int DS100 = 1;
+    private static final int PHOTOGRAPHER = 2;
+    private static final int PHOTOGRAPHER_URL = 3;
+    private static final int PHOTO_URL = 4;
+    private static final int LICENSE = 5;
+    private static final int LICENSE_URL = 6;
+    private static final int STRING_COLUMNS = 7;
+
+    private final Dictionary dictionary;
+    private final Block[] blocks;
+    private final int size;
+    private final Map<Station.Key, Station> map = new View();
+
+    public StationsColumns(final Collection<Station> stations) {
+        final Station[] sorted = stations.toArray(new Station[0]);
+        Arrays.sort(sorted, (a, b) -> a.getKey().compareTo(b.getKey()));
+        dictionary = new Dictionary();
+        final Rows rows = new Rows(sorted.length);
+        for (final Station station : sorted) {
+            rows.add(station, dictionary);
+        }
+        final List<Block> built = new ArrayList<>();
+        rows.addTo(built, BLOCK_SIZE);
+        blocks = built.toArray(new Block[0]);
+        size = sorted.length;
+        dictionary.compacted();
+    }
+
+    private StationsColumns(final Dictionary dictionary, final Block[] blocks, final int size) {
+        this.dictionary = dictionary;
+        this.blocks = blocks;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the station of the given key, null if it is not contained
+     */
+    public Station get(final Station.Key key) {
+        if (blocks.length == 0) {
+            return null;
+        }
+        final Block block = blocks[blockOf(key)];
+        final int row = Arrays.binarySearch(block.keys, key);
+        return row >= 0 ? block.station(row, dictionary) : null;
+    }
+
+    /**
+     * The stations by their key as an unmodifiable view, which creates the stations on access
+     */
+    public Map<Station.Key, Station> asMap() {
+        return map;
+    }
+
+    /**
+     * Streams all stations in key order
+     */
+    public Stream<Station> stream() {
+        return Arrays.stream(blocks).flatMap(block -> IntStream.range(0, block.size()).mapToObj(row -> block.station(row, dictionary)));
+    }
+
+    /**
+     * Streams all stations matching the filter in key order
+     */
+    public Stream<Station> find(final StationFilter filter) {
+        final int photographer = photographerOf(filter);
+        if (photographer == NONE && filter.getPhotographer() != null) {
+            return Stream.empty();
+        }
+        return Arrays.stream(blocks).flatMap(block -> select(block, filter, photographer, 0).stream()
+                .mapToObj(row -> block.station(row, dictionary))
+                .filter(station -> !filter.hasDistance() || filter.appliesTo(station)));
+    }
+
+    /**
+     * Finds up to limit stations matching the filter, ordered by key and starting after the given key (from the start if null).
+     * Scans block by block, so the costs are proportional to the rows up to the last one returned.
+     */
+    public List<Station> find(final StationFilter filter, final Station.Key after, final int limit) {
+        final List<Station> page = new ArrayList<>(Math.min(limit, BLOCK_SIZE));
+        final int photographer = photographerOf(filter);
+        if (photographer == NONE && filter.getPhotographer() != null || blocks.length == 0) {
+            return page;
+        }
+        int index = after != null ? blockOf(after) : 0;
+        int from = after != null ? rowAfter(blocks[index], after) : 0;
+        for (; index < blocks.length && page.size() < limit; index++) {
+            final Block block = blocks[index];
+            final BitSet selected = select(block, filter, photographer, from);
+            for (int row = selected.nextSetBit(from); row >= 0 && page.size() < limit; row = selected.nextSetBit(row + 1)) {
+                final Station station = block.station(row, dictionary);
+                if (!filter.hasDistance() || filter.appliesTo(station)) {
+                    page.add(station);
+                }
+            }
+            from = 0;
+        }
+        return page;
+    }
+
+    /**
+     * Finds the stations of the given keys matching the filter, e.g. the candidates of a spatial index
+     */
+    public Stream<Station> find(final StationFilter filter, final Collection<Station.Key> candidates) {
+        final int photographer = photographerOf(filter);
+        if (photographer == NONE && filter.getPhotographer() != null || blocks.length == 0) {
+            return Stream.empty();
+        }
+        final BoundingBox area = filter.getSearchArea();
+        final List<Station> result = new ArrayList<>();
+        for (final Station.Key key : candidates) {
+            final Block block = blocks[blockOf(key)];
+            final int row = Arrays.binarySearch(block.keys, key);
+            if (row >= 0 && matches(block, row, filter, photographer, area)) {
+                final Station station = block.station(row, dictionary);
+                if (!filter.hasDistance() || filter.appliesTo(station)) {
+                    result.add(station);
+                }
+            }
+        }
+        return result.stream();
+    }
+
+    /**
+     * Creates the next version of these columns. The given keys are removed first, then the given stations are (re-)added.
+     * The dictionary only grows while shared, it is compacted by a rebuild once it doubled.
+     */
+    public StationsColumns with(final Collection<Station.Key> removed, final Collection<Station> upserted) {
+        if (removed.isEmpty() && upserted.isEmpty()) {
+            return this;
+        }
+        final TreeMap<Station.Key, Station> changes = new TreeMap<>();
+        removed.forEach(key -> changes.put(key, null));
+        upserted.forEach(station -> changes.put(station.getKey(), station));
+
+        final List<Block> next = new ArrayList<>(blocks.length + 1);
+        int nextSize = size;
+        int copied = 0;
+        final Iterator<Map.Entry<Station.Key, Station>> pending = changes.entrySet().iterator();
+        Map.Entry<Station.Key, Station> change = pending.next();
+        while (change != null) {
+            final int index = blocks.length > 0 ? blockOf(change.getKey()) : 0;
+            next.addAll(Arrays.asList(blocks).subList(copied, index));
+            final Station.Key end = index + 1 < blocks.length ? blocks[index + 1].keys[0] : null;
+            final List<Map.Entry<Station.Key, Station>> blockChanges = new ArrayList<>();
+            while (change != null && (end == null || change.getKey().compareTo(end) < 0)) {
+                blockChanges.add(change);
+                change = pending.hasNext() ? pending.next() : null;
+            }
+            final Block block = index < blocks.length ? blocks[index] : null;
+            final Rows rows = merge(block, blockChanges);
+            rows.addTo(next, rows.count > 2 * BLOCK_SIZE ? BLOCK_SIZE : 2 * BLOCK_SIZE);
+            nextSize += rows.count - (block != null ? block.size() : 0);
+            copied = Math.min(index + 1, blocks.length);
+        }
+        next.addAll(Arrays.asList(blocks).subList(copied, blocks.length));
+
+        final StationsColumns columns = new StationsColumns(dictionary, next.toArray(new Block[0]), nextSize);
+        return dictionary.isBloated() ? new StationsColumns(columns.asMap().values()) : columns;
+    }
+
+    /**
+     * The rows of the block with the changes applied, which are ordered by key and removals if without a station
+     */
+    private Rows merge(final Block block, final List<Map.Entry<Station.Key, Station>> changes) {
+        final int blockSize = block != null ? block.size() : 0;
+        final Rows rows = new Rows(blockSize + changes.size());
+        int row = 0;
+        for (final Map.Entry<Station.Key, Station> change : changes) {
+            while (row < blockSize && block.keys[row].compareTo(change.getKey()) < 0) {
+                rows.add(block, row++);
+            }
+            if (row < blockSize && block.keys[row].equals(change.getKey())) {
+                row++;
+            }
+            if (change.getValue() != null) {
+                rows.add(change.getValue(), dictionary);
+            }
+        }
+        while (row < blockSize) {
+            rows.add(block, row++);
+        }
+        return rows;
+    }
+
+    /**
+     * Binary search for the last block whose first key isn't greater than the given one, the first block if there is none
+     */
+    private int blockOf(final Station.Key key) {
+        int low = 1;
+        int high = blocks.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (blocks[mid].keys[0].compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    private static int rowAfter(final Block block, final Station.Key key) {
+        final int row = Arrays.binarySearch(block.keys, key);
+        return row >= 0 ? row + 1 : -row - 1;
+    }
+
+    private int photographerOf(final StationFilter filter) {
+        return filter.getPhotographer() != null ? dictionary.find(filter.getPhotographer()) : NONE;
+    }
+
+    /**
+     * Selects the rows of the block from the given one on matching the filter, apart from the exact distance check
+     */
+    private static BitSet select(final Block block, final StationFilter filter, final int photographer, final int from) {
+        final int to = block.size();
+        final BitSet selected = new BitSet(to);
+        selected.set(from, to);
+        if (filter.getHasPhoto() != null) {
+            and(selected, block.hasPhoto, filter.getHasPhoto());
+        }
+        if (filter.getActive() != null) {
+            and(selected, block.active, filter.getActive());
+        }
+        if (filter.getPhotographer() != null) {
+            final int[] photographers = block.strings[PHOTOGRAPHER];
+            for (int row = selected.nextSetBit(from); row >= 0; row = selected.nextSetBit(row + 1)) {
+                if (photographers[row] != photographer) {
+                    selected.clear(row);
+                }
+            }
+        }
+        final BoundingBox area = filter.getSearchArea();
+        if (area != null) {
+            for (int row = selected.nextSetBit(from); row >= 0; row = selected.nextSetBit(row + 1)) {
+                if (!area.contains(block.lats[row], block.lons[row])) {
+                    selected.clear(row);
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static void and(final BitSet selected, final BitSet column, final boolean value) {
+        if (value) {
+            selected.and(column);
+        } else {
+            selected.andNot(column);
+        }
+    }
+
+    /**
+     * The checks of {@link #select} for a single row
+     */
+    private static boolean matches(final Block block, final int row, final StationFilter filter, final int photographer,
+                                   final BoundingBox area) {
+        return (filter.getHasPhoto() == null || block.hasPhoto.get(row) == filter.getHasPhoto())
+                && (filter.getActive() == null || block.active.get(row) == filter.getActive())
+                && (filter.getPhotographer() == null || block.strings[PHOTOGRAPHER][row] == photographer)
+                && (area == null || area.contains(block.lats[row], block.lons[row]));
+    }
+
+    /**
+     * Immutable rows of consecutive keys
+     */
+    private static final class Block {
+
+        private final Station.Key[] keys;
+        private final double[] lats;
+        private final double[] lons;
+        private final BitSet hasPhoto;
+        private final BitSet active;
+        private final BitSet hasCreatedAt;
+        private final long[] createdAts;
+        private final int[] photographerIds;
+        private final int[][] strings;
+
+        private Block(final Rows rows, final int from, final int to) {
+            keys = Arrays.copyOfRange(rows.keys, from, to);
+            lats = Arrays.copyOfRange(rows.lats, from, to);
+            lons = Arrays.copyOfRange(rows.lons, from, to);
+            hasPhoto = rows.hasPhoto.get(from, to);
+            active = rows.active.get(from, to);
+            hasCreatedAt = rows.hasCreatedAt.get(from, to);
+            createdAts = Arrays.copyOfRange(rows.createdAts, from, to);
+            photographerIds = Arrays.copyOfRange(rows.photographerIds, from, to);
+            strings = new int[STRING_COLUMNS][];
+            for (int column = 0; column < STRING_COLUMNS; column++) {
+                strings[column] = Arrays.copyOfRange(rows.strings[column], from, to);
+            }
+        }
+
+        private int size() {
+            return keys.length;
+        }
+
+        private Station station(final int row, final Dictionary dictionary) {
+            return new Station(keys[row], dictionary.decode(strings[TITLE][row]),
+                    Double.isNaN(lats[row]) ? null : new Coordinates(lats[row], lons[row]),
+                    dictionary.decode(strings[DS100][row]), active.get(row), photographerIds[row],
+                    dictionary.decode(strings[PHOTOGRAPHER][row]), dictionary.decode(strings[PHOTOGRAPHER_URL][row]),
+                    dictionary.decode(strings[PHOTO_URL][row]), dictionary.decode(strings[LICENSE][row]),
+                    dictionary.decode(strings[LICENSE_URL][row]), hasCreatedAt.get(row) ? createdAts[row] : null);
+        }
+
+    }
+
+    /**
+     * Rows collected to be split into blocks
+     */
+    private static final class Rows {
+
+        private final Station.Key[] keys;
+        private final double[] lats;
+        private final double[] lons;
+        private final BitSet hasPhoto = new BitSet();
+        private final BitSet active = new BitSet();
+        private final BitSet hasCreatedAt = new BitSet();
+        private final long[] createdAts;
+        private final int[] photographerIds;
+        private final int[][] strings;
+        private int count;
+
+        private Rows(final int capacity) {
+            keys = new Station.Key[capacity];
+            lats = new double[capacity];
+            lons = new double[capacity];
+            createdAts = new long[capacity];
+            photographerIds = new int[capacity];
+            strings = new int[STRING_COLUMNS][capacity];
+        }
+
+        private void add(final Station station, final Dictionary dictionary) {
+            keys[count] = station.getKey();
+            lats[count] = station.getCoordinates() != null ? station.getCoordinates().getLat() : Double.NaN;
+            lons[count] = station.getCoordinates() != null ? station.getCoordinates().getLon() : Double.NaN;
+            hasPhoto.set(count, station.hasPhoto());
+            active.set(count, station.isActive());
+            hasCreatedAt.set(count, station.getCreatedAt() != null);
+            createdAts[count] = station.getCreatedAt() != null ? station.getCreatedAt() : 0;
+            photographerIds[count] = station.getPhotographerId();
+            strings[TITLE][count] = dictionary.encode(station.getTitle());
+            strings[DS100][count] = dictionary.encode(station.getDS100());
+            strings[PHOTOGRAPHER][count] = dictionary.encode(station.getPhotographer());
+            strings[PHOTOGRAPHER_URL][count] = dictionary.encode(station.getPhotographerUrl());
+            strings[PHOTO_URL][count] = dictionary.encode(station.getPhotoUrl());
+            strings[LICENSE][count] = dictionary.encode(station.getLicense());
+            strings[LICENSE_URL][count] = dictionary.encode(station.getLicenseUrl());
+            count++;
+        }
+
+        private void add(final Block block, final int row) {
+            keys[count] = block.keys[row];
+            lats[count] = block.lats[row];
+            lons[count] = block.lons[row];
+            hasPhoto.set(count, block.hasPhoto.get(row));
+            active.set(count, block.active.get(row));
+            hasCreatedAt.set(count, block.hasCreatedAt.get(row));
+            createdAts[count] = block.createdAts[row];
+            photographerIds[count] = block.photographerIds[row];
+            for (int column = 0; column < STRING_COLUMNS; column++) {
+                strings[column][count] = block.strings[column][row];
+            }
+            count++;
+        }
+
+        /**
+         * Splits the rows evenly into blocks of at most the given size
+         */
+        private void addTo(final List<Block> blocks, final int maxRows) {
+            final int parts = (count + maxRows - 1) / maxRows;
+            for (int part = 0; part < parts; part++) {
+                blocks.add(new Block(this, (int) ((long) count * part / parts), (int) ((long) count * (part + 1) / parts)));
+            }
+        }
+
+    }
+
+    /**
+     * The distinct strings of the columns, coded by their ordinal. It only grows and is shared by all versions of the columns,
+     * each of them only reads the ordinals of its rows, which were published with it.
+     * The ordinals are found by an open addressing table of the string hashes, which costs far less heap than a map.
+     */
+    private static final class Dictionary {
+
+        private static final int MIN_COMPACT_SIZE = 1024;
+
+        private volatile String[] values = new String[16];
+        /**
+         * Ordinal + 1 of the strings by their hash, 0 for a free slot, at most half full
+         */
+        private int[] slots = new int[32];
+        private int count;
+        private int bloatedAt = Integer.MAX_VALUE;
+
+        private synchronized int encode(final String value) {
+            if (value == null) {
+                return NONE;
+            }
+            final int slot = slotOf(value);
+            if (slots[slot] != 0) {
+                return slots[slot] - 1;
+            }
+            String[] current = values;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, 2 * count);
+            }
+            current[count] = value;
+            values = current;
+            slots[slot] = ++count;
+            if (2 * count > slots.length) {
+                rehash(current);
+            }
+            return count - 1;
+        }
+
+        private String decode(final int ordinal) {
+            return ordinal != NONE ? values[ordinal] : null;
+        }
+
+        private synchronized int find(final String value) {
+            return slots[slotOf(value)] - 1;
+        }
+
+        /**
+         * The slot of the string, or the free one to put it into
+         */
+        private int slotOf(final String value) {
+            final String[] current = values;
+            final int mask = slots.length - 1;
+            final int hash = value.hashCode();
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (slots[slot] != 0 && !current[slots[slot] - 1].equals(value)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void rehash(final String[] current) {
+            slots = new int[2 * slots.length];
+            final int mask = slots.length - 1;
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                final int hash = current[ordinal].hashCode();
+                int slot = (hash ^ hash >>> 16) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = ordinal + 1;
+            }
+        }
+
+        /**
+         * Marks the current strings as the ones in use, the dictionary is bloated when it grew to twice their count
+         */
+        private synchronized void compacted() {
+            bloatedAt = Math.max(2 * count, MIN_COMPACT_SIZE);
+        }
+
+        private synchronized boolean isBloated() {
+            return count > bloatedAt;
+        }
+
+    }
+
+    private final class View extends AbstractMap<Station.Key, Station> {
+
+        private final Set<Map.Entry<Station.Key, Station>> entries = new AbstractSet<>() {
+
+            @Override
+            public Iterator<Map.Entry<Station.Key, Station>> iterator() {
+                return StationsColumns.this.stream().map(station -> (Map.Entry<Station.Key, Station>) new SimpleImmutableEntry<>(station.getKey(), station))
+                        .iterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+        };
+
+        @Override
+        public Station get(final Object key) {
+            return key instanceof Station.Key ? StationsColumns.this.get((Station.Key) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Map.Entry<Station.Key, Station>> entrySet() {
+            return entries;
+        }
+
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.model.BoundingBox;
+import org.railwaystations.api.model.Station;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable grid over the station coordinates with cells of {@link #CELL_SIZE} degrees, holding the keys of the stations
+ * per cell, so area queries only have to look at the stations of the overlapping cells.
+ * Changes replace only the cells of the changed stations and share all others with the previous version.
+ */
+public final class StationsGeoIndex {
+
+    static final double CELL_SIZE = 0.1;
+
+    private static final int LON_CELL_OFFSET = (int) Math.ceil(180 / CELL_SIZE);
+    private static final int LON_CELLS = 2 * LON_CELL_OFFSET + 1;
+
+    private final PersistentTreeMap<Long, Station.Key[]> cells;
+
+    public StationsGeoIndex(final Collection<Station> stations) {
+        final Map<Long, List<Station.Key>> cellLists = new HashMap<>();
+        for (final Station station : stations) {
+            if (station.getCoordinates() != null) {
+                cellLists.computeIfAbsent(cellOf(station), cell -> new ArrayList<>()).add(station.getKey());
+            }
+        }
+        final Map<Long, Station.Key[]> sortedCells = new HashMap<>(cellLists.size());
+        cellLists.forEach((cell, keys) -> {
+            final Station.Key[] array = keys.toArray(new Station.Key[0]);
+            Arrays.sort(array);
+            sortedCells.put(cell, array);
+        });
+        cells = PersistentTreeMap.of(sortedCells);
+    }
+
+    private StationsGeoIndex(final PersistentTreeMap<Long, Station.Key[]> cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * Creates the next version of this index, the previous versions of changed stations are removed first.
+     */
+    public StationsGeoIndex with(final Collection<Station> removed, final Collection<Station> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return this;
+        }
+        PersistentTreeMap<Long, Station.Key[]> next = cells;
+        for (final Station station : removed) {
+            if (station.getCoordinates() != null) {
+                next = next.compute(cellOf(station), (cell, keys) -> SortedKeys.remove(keys, station.getKey()));
+            }
+        }
+        for (final Station station : added) {
+            if (station.getCoordinates() != null) {
+                next = next.compute(cellOf(station), (cell, keys) -> SortedKeys.insert(keys, station.getKey()));
+            }
+        }
+        return new StationsGeoIndex(next);
+    }
+
+    /**
+     * Finds the keys of the stations in the cells overlapping the bounding box, which still have to be checked against it
+     * @return null if the box spans more cells than are occupied, so checking all stations is cheaper
+     */
+    public List<Station.Key> find(final BoundingBox box) {
+        final int minLatCell = latCell(Math.max(box.getMinLat(), -90));
+        final int maxLatCell = latCell(Math.min(box.getMaxLat(), 90));
+        final int minLonCell = lonCell(Math.max(box.getMinLon(), -180));
+        final int maxLonCell = lonCell(Math.min(box.getMaxLon(), 180));
+        if (box.getMinLon() < -180 || box.getMaxLon() > 180 || (long) (maxLatCell - minLatCell + 1) * (maxLonCell - minLonCell + 1) > cells.size()) {
+            return null;
+        }
+        final List<Station.Key> result = new ArrayList<>();
+        for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+            for (int lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+                final Station.Key[] keys = cells.get(cellOf(latCell, lonCell));
+                if (keys != null) {
+                    Collections.addAll(result, keys);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long cellOf(final Station station) {
+        return cellOf(latCell(station.getCoordinates().getLat()), lonCell(station.getCoordinates().getLon()));
+    }
+
+    private static int latCell(final double lat) {
+        return (int) Math.floor(lat / CELL_SIZE);
+    }
+
+    private static int lonCell(final double lon) {
+        return (int) Math.floor(lon / CELL_SIZE);
+    }
+
+    private static long cellOf(final int latCell, final int lonCell) {
+        return (long) latCell * LON_CELLS + lonCell + LON_CELL_OFFSET;
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.model.Station;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Immutable inverted index from photographer (display name and id) to the keys of the stations with their photos.
+ * Changes copy only the key sets of the affected photographers and share the others with the previous version.
+ */
+public final class StationsPhotographerIndex {
+
+    private final PersistentTreeMap<String, NavigableSet<Station.Key>> byName;
+    private final PersistentTreeMap<Integer, Set<Station.Key>> byId;
+
+    private StationsPhotographerIndex(final PersistentTreeMap<String, NavigableSet<Station.Key>> byName,
+                                      final PersistentTreeMap<Integer, Set<Station.Key>> byId) {
+        this.byName = byName;
+        this.byId = byId;
+    }
+
+    public static StationsPhotographerIndex of(final Collection<Station> stations) {
+        return new StationsPhotographerIndex(PersistentTreeMap.empty(), PersistentTreeMap.empty()).with(Collections.emptyList(), stations);
+    }
+
+    /**
+     * Keys of the stations with a photo of the given photographer, ordered by key
+     */
+    public NavigableSet<Station.Key> getKeys(final String photographer) {
+        if (photographer == null) {
+            return Collections.emptyNavigableSet();
+        }
+        return Collections.unmodifiableNavigableSet(byName.getOrDefault(photographer, Collections.emptyNavigableSet()));
+    }
+
+    public Set<Station.Key> getKeys(final int photographerId) {
+        return Collections.unmodifiableSet(byId.getOrDefault(photographerId, Collections.emptySet()));
+    }
+
+    /**
+     * Creates the next version of this index, the previous versions of changed stations are removed first.
+     */
+    public StationsPhotographerIndex with(final Collection<Station> removed, final Collection<Station> added) {
+        final Map<String, NavigableSet<Station.Key>> changedNames = new HashMap<>();
+        final Map<Integer, Set<Station.Key>> changedIds = new HashMap<>();
+        for (final Station station : removed) {
+            if (station.hasPhoto()) {
+                copy(byName, changedNames, station.getPhotographer(), TreeSet::new).remove(station.getKey());
+                copy(byId, changedIds, station.getPhotographerId(), HashSet::new).remove(station.getKey());
+            }
+        }
+        for (final Station station : added) {
+            if (station.hasPhoto()) {
+                copy(byName, changedNames, station.getPhotographer(), TreeSet::new).add(station.getKey());
+                copy(byId, changedIds, station.getPhotographerId(), HashSet::new).add(station.getKey());
+            }
+        }
+        return new StationsPhotographerIndex(apply(byName, changedNames), apply(byId, changedIds));
+    }
+
+    /**
+     * Gets the copy of the photographer's keys to change, null photographers are not indexed
+     */
+    private static <K extends Comparable<? super K>, S extends Set<Station.Key>> S copy(final PersistentTreeMap<K, S> index,
+                                                                                      final Map<K, S> changed, final K key,
+                                                                                      final Function<Collection<Station.Key>, S> copyOf) {
+        if (key == null) {
+            return copyOf.apply(Collections.emptySet());
+        }
+        return changed.computeIfAbsent(key, k -> {
+            final S keys = index.get(k);
+            return copyOf.apply(keys != null ? keys : Collections.emptySet());
+        });
+    }
+
+    private static <K extends Comparable<? super K>, S extends Set<Station.Key>> PersistentTreeMap<K, S> apply(
+            final PersistentTreeMap<K, S> index, final Map<K, S> changed) {
+        PersistentTreeMap<K, S> next = index;
+        for (final Map.Entry<K, S> entry : changed.entrySet()) {
+            next = entry.getValue().isEmpty() ? next.remove(entry.getKey()) : next.put(entry.getKey(), entry.getValue());
+        }
+        return next;
+    }
+
+}
@@ -1,39 +1,441 @@
 package org.railwaystations.api;
 
 import org.apache.commons.lang3.StringUtils;
+import org.railwaystations.api.db.ChangeDao;
 import org.railwaystations.api.db.CountryDao;
+import org.railwaystations.api.db.SequenceDao;
 import org.railwaystations.api.db.StationDao;
+import org.railwaystations.api.model.BoundingBox;
 import org.railwaystations.api.model.Coordinates;
 import org.railwaystations.api.model.Country;
+import org.railwaystations.api.model.Photo;
 import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationChanges;
+import org.railwaystations.api.model.StationFilter;
+import org.railwaystations.api.model.StationsPage;
 import org.railwaystations.api.model.Statistic;
+import org.railwaystations.api.model.Tile;
+import org.railwaystations.api.model.User;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class StationsRepository {
 
+    private static final double NEARBY_DISTANCE = 0.5;
+    private static final String Z_SEQUENCE = "Z";
+    private static final Pattern Z_ID = Pattern.compile("Z\\d{1,18}");
+    private static final int Z_BLOCK_SIZE = 10;
+    private static final int RECENT_IMPORTS = 10_000;
+
     private final CountryDao countryDao;
     private final StationDao stationDao;
+    private final ChangeDao changeDao;
+    private final IdBlockAllocator zIds;
+    private final boolean inMemory;
+
+    private final Object writeLock = new Object();
+    private volatile StationsSnapshot snapshot;
+    private volatile StationsStatistics statistics;
+    private volatile RecentImports recentImports;
+
+    private final AtomicLong modificationCount = new AtomicLong();
+    private final Map<String, Long> countryModifications = new ConcurrentHashMap<>();
+    private volatile long reloadedAt;
+    private volatile long syncedVersion;
+    private final NavigableSet<Long> ownVersions = new ConcurrentSkipListSet<>();
+
+    public StationsRepository(final CountryDao countryDao, final StationDao stationDao, final ChangeDao changeDao,
+                              final SequenceDao sequenceDao) {
+        this(countryDao, stationDao, changeDao, sequenceDao, true);
+    }
 
-    public StationsRepository(final CountryDao countryDao, final StationDao stationDao) {
+    /**
+     * @param inMemory serve reads from an in-memory snapshot, which follows the writes of other instances with {@link #syncChanges()}
+     */
+    public StationsRepository(final CountryDao countryDao, final StationDao stationDao, final ChangeDao changeDao,
+                              final SequenceDao sequenceDao, final boolean inMemory) {
         super();
         this.countryDao = countryDao;
         this.stationDao = stationDao;
+        this.changeDao = changeDao;
+        this.zIds = new IdBlockAllocator(sequenceDao, Z_SEQUENCE, Z_BLOCK_SIZE);
+        this.inMemory = inMemory;
+        reload();
     }
 
+    /**
+     * Gets the stations of the given countries (all active countries if empty)
+     */
     public Map<Station.Key, Station> getStationsByCountry(final Set<String> countryCodes) {
-        final Set<Station> stations;
-        if (countryCodes == null || countryCodes.isEmpty()) {
-            stations = stationDao.all();
-        } else {
-            stations = stationDao.findByCountryCodes(countryCodes);
+        if (!inMemory) {
+            final Set<Station> stations;
+            if (countryCodes == null || countryCodes.isEmpty()) {
+                stations = stationDao.all();
+            } else {
+                stations = stationDao.findByCountryCodes(countryCodes);
+            }
+            return stations.stream().collect(Collectors.toMap(Station::getKey, Function.identity()));
+        }
+        return snapshot.getStations(countryCodes);
+    }
+
+    /**
+     * Streams the stations of the given countries (all active countries if empty) matching the filter,
+     * without copying them first. The stream has to be closed, as it may hold a database connection.
+     */
+    public Stream<Station> findStations(final Set<String> countryCodes, final StationFilter filter) {
+        final BoundingBox area = filter.getSearchArea();
+        if (!inMemory) {
+            final Set<String> countries = countryCodes != null ? countryCodes : Collections.emptySet();
+            return stationDao.findByFilter(countries.isEmpty(), countries, area != null, toSqlArea(area),
+                    filter.getHasPhoto(), filter.getPhotographer(), filter.getActive())
+                    .filter(filter::appliesTo);
+        }
+        final StationsSnapshot current = snapshot;
+        if (filter.getPhotographer() != null) {
+            return findByPhotographer(current, countryCodes, filter, current.getPhotographerIndex().getKeys(filter.getPhotographer()));
+        }
+        final Collection<String> countries = countryCodes == null || countryCodes.isEmpty() ? current.getCountries() : countryCodes;
+        if (area != null) {
+            return countries.stream().flatMap(country -> current.findInArea(country, filter));
+        }
+        return countries.stream().flatMap(country -> current.getColumns(country).find(filter));
+    }
+
+    /**
+     * Finds up to limit stations matching the filter, ordered by key and starting after the given key (from the start if null).
+     * Costs are proportional to the page size and the stations skipped by the filter, not to the size of the countries.
+     */
+    public StationsPage findPage(final Set<String> countryCodes, final StationFilter filter, final Station.Key after, final int limit) {
+        final BoundingBox area = filter.getSearchArea();
+        if (!inMemory) {
+            final Set<String> countries = countryCodes != null ? countryCodes : Collections.emptySet();
+            final List<Station> rows = stationDao.findPageByFilter(countries.isEmpty(), countries, area != null, toSqlArea(area),
+                    filter.getHasPhoto(), filter.getPhotographer(), filter.getActive(),
+                    after != null ? after.getCountry() : "", after != null ? after.getId() : "", limit);
+            // the page may get shorter by the exact checks, but continues after the last row read
+            final Station.Key next = rows.size() < limit ? null : rows.get(rows.size() - 1).getKey();
+            return new StationsPage(rows.stream().filter(filter::appliesTo).collect(Collectors.toList()), next);
+        }
+
+        final StationsSnapshot current = snapshot;
+        if (filter.getPhotographer() != null) {
+            final NavigableSet<Station.Key> keys = current.getPhotographerIndex().getKeys(filter.getPhotographer());
+            final List<Station> page = findByPhotographer(current, countryCodes, filter, after != null ? keys.tailSet(after, false) : keys)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+            return new StationsPage(page, page.size() == limit ? page.get(page.size() - 1).getKey() : null);
+        }
+        final Collection<String> countries = countryCodes == null || countryCodes.isEmpty() ? current.getCountries() : countryCodes;
+        final List<Station> page = new ArrayList<>(Math.min(limit, 1000));
+        for (final String country : new TreeSet<>(countries)) {
+            if (after != null && country.compareTo(after.getCountry()) < 0) {
+                continue;
+            }
+            page.addAll(current.getColumns(country).find(filter, after != null && country.equals(after.getCountry()) ? after : null,
+                    limit - page.size()));
+            if (page.size() == limit) {
+                return new StationsPage(page, page.get(page.size() - 1).getKey());
+            }
+        }
+        return new StationsPage(page, null);
+    }
+
+    /**
+     * Gets the content of the map tile of the given country: clusters up to {@link StationsTilePyramid#MAX_CLUSTER_ZOOM},
+     * the single stations above
+     */
+    public Tile getTile(final String country, final int z, final int x, final int y) {
+        final BoundingBox bounds = StationsTilePyramid.tileBounds(z, x, y);
+        if (!inMemory) {
+            try (Stream<Station> stations = stationDao.findByFilter(false, Collections.singleton(country), true, bounds, null, null, null)) {
+                final List<Station> inTile = stations.filter(station -> StationsTilePyramid.isInTile(station, z, x, y))
+                        .collect(Collectors.toList());
+                if (z <= StationsTilePyramid.MAX_CLUSTER_ZOOM) {
+                    return new Tile(z, x, y, StationsTilePyramid.cluster(inTile, z, x, y), null);
+                }
+                return new Tile(z, x, y, null, inTile);
+            }
+        }
+        final StationsSnapshot current = snapshot;
+        if (z <= StationsTilePyramid.MAX_CLUSTER_ZOOM) {
+            return new Tile(z, x, y, current.getTilePyramid(country).getClusters(z, x, y), null);
+        }
+        return new Tile(z, x, y, null, current.findInArea(country, new StationFilter(null, null, null, null, null, null, bounds))
+                .filter(station -> StationsTilePyramid.isInTile(station, z, x, y))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Resolves the stations of the photographer's keys, costs are proportional to the photographer's photo count
+     */
+    private static Stream<Station> findByPhotographer(final StationsSnapshot current, final Set<String> countryCodes,
+                                                      final StationFilter filter, final Set<Station.Key> keys) {
+        final boolean allCountries = countryCodes == null || countryCodes.isEmpty();
+        return keys.stream()
+                .filter(key -> allCountries || countryCodes.contains(key.getCountry()))
+                .map(current::get)
+                .filter(Objects::nonNull)
+                .filter(filter::appliesTo);
+    }
+
+    /**
+     * The SQL prefilter can't handle boxes crossing the antimeridian, they are widened to all longitudes.
+     * Without an area the whole world is bound, but not applied.
+     */
+    private static BoundingBox toSqlArea(final BoundingBox area) {
+        if (area == null) {
+            return new BoundingBox(-90, 90, -180, 180);
+        }
+        if (area.getMinLon() < -180 || area.getMaxLon() > 180) {
+            return new BoundingBox(area.getMinLat(), area.getMaxLat(), -180, 180);
+        }
+        return area;
+    }
+
+    /**
+     * Checks if any of the given countries (all active countries if empty) has stations
+     */
+    public boolean hasStations(final Set<String> countryCodes) {
+        if (!inMemory) {
+            final Set<String> countries = countryCodes != null ? countryCodes : Collections.emptySet();
+            return stationDao.countStations(countries.isEmpty(), countries) > 0;
+        }
+        final StationsSnapshot current = snapshot;
+        final Collection<String> countries = countryCodes == null || countryCodes.isEmpty() ? current.getCountries() : countryCodes;
+        return countries.stream().anyMatch(country -> !current.getPartition(country).isEmpty());
+    }
+
+    /**
+     * Counter which increases whenever stations or photos of the given country change,
+     * or of any country if none is given. Writes of other instances are seen once synced.
+     */
+    public long getModificationCount(final String country) {
+        if (country == null) {
+            return modificationCount.get();
+        }
+        return Math.max(reloadedAt, countryModifications.getOrDefault(country, 0L));
+    }
+
+    private void markModified(final Collection<Station.Key> keys) {
+        final long count = modificationCount.incrementAndGet();
+        keys.forEach(key -> countryModifications.put(key.getCountry(), count));
+    }
+
+    /**
+     * Whether reads are served from the in-memory snapshot
+     */
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * Gets the current in-memory snapshot, null if not held in memory
+     */
+    public StationsSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replaces the in-memory snapshot with a fresh copy of all stations of the active countries
+     */
+    public void reload() {
+        if (!inMemory) {
+            reloadedAt = modificationCount.incrementAndGet();
+            return;
+        }
+        // read first, so the changes logged while loading are synced again
+        final long version = changeDao.getVersion();
+        final Set<String> activeCountries = countryDao.list(true).stream().map(Country::getCode).collect(Collectors.toSet());
+        final Set<Station> stations = stationDao.all().stream()
+                .filter(station -> station.getKey().getCountry() != null)
+                .collect(Collectors.toSet());
+        final StationsStatistics newStatistics = StationsStatistics.of(stationDao.countByCountryAndPhotographer());
+        final List<Station> imports = stationDao.findRecentImports(Long.MIN_VALUE, Long.MAX_VALUE, "", "", RECENT_IMPORTS);
+        synchronized (writeLock) {
+            snapshot = StationsSnapshot.of(snapshot != null ? snapshot.getVersion() + 1 : 0, activeCountries, stations);
+            statistics = newStatistics;
+            recentImports = RecentImports.of(RECENT_IMPORTS, imports, imports.size() < RECENT_IMPORTS);
+            syncedVersion = version;
+        }
+        reloadedAt = modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Applies the changes logged by other instances since the last sync: re-reads the changed stations into the snapshot
+     * and the recent imports, and recomputes the statistics, as the previous state of a remote change is unknown.
+     * Reloads everything if the log was pruned in between.
+     */
+    public void syncChanges() {
+        if (!inMemory) {
+            return;
+        }
+        final long synced = syncedVersion;
+        final long version = changeDao.getVersion();
+        if (version <= synced) {
+            return;
+        }
+        if (synced < changeDao.getFirstVersion() - 1) {
+            reload();
+            return;
+        }
+        // the versions are consecutive, so all of them are our own if their count matches
+        final NavigableSet<Long> own = ownVersions.subSet(synced, false, version, true);
+        if (own.size() < version - synced) {
+            final List<Station.Key> keys = changeDao.findChangedKeys(synced, version, true, Collections.emptySet());
+            synchronized (writeLock) {
+                final List<Station> stations = new ArrayList<>(keys.size());
+                for (final Station.Key key : keys) {
+                    final Station station = findByKey(key);
+                    if (station != null) {
+                        stations.add(station);
+                    }
+                    if (station != null && station.getCreatedAt() != null) {
+                        recentImports.add(key, station.getCreatedAt());
+                    } else {
+                        recentImports.remove(key);
+                    }
+                }
+                snapshot = snapshot.with(keys, stations);
+                statistics = StationsStatistics.of(stationDao.countByCountryAndPhotographer());
+            }
+            markModified(keys);
+        }
+        // also drops own versions logged only after an earlier sync treated them as foreign
+        ownVersions.headSet(version, true).clear();
+        syncedVersion = version;
+    }
+
+    /**
+     * Re-reads the given stations from the DB and swaps them into a new snapshot
+     */
+    private void refresh(final Collection<Station.Key> keys) {
+        if (inMemory) {
+            synchronized (writeLock) {
+                final List<Station> stations = keys.stream()
+                        .map(this::findByKey)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+                snapshot = snapshot.with(keys, stations);
+            }
+        }
+        markModified(keys);
+    }
+
+    /**
+     * Runs the write in one transaction with the log of the changed stations, then refreshes them
+     */
+    private void write(final Collection<Station.Key> keys, final Consumer<ChangeDao> write) {
+        logged(keys, changeDao.write(keys, write));
+        refresh(keys);
+    }
+
+    /**
+     * Remembers the version of an own change, which doesn't need to be synced
+     */
+    private void logged(final Collection<Station.Key> keys, final long version) {
+        if (inMemory && !keys.isEmpty()) {
+            ownVersions.add(version);
+        }
+    }
+
+    /**
+     * Gets the current state of the stations changed after the given change version, or just the current version if null.
+     * Stations which no longer exist (or whose country got inactive) are reported as deletions.
+     * For version 0, or one older than the kept log, all stations are returned as a full replacement.
+     */
+    public StationChanges getChanges(final Long since, final Set<String> countryCodes) {
+        final long version = changeDao.getVersion();
+        if (since == null || since > 0 && since >= version) {
+            return new StationChanges(version, false, Collections.emptyList(), Collections.emptyList());
+        }
+        if (since <= 0 || since < changeDao.getFirstVersion() - 1) {
+            // read after the version, so the stations contain at least all changes up to it
+            return new StationChanges(version, true, new ArrayList<>(getStationsByCountry(countryCodes).values()), Collections.emptyList());
+        }
+        final Set<String> countries = countryCodes != null ? countryCodes : Collections.emptySet();
+        final List<Station> upserts = new ArrayList<>();
+        final List<Station.Key> deletions = new ArrayList<>();
+        for (final Station.Key key : changeDao.findChangedKeys(since, version, countries.isEmpty(), countries)) {
+            final Station station = getStation(key);
+            if (station != null) {
+                upserts.add(station);
+            } else {
+                deletions.add(key);
+            }
+        }
+        return new StationChanges(version, false, upserts, deletions);
+    }
+
+    /**
+     * Deletes the change log entries older than the given time, clients which synced before get a full replacement
+     */
+    public int pruneChanges(final long before) {
+        return changeDao.prune(before);
+    }
+
+    /**
+     * Runs a change of the station, which may affect the statistics. The station is read before and after the write
+     * in its transaction, and the lock spans up to the swap of the snapshot, so concurrent changes count each transition once.
+     */
+    private void change(final Station.Key key, final Consumer<ChangeDao> change) {
+        final Set<Station.Key> keys = Collections.singleton(key);
+        if (!inMemory) {
+            write(keys, change);
+            return;
+        }
+        synchronized (writeLock) {
+            final List<Station> states = new ArrayList<>(2);
+            logged(keys, changeDao.write(keys, dao -> {
+                states.add(findByKey(dao.stationDao(), key));
+                change.accept(dao);
+                states.add(findByKey(dao.stationDao(), key));
+            }));
+            final Station after = states.get(1);
+            statistics.change(states.get(0), after);
+            snapshot = snapshot.with(keys, after != null ? Collections.singletonList(after) : Collections.emptyList());
+        }
+        markModified(keys);
+    }
+
+    private void photographerNamed(final User user) {
+        if (inMemory && user != null) {
+            statistics.photographerChanged(user.getId(), user.getName());
+        }
+    }
+
+    /**
+     * Recomputes the in-memory statistics from the database
+     * @return the differences to the incrementally maintained counters, one line per country
+     */
+    public List<String> reconcileStatistics() {
+        if (!inMemory) {
+            return Collections.emptyList();
+        }
+        final StationsStatistics recomputed = StationsStatistics.of(stationDao.countByCountryAndPhotographer());
+        synchronized (writeLock) {
+            return statistics.reconcile(recomputed);
         }
-        return stations.stream().collect(Collectors.toMap(Station::getKey, Function.identity()));
     }
 
     public Set<Country> getCountries() {
@@ -41,9 +443,11 @@ public class StationsRepository {
     }
 
     public String getCountryStatisticMessage() {
+        final Map<String, Statistic> statistics = getStatistics().stream()
+                .collect(Collectors.toMap(Statistic::getCountryCode, Function.identity()));
         final StringBuilder message = new StringBuilder("Countries statistic: \n");
         for (final Country aCountry : getCountries()) {
-            final Statistic stat = getStatistic(aCountry.getCode());
+            final Statistic stat = statistics.getOrDefault(aCountry.getCode(), new Statistic(aCountry.getCode(), 0, 0, 0));
             message.append("- ")
                     .append(aCountry.getCode())
                     .append(": ")
@@ -55,11 +459,71 @@ public class StationsRepository {
         return message.toString();
     }
 
+    /**
+     * Finds the stations whose title contains the given name, ignoring case, umlauts and diacritics when held in memory
+     */
     public Map<Station.Key, String> findByName(final String name) {
-        return stationDao.findByName(name);
+        if (!inMemory) {
+            return stationDao.findByName(name);
+        }
+        final StationsSnapshot current = snapshot;
+        final Map<Station.Key, String> result = new HashMap<>();
+        for (final String country : current.getCountries()) {
+            for (final Station.Key key : current.getSearchIndex(country).find(name)) {
+                final Station station = current.get(key);
+                if (station != null) {
+                    result.put(key, station.getTitle());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Autocompletes the query to up to limit stations of the given countries (all active countries if empty),
+     * matching the start of the title, of any word in the title or of the DS100 code
+     */
+    public List<Station> searchStations(final String query, final Set<String> countryCodes, final int limit) {
+        final Comparator<Station> byTitle = Comparator.comparing((Station station) -> StationsSearchIndex.normalize(station.getTitle()))
+                .thenComparing(Station::getKey);
+        if (!inMemory) {
+            // candidates by the longest word of the query, completed like in memory
+            final Set<String> countries = countryCodes != null ? countryCodes : Collections.emptySet();
+            final String word = Arrays.stream(query.split("[^\\p{L}\\p{N}]+")).max(Comparator.comparingInt(String::length)).orElse(query);
+            final List<Station> candidates = stationDao.findByTitleOrDS100(countries.isEmpty(), countries, word);
+            final Map<Station.Key, Station> byKey = candidates.stream().collect(Collectors.toMap(Station::getKey, Function.identity()));
+            return new StationsSearchIndex(candidates).complete(query, Integer.MAX_VALUE).stream()
+                    .map(byKey::get)
+                    .sorted(byTitle)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+        final StationsSnapshot current = snapshot;
+        final Collection<String> countries = countryCodes == null || countryCodes.isEmpty() ? current.getCountries() : countryCodes;
+        // the first matches of each country, merged by title
+        return countries.stream()
+                .flatMap(country -> current.getSearchIndex(country).complete(query, limit).stream())
+                .map(current::get)
+                .filter(Objects::nonNull)
+                .sorted(byTitle)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Statistics of all countries with stations (active or not), ordered by country code
+     */
+    public List<Statistic> getStatistics() {
+        if (inMemory) {
+            return statistics.getAll();
+        }
+        return stationDao.getStatistics();
     }
 
     public Statistic getStatistic(final String country) {
+        if (inMemory) {
+            return statistics.get(country);
+        }
         return stationDao.getStatistic(country);
     }
 
@@ -77,43 +541,203 @@ public class StationsRepository {
         return stations.stream().findFirst().orElse(null);
     }
 
+    /**
+     * Gets a station of an active country, from the in-memory snapshot if available
+     */
+    public Station getStation(final Station.Key key) {
+        if (!inMemory) {
+            return findByKey(key);
+        }
+        return snapshot.get(key);
+    }
+
     public Station findByKey(final Station.Key key) {
+        return findByKey(stationDao, key);
+    }
+
+    private static Station findByKey(final StationDao stationDao, final Station.Key key) {
         return stationDao.findByKey(key.getCountry(), key.getId()).stream().findFirst().orElse(null);
     }
 
-    public Map<String, Long> getPhotographerMap(final String country) {
-        return stationDao.getPhotographerMap(country);
+    /**
+     * Photographers with their number of photos, most photos first
+     * @param country null for all countries
+     */
+    public Map<String, Long> getPhotographerMap(final String country, final int offset, final int limit) {
+        if (inMemory) {
+            return statistics.getPhotographers(country, offset, limit);
+        }
+        return stationDao.getPhotographerMap(country).entrySet().stream()
+                .skip(offset)
+                .limit(limit)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Long::sum, LinkedHashMap::new));
     }
 
     public void insert(final Station station) {
-        stationDao.insert(station);
+        change(station.getKey(), dao -> {
+            dao.stationDao().insert(station);
+            claimZ(dao.sequenceDao(), station.getKey().getId());
+        });
+    }
+
+    /**
+     * Moves the Z sequence past the id of a new station, so an id entered by hand isn't allocated again
+     */
+    private static void claimZ(final SequenceDao sequenceDao, final String id) {
+        if (Z_ID.matcher(id).matches()) {
+            sequenceDao.advance(Z_SEQUENCE, Long.parseLong(id.substring(1)) + 1);
+        }
     }
 
     public void delete(final Station station) {
-        stationDao.delete(station);
+        change(station.getKey(), dao -> dao.stationDao().delete(station));
+        if (inMemory) {
+            recentImports.remove(station.getKey());
+        }
     }
 
     public void updateActive(final Station station) {
-        stationDao.updateActive(station);
+        write(Collections.singleton(station.getKey()), dao -> dao.stationDao().updateActive(station));
+    }
+
+    public void insertPhoto(final Photo photo) {
+        photographerNamed(photo.getPhotographer());
+        change(photo.getStationKey(), dao -> dao.photoDao().insert(photo));
+        photoImported(photo);
+    }
+
+    public void updatePhoto(final Photo photo) {
+        photographerNamed(photo.getPhotographer());
+        change(photo.getStationKey(), dao -> dao.photoDao().update(photo));
+        photoImported(photo);
+    }
+
+    private void photoImported(final Photo photo) {
+        if (inMemory && photo.getCreatedAt() != null) {
+            recentImports.add(photo.getStationKey(), photo.getCreatedAt());
+        }
+    }
+
+    public void deletePhoto(final Station.Key key) {
+        change(key, dao -> dao.photoDao().delete(key));
+        if (inMemory) {
+            recentImports.remove(key);
+        }
+    }
+
+    /**
+     * Photographer name, url or anonymous flag changed, which is denormalized into all stations with a photo of this user
+     */
+    public void photographerChanged(final User user) {
+        photographerNamed(user);
+        final List<Station.Key> keys;
+        if (inMemory) {
+            keys = new ArrayList<>(snapshot.getPhotographerIndex().getKeys(user.getId()));
+        } else {
+            keys = stationDao.findByPhotographerId(user.getId()).stream().map(Station::getKey).collect(Collectors.toList());
+        }
+        // the user is already saved, only the change of its stations is logged
+        write(keys, dao -> { });
+    }
+
+    /**
+     * Finds up to limit stations with photos imported after fromTimestampMillis, newest first,
+     * from the buffer of recent imports if it reaches back that far
+     * @param beforeKey station of the import to continue before, together with beforeCreatedAt, null to start with the newest
+     */
+    public List<Station> findRecentImports(final long fromTimestampMillis, final long beforeCreatedAt, final Station.Key beforeKey, final int limit) {
+        if (inMemory) {
+            // imports of stations which are gone are skipped, so more keys are read until the page is full
+            int wanted = limit;
+            List<Station.Key> keys = recentImports.find(fromTimestampMillis, beforeCreatedAt, beforeKey, wanted);
+            while (keys != null) {
+                final List<Station> stations = keys.stream()
+                        .map(this::findImported)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+                if (stations.size() >= limit || keys.size() < wanted) {
+                    return stations.size() > limit ? stations.subList(0, limit) : stations;
+                }
+                wanted += limit - stations.size();
+                keys = recentImports.find(fromTimestampMillis, beforeCreatedAt, beforeKey, wanted);
+            }
+        }
+        return stationDao.findRecentImports(fromTimestampMillis, beforeKey != null ? beforeCreatedAt : Long.MAX_VALUE,
+                beforeKey != null ? beforeKey.getCountry() : "", beforeKey != null ? beforeKey.getId() : "", limit);
     }
 
-    public List<Station> findRecentImports(final long fromTimestampMillis) {
-        return stationDao.findRecentImports(fromTimestampMillis);
+    /**
+     * Stations of inactive countries aren't part of the snapshot, but their imports are listed as well
+     */
+    private Station findImported(final Station.Key key) {
+        final Station station = snapshot.get(key);
+        return station != null ? station : findByKey(key);
     }
 
+    /**
+     * Counts the stations within 0.5 km of the coordinates, of all countries.
+     * In memory from the geo indexes of the snapshot, the countries which aren't in it by the database.
+     */
     public int countNearbyCoordinates(final Coordinates coordinates) {
-        return stationDao.countNearbyCoordinates(coordinates);
+        final BoundingBox area = nearbyArea(coordinates);
+        if (!inMemory) {
+            return stationDao.countNearbyCoordinates(coordinates, area, true, Collections.emptySet());
+        }
+        final StationsSnapshot current = snapshot;
+        return (int) findNearbyInSnapshot(current, coordinates, area).count()
+                + stationDao.countNearbyCoordinates(coordinates, area, current.getCountries().isEmpty(), current.getCountries());
+    }
+
+    /**
+     * Finds the stations within 0.5 km of the coordinates, of all countries.
+     * In memory from the geo indexes of the snapshot, the countries which aren't in it by the database.
+     */
+    public List<Station> findNearbyStations(final Coordinates coordinates) {
+        final BoundingBox area = nearbyArea(coordinates);
+        if (!inMemory) {
+            return stationDao.findNearbyCoordinates(coordinates, area, true, Collections.emptySet());
+        }
+        final StationsSnapshot current = snapshot;
+        final List<Station> nearby = findNearbyInSnapshot(current, coordinates, area).collect(Collectors.toList());
+        nearby.addAll(stationDao.findNearbyCoordinates(coordinates, area, current.getCountries().isEmpty(), current.getCountries()));
+        return nearby;
+    }
+
+    private static Stream<Station> findNearbyInSnapshot(final StationsSnapshot current, final Coordinates coordinates, final BoundingBox area) {
+        final StationFilter filter = new StationFilter(null, null, null, null, null, null, area);
+        return current.getCountries().stream().flatMap(country -> current.findInArea(country, filter))
+                .filter(station -> isNearby(station.getCoordinates(), coordinates));
+    }
+
+    /**
+     * The simple pythagoras (only valid for a few km) of the database query
+     */
+    private static boolean isNearby(final Coordinates a, final Coordinates b) {
+        return Math.sqrt(Math.pow(71.5 * (a.getLon() - b.getLon()), 2) + Math.pow(111.3 * (a.getLat() - b.getLat()), 2)) < NEARBY_DISTANCE;
+    }
+
+    /**
+     * Area of the nearby check, by the same km per degree as its distance approximation
+     */
+    private static BoundingBox nearbyArea(final Coordinates coordinates) {
+        final double latDelta = NEARBY_DISTANCE / 111.3;
+        final double lonDelta = NEARBY_DISTANCE / 71.5;
+        return new BoundingBox(coordinates.getLat() - latDelta, coordinates.getLat() + latDelta,
+                coordinates.getLon() - lonDelta, coordinates.getLon() + lonDelta);
     }
 
+    /**
+     * Allocates a new id for a station without an official one, every call returns another id
+     */
     public String getNextZ() {
-        return "Z" + (stationDao.getMaxZ() + 1);
+        return "Z" + zIds.next();
     }
 
     public void changeStationTitle(final Station station, final String newTitle) {
-        stationDao.changeStationTitle(station, newTitle);
+        write(Collections.singleton(station.getKey()), dao -> dao.stationDao().changeStationTitle(station, newTitle));
     }
 
     public void updateLocation(final Station station, final Coordinates coordinates) {
-        stationDao.updateLocation(station, coordinates);
+        write(Collections.singleton(station.getKey()), dao -> dao.stationDao().updateLocation(station, coordinates));
     }
 }
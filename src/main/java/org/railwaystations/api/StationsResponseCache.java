@@ -0,0 +1,183 @@
+package org.railwaystations.api;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationFilter;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized and gzip compressed station list responses by countries, filter and media type.
+ * An entry is valid until stations or photos of one of its countries change.
+ */
+public class StationsResponseCache {
+
+    private static final Type STREAM_TYPE = new GenericType<Stream<Station>>() { }.getType();
+
+    private final StationsRepository repository;
+    private final Map<MediaType, MessageBodyWriter<Stream<Station>>> writers;
+    private final Cache<Key, Entry> cache;
+
+    public StationsResponseCache(final StationsRepository repository, final Map<MediaType, MessageBodyWriter<Stream<Station>>> writers,
+                                 final long maxBytes) {
+        this.repository = repository;
+        this.writers = writers;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((final Key key, final Entry entry) -> entry.getWeight())
+                .build();
+    }
+
+    /**
+     * Gets the cached response, serializes it if missing or outdated. Concurrent requests of a missing response wait
+     * for a single serialization. Only for an in-memory repository, as without the snapshot the modification counters
+     * don't see the changes of other instances.
+     */
+    public Entry get(final Set<String> countryCodes, final StationFilter filter, final MediaType mediaType) {
+        final Key key = new Key(countryCodes, filter, new MediaType(mediaType.getType(), mediaType.getSubtype()));
+        final List<Long> modifications = getModifications(key.countries);
+        final Entry cached = cache.getIfPresent(key);
+        if (cached != null) {
+            if (cached.modifications.equals(modifications)) {
+                return cached;
+            }
+            cache.asMap().remove(key, cached);
+        }
+        // read the modifications before serializing, so a concurrent change invalidates the new entry
+        final Entry entry;
+        try {
+            entry = cache.get(key, () -> new Entry(serialize(key), modifications));
+        } catch (final UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (final ExecutionException e) {
+            throw new WebApplicationException(e.getCause());
+        }
+        if (!entry.modifications.equals(modifications)) {
+            // loaded by a request which started before the latest change
+            return new Entry(serialize(key), modifications);
+        }
+        return entry;
+    }
+
+    private List<Long> getModifications(final List<String> countries) {
+        if (countries.isEmpty()) {
+            return Collections.singletonList(repository.getModificationCount(null));
+        }
+        return countries.stream().map(repository::getModificationCount).collect(Collectors.toList());
+    }
+
+    private byte[] serialize(final Key key) {
+        final MessageBodyWriter<Stream<Station>> writer = writers.get(key.mediaType);
+        if (writer == null) {
+            throw new WebApplicationException(406);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writer.writeTo(repository.findStations(new HashSet<>(key.countries), key.filter), Stream.class, STREAM_TYPE,
+                    new Annotation[0], key.mediaType, new MultivaluedHashMap<>(), out);
+        } catch (final IOException e) {
+            throw new WebApplicationException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public static final class Entry {
+        private final byte[] bytes;
+        private final byte[] gzipped;
+        private final String hash;
+        private final List<Long> modifications;
+
+        private Entry(final byte[] bytes, final List<Long> modifications) {
+            this.bytes = bytes;
+            this.gzipped = gzip(bytes);
+            this.hash = DigestUtils.sha1Hex(bytes);
+            this.modifications = modifications;
+        }
+
+        private static byte[] gzip(final byte[] bytes) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+            try (OutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(bytes);
+            } catch (final IOException e) {
+                throw new WebApplicationException(e);
+            }
+            return out.toByteArray();
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+
+        /**
+         * The compressed representation gets its own ETag, as it differs byte-wise
+         */
+        public EntityTag getEtag(final boolean gzipped) {
+            return new EntityTag(gzipped ? hash + "-gzip" : hash);
+        }
+
+        private int getWeight() {
+            return bytes.length + gzipped.length;
+        }
+    }
+
+    private static final class Key {
+        private final List<String> countries;
+        private final StationFilter filter;
+        private final MediaType mediaType;
+
+        private Key(final Set<String> countryCodes, final StationFilter filter, final MediaType mediaType) {
+            this.countries = countryCodes == null ? Collections.emptyList() : countryCodes.stream().sorted().collect(Collectors.toList());
+            this.filter = filter;
+            this.mediaType = mediaType;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return countries.equals(key.countries) && filter.equals(key.filter) && mediaType.equals(key.mediaType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(countries, filter, mediaType);
+        }
+    }
+
+}
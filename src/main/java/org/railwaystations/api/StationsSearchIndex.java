@@ -0,0 +1,210 @@
+package org.railwaystations.api;
+
+import org.apache.commons.lang3.StringUtils;
+import org.railwaystations.api.model.Station;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Search index over the normalized titles and DS100 codes of the stations of one country: sorted prefixes for autocompletion
+ * and title trigrams for substring matches. It is immutable once published, changes replace only the posting lists of the
+ * terms of changed stations and share all others with the previous version. The posting lists are sorted key arrays.
+ */
+public final class StationsSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final PersistentTreeMap<String, Station.Key[]> prefixes;
+    private final PersistentTreeMap<String, Station.Key[]> trigrams;
+    private final PersistentTreeMap<Station.Key, String> titles;
+
+    public StationsSearchIndex(final Collection<Station> stations) {
+        final Map<Station.Key, String> titleMap = new HashMap<>();
+        final Map<String, List<Station.Key>> prefixLists = new HashMap<>();
+        final Map<String, List<Station.Key>> gramLists = new HashMap<>();
+        for (final Station station : stations) {
+            final String title = normalize(station.getTitle());
+            titleMap.put(station.getKey(), title);
+            terms(title, station.getDS100()).forEach(term -> prefixLists.computeIfAbsent(term, t -> new ArrayList<>()).add(station.getKey()));
+            grams(title).forEach(gram -> gramLists.computeIfAbsent(gram, g -> new ArrayList<>()).add(station.getKey()));
+        }
+        titles = PersistentTreeMap.of(titleMap);
+        prefixes = toPostings(prefixLists);
+        trigrams = toPostings(gramLists);
+    }
+
+    private static PersistentTreeMap<String, Station.Key[]> toPostings(final Map<String, List<Station.Key>> lists) {
+        final Map<String, Station.Key[]> postings = new HashMap<>(lists.size());
+        lists.forEach((term, keys) -> postings.put(term, toSortedArray(keys)));
+        return PersistentTreeMap.of(postings);
+    }
+
+    private static Station.Key[] toSortedArray(final List<Station.Key> keys) {
+        final Station.Key[] array = keys.toArray(new Station.Key[0]);
+        Arrays.sort(array);
+        return array;
+    }
+
+    /**
+     * Lower case, umlauts transcribed, diacritics removed and any other non alphanumeric characters reduced to a single blank
+     */
+    public static String normalize(final String text) {
+        if (text == null) {
+            return "";
+        }
+        final String transcribed = text.toLowerCase(Locale.ROOT)
+                .replace("ä", "ae").replace("ö", "oe").replace("ü", "ue").replace("ß", "ss");
+        final String stripped = DIACRITICS.matcher(Normalizer.normalize(transcribed, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(stripped).replaceAll(" ").trim();
+    }
+
+    private StationsSearchIndex(final PersistentTreeMap<String, Station.Key[]> prefixes, final PersistentTreeMap<String, Station.Key[]> trigrams,
+                                final PersistentTreeMap<Station.Key, String> titles) {
+        this.prefixes = prefixes;
+        this.trigrams = trigrams;
+        this.titles = titles;
+    }
+
+    /**
+     * Creates the next version of this index, the previous versions of changed stations are removed first.
+     */
+    public StationsSearchIndex with(final Collection<Station> removed, final Collection<Station> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return this;
+        }
+        PersistentTreeMap<String, Station.Key[]> nextPrefixes = prefixes;
+        PersistentTreeMap<String, Station.Key[]> nextTrigrams = trigrams;
+        PersistentTreeMap<Station.Key, String> nextTitles = titles;
+        for (final Station station : removed) {
+            final Station.Key key = station.getKey();
+            final String title = normalize(station.getTitle());
+            nextTitles = nextTitles.remove(key);
+            for (final String term : terms(title, station.getDS100())) {
+                nextPrefixes = nextPrefixes.compute(term, (t, keys) -> SortedKeys.remove(keys, key));
+            }
+            for (final String gram : grams(title)) {
+                nextTrigrams = nextTrigrams.compute(gram, (g, keys) -> SortedKeys.remove(keys, key));
+            }
+        }
+        for (final Station station : added) {
+            final Station.Key key = station.getKey();
+            final String title = normalize(station.getTitle());
+            nextTitles = nextTitles.put(key, title);
+            for (final String term : terms(title, station.getDS100())) {
+                nextPrefixes = nextPrefixes.compute(term, (t, keys) -> SortedKeys.insert(keys, key));
+            }
+            for (final String gram : grams(title)) {
+                nextTrigrams = nextTrigrams.compute(gram, (g, keys) -> SortedKeys.insert(keys, key));
+            }
+        }
+        return new StationsSearchIndex(nextPrefixes, nextTrigrams, nextTitles);
+    }
+
+    /**
+     * Checks whether the search terms of the two station versions differ
+     */
+    public static boolean isChanged(final Station before, final Station after) {
+        return !Objects.equals(before.getTitle(), after.getTitle()) || !Objects.equals(before.getDS100(), after.getDS100());
+    }
+
+    /**
+     * Finds up to limit stations whose title, any word suffix of the title or DS100 code starts with the query, ordered by match
+     */
+    public List<Station.Key> complete(final String query, final int limit) {
+        final String prefix = normalize(query);
+        final Set<Station.Key> result = new LinkedHashSet<>();
+        if (prefix.isEmpty()) {
+            return new ArrayList<>(result);
+        }
+        for (final Iterator<Map.Entry<String, Station.Key[]>> terms = prefixes.iterator(prefix); terms.hasNext(); ) {
+            final Map.Entry<String, Station.Key[]> term = terms.next();
+            if (!term.getKey().startsWith(prefix)) {
+                break;
+            }
+            for (final Station.Key key : term.getValue()) {
+                result.add(key);
+                if (result.size() == limit) {
+                    return new ArrayList<>(result);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Finds the stations whose title contains the query, queries shorter than a trigram scan all titles
+     */
+    public Set<Station.Key> find(final String query) {
+        final String substring = normalize(query);
+        if (substring.length() < GRAM_LENGTH) {
+            final Set<Station.Key> result = new LinkedHashSet<>();
+            for (final Map.Entry<Station.Key, String> title : titles) {
+                if (title.getValue().contains(substring)) {
+                    result.add(title.getKey());
+                }
+            }
+            return result;
+        }
+        Station.Key[] candidates = null;
+        for (final String gram : grams(substring)) {
+            final Station.Key[] keys = trigrams.get(gram);
+            if (keys == null) {
+                return Collections.emptySet();
+            }
+            if (candidates == null || keys.length < candidates.length) {
+                candidates = keys;
+            }
+        }
+        final Set<Station.Key> result = new LinkedHashSet<>();
+        for (final Station.Key key : candidates) {
+            final String title = titles.get(key);
+            if (title != null && title.contains(substring)) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The title and every suffix of it starting at a word, so "Frankfurt (Main) Hbf" can be completed by "main h"
+     */
+    private static Set<String> terms(final String title, final String ds100) {
+        final Set<String> terms = new HashSet<>();
+        if (!title.isEmpty()) {
+            terms.add(title);
+            for (int i = title.indexOf(' '); i >= 0; i = title.indexOf(' ', i + 1)) {
+                terms.add(title.substring(i + 1));
+            }
+        }
+        final String code = normalize(ds100);
+        if (StringUtils.isNotEmpty(code)) {
+            terms.add(code);
+        }
+        return terms;
+    }
+
+    private static Set<String> grams(final String text) {
+        final Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+}
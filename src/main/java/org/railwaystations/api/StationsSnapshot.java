@@ -0,0 +1,203 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationFilter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Immutable, versioned view of all stations of the active countries, partitioned by country into column stores.
+ * Changes never modify a snapshot, they create a new one with copies of the changed blocks of the affected partitions only.
+ * The indexes are built on first use and copied and updated for the changed stations,
+ * so readers of an older snapshot never see newer stations.
+ */
+public final class StationsSnapshot {
+
+    private static final StationsColumns EMPTY = new StationsColumns(Collections.emptyList());
+
+    private final long version;
+    private final Map<String, StationsColumns> partitions;
+    private final Map<String, StationsGeoIndex> geoIndexes;
+    private final Map<String, StationsTilePyramid> tilePyramids;
+    private final Map<String, StationsSearchIndex> searchIndexes;
+    private final StationsPhotographerIndex photographerIndex;
+
+    private StationsSnapshot(final long version, final Map<String, StationsColumns> partitions,
+                             final Map<String, StationsGeoIndex> geoIndexes, final Map<String, StationsTilePyramid> tilePyramids,
+                             final Map<String, StationsSearchIndex> searchIndexes, final StationsPhotographerIndex photographerIndex) {
+        this.version = version;
+        this.partitions = partitions;
+        this.geoIndexes = geoIndexes;
+        this.tilePyramids = tilePyramids;
+        this.searchIndexes = searchIndexes;
+        this.photographerIndex = photographerIndex;
+    }
+
+    public static StationsSnapshot of(final long version, final Set<String> activeCountries, final Collection<Station> stations) {
+        final Map<String, List<Station>> countryStations = new HashMap<>();
+        activeCountries.forEach(country -> countryStations.put(country, new ArrayList<>()));
+        for (final Station station : stations) {
+            final List<Station> partition = countryStations.get(station.getKey().getCountry());
+            if (partition != null) {
+                partition.add(station);
+            }
+        }
+        final Map<String, StationsColumns> partitions = new HashMap<>();
+        countryStations.forEach((country, partition) -> partitions.put(country, new StationsColumns(partition)));
+        final StationsPhotographerIndex photographerIndex = StationsPhotographerIndex.of(flatten(countryStations));
+        return new StationsSnapshot(version, Collections.unmodifiableMap(partitions), new ConcurrentHashMap<>(),
+                new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), photographerIndex);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Set<String> getCountries() {
+        return partitions.keySet();
+    }
+
+    /**
+     * Gets the stations of the given country as a view of its column store
+     */
+    public Map<Station.Key, Station> getPartition(final String country) {
+        return getColumns(country).asMap();
+    }
+
+    /**
+     * Gets the stations of the given countries, all active countries if none are given.
+     */
+    public Map<Station.Key, Station> getStations(final Set<String> countryCodes) {
+        final Collection<String> countries = countryCodes == null || countryCodes.isEmpty() ? partitions.keySet() : countryCodes;
+        if (countries.size() == 1) {
+            return getPartition(countries.iterator().next());
+        }
+        final Map<Station.Key, Station> stations = new HashMap<>();
+        countries.forEach(country -> stations.putAll(getPartition(country)));
+        return stations;
+    }
+
+    public Station get(final Station.Key key) {
+        return getColumns(key.getCountry()).get(key);
+    }
+
+    public StationsPhotographerIndex getPhotographerIndex() {
+        return photographerIndex;
+    }
+
+    /**
+     * Gets the column store of the given country
+     */
+    public StationsColumns getColumns(final String country) {
+        return partitions.getOrDefault(country, EMPTY);
+    }
+
+    /**
+     * Gets the spatial index of the given country, which is built on first use
+     */
+    public StationsGeoIndex getGeoIndex(final String country) {
+        return geoIndexes.computeIfAbsent(country, c -> new StationsGeoIndex(getPartition(c).values()));
+    }
+
+    /**
+     * Finds the stations of the given country matching the filter with a search area: the candidates of the cells
+     * overlapping the area, or all stations if these are fewer cells
+     */
+    public Stream<Station> findInArea(final String country, final StationFilter filter) {
+        final List<Station.Key> candidates = getGeoIndex(country).find(filter.getSearchArea());
+        return candidates != null ? getColumns(country).find(filter, candidates) : getColumns(country).find(filter);
+    }
+
+    /**
+     * Gets the map tile clusters of the given country, which are built on first use
+     */
+    public StationsTilePyramid getTilePyramid(final String country) {
+        return tilePyramids.computeIfAbsent(country, c -> new StationsTilePyramid(getPartition(c).values()));
+    }
+
+    /**
+     * Gets the title search index of the given country, which is built on first use
+     */
+    public StationsSearchIndex getSearchIndex(final String country) {
+        return searchIndexes.computeIfAbsent(country, c -> new StationsSearchIndex(getPartition(c).values()));
+    }
+
+    /**
+     * Creates the next version of this snapshot. The given keys are removed first, then the given stations are (re-)added.
+     * Stations of countries not part of this snapshot are ignored.
+     */
+    public StationsSnapshot with(final Collection<Station.Key> removed, final Collection<Station> upserted) {
+        // the new version of each changed key, null if removed
+        final Map<String, Map<Station.Key, Station>> changes = new HashMap<>();
+        for (final Station.Key key : removed) {
+            if (partitions.containsKey(key.getCountry())) {
+                changes.computeIfAbsent(key.getCountry(), c -> new HashMap<>()).put(key, null);
+            }
+        }
+        for (final Station station : upserted) {
+            if (partitions.containsKey(station.getKey().getCountry())) {
+                changes.computeIfAbsent(station.getKey().getCountry(), c -> new HashMap<>()).put(station.getKey(), station);
+            }
+        }
+
+        final Map<String, StationsColumns> newPartitions = new HashMap<>(partitions);
+        final Map<String, List<Station>> oldStations = new HashMap<>();
+        final Map<String, List<Station>> newStations = new HashMap<>();
+        final Map<String, List<Station>> oldTerms = new HashMap<>();
+        final Map<String, List<Station>> newTerms = new HashMap<>();
+        changes.forEach((country, countryChanges) -> {
+            final StationsColumns columns = partitions.get(country);
+            final List<Station.Key> gone = new ArrayList<>();
+            final List<Station> added = new ArrayList<>();
+            countryChanges.forEach((key, station) -> {
+                final Station old = columns.get(key);
+                if (station == null) {
+                    gone.add(key);
+                } else {
+                    added.add(station);
+                }
+                addTo(oldStations, old);
+                addTo(newStations, station);
+                if (old == null || station == null || StationsSearchIndex.isChanged(old, station)) {
+                    addTo(oldTerms, old);
+                    addTo(newTerms, station);
+                }
+            });
+            newPartitions.put(country, columns.with(gone, added));
+        });
+
+        final Map<String, StationsGeoIndex> newGeoIndexes = new ConcurrentHashMap<>(geoIndexes);
+        final Map<String, StationsTilePyramid> newTilePyramids = new ConcurrentHashMap<>(tilePyramids);
+        final Map<String, StationsSearchIndex> newSearchIndexes = new ConcurrentHashMap<>(searchIndexes);
+        for (final String country : changes.keySet()) {
+            final List<Station> countryOld = oldStations.getOrDefault(country, Collections.emptyList());
+            final List<Station> countryNew = newStations.getOrDefault(country, Collections.emptyList());
+            newGeoIndexes.computeIfPresent(country, (c, geoIndex) -> geoIndex.with(countryOld, countryNew));
+            newTilePyramids.computeIfPresent(country, (c, pyramid) -> pyramid.with(countryOld, countryNew));
+            newSearchIndexes.computeIfPresent(country, (c, searchIndex) -> searchIndex.with(
+                    oldTerms.getOrDefault(c, Collections.emptyList()), newTerms.getOrDefault(c, Collections.emptyList())));
+        }
+        return new StationsSnapshot(version + 1, Collections.unmodifiableMap(newPartitions), newGeoIndexes,
+                newTilePyramids, newSearchIndexes, photographerIndex.with(flatten(oldStations), flatten(newStations)));
+    }
+
+    private static void addTo(final Map<String, List<Station>> stations, final Station station) {
+        if (station != null) {
+            stations.computeIfAbsent(station.getKey().getCountry(), c -> new ArrayList<>()).add(station);
+        }
+    }
+
+    private static List<Station> flatten(final Map<String, List<Station>> stations) {
+        return stations.values().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+}
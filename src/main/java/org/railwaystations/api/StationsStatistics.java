@@ -0,0 +1,219 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.Statistic;
+import org.railwaystations.api.model.StatisticCount;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Counters of the stations, photos and photographers per country and in total, for all countries (active or not),
+ * with a leaderboard of the photographers sorted by their number of photos.
+ * Initialized from the database and updated per changed station.
+ */
+public class StationsStatistics {
+
+    private Counters all = new Counters();
+    private Map<String, Counters> byCountry = new HashMap<>();
+    private Map<Integer, String> photographerNames = new HashMap<>();
+
+    public static StationsStatistics of(final Collection<StatisticCount> counts) {
+        final StationsStatistics statistics = new StationsStatistics();
+        for (final StatisticCount count : counts) {
+            if (count.getPhotographerId() != null) {
+                statistics.photographerNames.put(count.getPhotographerId(), count.getPhotographerName());
+            }
+        }
+        for (final StatisticCount count : counts) {
+            statistics.all.add(count);
+            statistics.byCountry.computeIfAbsent(count.getCountryCode(), c -> new Counters()).add(count);
+        }
+        return statistics;
+    }
+
+    /**
+     * @param country null for all countries
+     */
+    public synchronized Statistic get(final String country) {
+        final Counters counters = country == null ? all : byCountry.get(country);
+        return counters != null ? counters.toStatistic(null) : new Statistic(0, 0, 0);
+    }
+
+    /**
+     * Statistics of all countries, ordered by country code
+     */
+    public synchronized List<Statistic> getAll() {
+        final List<Statistic> statistics = new ArrayList<>();
+        new TreeMap<>(byCountry).forEach((country, counters) -> statistics.add(counters.toStatistic(country)));
+        return statistics;
+    }
+
+    /**
+     * Photographers with their number of photos, most photos first and then by name
+     * @param country null for all countries
+     */
+    public synchronized Map<String, Long> getPhotographers(final String country, final int offset, final int limit) {
+        final Map<String, Long> photographers = new LinkedHashMap<>();
+        final Counters counters = country == null ? all : byCountry.get(country);
+        if (counters != null) {
+            counters.leaderboard.stream().skip(offset).limit(limit)
+                    .forEach(rank -> photographers.merge(rank.name, (long) rank.photos, Long::sum));
+        }
+        return photographers;
+    }
+
+    /**
+     * Registers the name of a photographer, re-sorting all leaderboards containing it on rename
+     */
+    public synchronized void photographerChanged(final int photographerId, final String name) {
+        if (Objects.equals(photographerNames.put(photographerId, name), name)) {
+            return;
+        }
+        all.rename(photographerId, name);
+        byCountry.values().forEach(counters -> counters.rename(photographerId, name));
+    }
+
+    /**
+     * Applies the change of a station
+     * @param before state before the change, null if the station was inserted
+     * @param after state after the change, null if the station was deleted
+     */
+    public synchronized void change(final Station before, final Station after) {
+        if (before != null) {
+            all.add(before, -1, photographerName(before));
+            byCountry.computeIfAbsent(before.getKey().getCountry(), c -> new Counters()).add(before, -1, photographerName(before));
+        }
+        if (after != null) {
+            all.add(after, 1, photographerName(after));
+            byCountry.computeIfAbsent(after.getKey().getCountry(), c -> new Counters()).add(after, 1, photographerName(after));
+        }
+    }
+
+    private String photographerName(final Station station) {
+        return photographerNames.getOrDefault(station.getPhotographerId(), station.getPhotographer());
+    }
+
+    /**
+     * Replaces the counters with freshly computed ones
+     * @return the differences found, one line per country
+     */
+    public synchronized List<String> reconcile(final StationsStatistics recomputed) {
+        final List<String> drift = new ArrayList<>();
+        final Set<String> countries = new TreeSet<>(byCountry.keySet());
+        countries.addAll(recomputed.byCountry.keySet());
+        for (final String country : countries) {
+            addDrift(drift, country, get(country), recomputed.get(country));
+        }
+        addDrift(drift, "all", get(null), recomputed.get(null));
+        all = recomputed.all;
+        byCountry = recomputed.byCountry;
+        photographerNames = recomputed.photographerNames;
+        return drift;
+    }
+
+    private static void addDrift(final List<String> drift, final String country, final Statistic counted, final Statistic actual) {
+        if (counted.getTotal() != actual.getTotal() || counted.getWithPhoto() != actual.getWithPhoto()
+                || counted.getPhotographers() != actual.getPhotographers()) {
+            drift.add(String.format("%s: total %d -> %d, withPhoto %d -> %d, photographers %d -> %d", country,
+                    counted.getTotal(), actual.getTotal(), counted.getWithPhoto(), actual.getWithPhoto(),
+                    counted.getPhotographers(), actual.getPhotographers()));
+        }
+    }
+
+    private static final class Counters {
+
+        private int total;
+        private int withPhoto;
+        private final Map<Integer, Rank> ranks = new HashMap<>();
+        private final NavigableSet<Rank> leaderboard = new TreeSet<>();
+
+        private void add(final StatisticCount count) {
+            total += count.getStations();
+            withPhoto += count.getPhotos();
+            if (count.getPhotographerId() != null) {
+                addPhotos(count.getPhotographerId(), count.getPhotographerName(), count.getPhotos());
+            }
+        }
+
+        private void add(final Station station, final int delta, final String photographerName) {
+            total += delta;
+            if (station.hasPhoto()) {
+                withPhoto += delta;
+                addPhotos(station.getPhotographerId(), photographerName, delta);
+            }
+        }
+
+        private void addPhotos(final int photographerId, final String name, final int delta) {
+            final Rank rank = ranks.remove(photographerId);
+            if (rank != null) {
+                leaderboard.remove(rank);
+            }
+            final int photos = (rank != null ? rank.photos : 0) + delta;
+            if (photos > 0) {
+                final Rank newRank = new Rank(photographerId, rank != null ? rank.name : name, photos);
+                ranks.put(photographerId, newRank);
+                leaderboard.add(newRank);
+            }
+        }
+
+        private void rename(final int photographerId, final String name) {
+            final Rank rank = ranks.get(photographerId);
+            if (rank != null) {
+                leaderboard.remove(rank);
+                final Rank renamed = new Rank(photographerId, name, rank.photos);
+                ranks.put(photographerId, renamed);
+                leaderboard.add(renamed);
+            }
+        }
+
+        private Statistic toStatistic(final String country) {
+            return new Statistic(country, total, withPhoto, ranks.size());
+        }
+
+    }
+
+    private static final class Rank implements Comparable<Rank> {
+
+        private static final Comparator<Rank> ORDER = Comparator.<Rank>comparingInt(rank -> -rank.photos)
+                .thenComparing(rank -> rank.name, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparingInt(rank -> rank.photographerId);
+
+        private final int photographerId;
+        private final String name;
+        private final int photos;
+
+        private Rank(final int photographerId, final String name, final int photos) {
+            this.photographerId = photographerId;
+            this.name = name;
+            this.photos = photos;
+        }
+
+        @Override
+        public int compareTo(final Rank other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Rank && compareTo((Rank) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(photographerId, name, photos);
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.railwaystations.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the station changes of other API instances to the in-memory snapshot
+ * and reloads the pending inbox index, run periodically
+ */
+public class StationsSync implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StationsSync.class);
+
+    private final StationsRepository repository;
+    private final PendingInboxIndex pendingInbox;
+
+    public StationsSync(final StationsRepository repository, final PendingInboxIndex pendingInbox) {
+        this.repository = repository;
+        this.pendingInbox = pendingInbox;
+    }
+
+    @Override
+    public void run() {
+        try {
+            repository.syncChanges();
+        } catch (final RuntimeException e) {
+            // an exception would cancel the next runs
+            LOG.error("Syncing station changes failed", e);
+        }
+        try {
+            pendingInbox.reload();
+        } catch (final RuntimeException e) {
+            LOG.error("Reloading the pending inbox index failed", e);
+        }
+    }
+
+}
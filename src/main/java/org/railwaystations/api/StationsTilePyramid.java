@@ -0,0 +1,167 @@
+package org.railwaystations.api;
+
+import org.railwaystations.api.model.BoundingBox;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.TileCluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Station clusters of the web mercator tiles up to zoom level {@link #MAX_CLUSTER_ZOOM}, each tile split into a grid of
+ * 2^{@link #GRID_BITS} x 2^{@link #GRID_BITS} cells, so a tile request is a lookup of its grid cells.
+ * It is immutable once published, changes replace only the cells of the changed stations and share all others.
+ */
+public final class StationsTilePyramid {
+
+    public static final int MAX_CLUSTER_ZOOM = 13;
+    public static final int MAX_ZOOM = 20;
+
+    static final int GRID_BITS = 2;
+
+    private static final double MAX_LAT = 85.05112878;
+
+    private final List<PersistentTreeMap<Long, TileCluster>> levels;
+
+    public StationsTilePyramid(final Collection<Station> stations) {
+        final List<Map<Long, TileCluster>> cells = new ArrayList<>(MAX_CLUSTER_ZOOM + 1);
+        for (int z = 0; z <= MAX_CLUSTER_ZOOM; z++) {
+            cells.add(new HashMap<>());
+        }
+        for (final Station station : stations) {
+            forEachCell(station, (z, cellKey) -> cells.get(z).compute(cellKey, (key, cluster) -> plus(cluster, station)));
+        }
+        levels = new ArrayList<>(MAX_CLUSTER_ZOOM + 1);
+        cells.forEach(level -> levels.add(PersistentTreeMap.of(level)));
+    }
+
+    private StationsTilePyramid(final List<PersistentTreeMap<Long, TileCluster>> levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Creates the next version of this pyramid, the previous versions of changed stations are removed first.
+     */
+    public StationsTilePyramid with(final Collection<Station> removed, final Collection<Station> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return this;
+        }
+        final List<PersistentTreeMap<Long, TileCluster>> next = new ArrayList<>(levels);
+        for (final Station station : removed) {
+            forEachCell(station, (z, cellKey) -> next.set(z, next.get(z).compute(cellKey, (key, cluster) -> minus(cluster, station))));
+        }
+        for (final Station station : added) {
+            forEachCell(station, (z, cellKey) -> next.set(z, next.get(z).compute(cellKey, (key, cluster) -> plus(cluster, station))));
+        }
+        return new StationsTilePyramid(next);
+    }
+
+    private static TileCluster plus(final TileCluster cluster, final Station station) {
+        return (cluster != null ? cluster : TileCluster.EMPTY).plus(station);
+    }
+
+    private static TileCluster minus(final TileCluster cluster, final Station station) {
+        final TileCluster updated = cluster != null ? cluster.minus(station) : null;
+        return updated != null && updated.getCount() > 0 ? updated : null;
+    }
+
+    /**
+     * Calls the consumer with the zoom level and the key of the station's cell on every level
+     */
+    private static void forEachCell(final Station station, final CellConsumer consumer) {
+        if (station.getCoordinates() == null) {
+            return;
+        }
+        final int cellZoom = MAX_CLUSTER_ZOOM + GRID_BITS;
+        final int cellX = lonToTile(station.getCoordinates().getLon(), cellZoom);
+        final int cellY = latToTile(station.getCoordinates().getLat(), cellZoom);
+        for (int z = MAX_CLUSTER_ZOOM; z >= 0; z--) {
+            final int shift = MAX_CLUSTER_ZOOM - z;
+            consumer.accept(z, cellKey(cellX >> shift, cellY >> shift));
+        }
+    }
+
+    /**
+     * Gets the non-empty clusters of the tile, z must not exceed {@link #MAX_CLUSTER_ZOOM}
+     */
+    public List<TileCluster> getClusters(final int z, final int x, final int y) {
+        return collectGrid(levels.get(z)::get, x, y);
+    }
+
+    private static List<TileCluster> collectGrid(final Function<Long, TileCluster> level, final int x, final int y) {
+        final int gridSize = 1 << GRID_BITS;
+        final List<TileCluster> clusters = new ArrayList<>();
+        for (int dy = 0; dy < gridSize; dy++) {
+            for (int dx = 0; dx < gridSize; dx++) {
+                final TileCluster cluster = level.apply(cellKey((x << GRID_BITS) + dx, (y << GRID_BITS) + dy));
+                if (cluster != null) {
+                    clusters.add(cluster);
+                }
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Clusters the given stations of the tile on the fly, for when no pyramid is held in memory
+     */
+    public static List<TileCluster> cluster(final Iterable<Station> stations, final int z, final int x, final int y) {
+        final int cellZoom = z + GRID_BITS;
+        final Map<Long, TileCluster> cells = new HashMap<>();
+        for (final Station station : stations) {
+            if (isInTile(station, z, x, y)) {
+                final long key = cellKey(lonToTile(station.getCoordinates().getLon(), cellZoom),
+                        latToTile(station.getCoordinates().getLat(), cellZoom));
+                cells.compute(key, (k, cluster) -> (cluster != null ? cluster : TileCluster.EMPTY).plus(station));
+            }
+        }
+        return collectGrid(cells::get, x, y);
+    }
+
+    public static boolean isInTile(final Station station, final int z, final int x, final int y) {
+        return station.getCoordinates() != null
+                && lonToTile(station.getCoordinates().getLon(), z) == x
+                && latToTile(station.getCoordinates().getLat(), z) == y;
+    }
+
+    public static int lonToTile(final double lon, final int zoom) {
+        final int tiles = 1 << zoom;
+        return clamp((int) Math.floor((lon + 180) / 360 * tiles), tiles);
+    }
+
+    public static int latToTile(final double lat, final int zoom) {
+        final int tiles = 1 << zoom;
+        final double latRad = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat)));
+        return clamp((int) Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * tiles), tiles);
+    }
+
+    /**
+     * Area of the tile, the outermost rows extend to the poles
+     */
+    public static BoundingBox tileBounds(final int z, final int x, final int y) {
+        final int tiles = 1 << z;
+        final double minLon = (double) x / tiles * 360 - 180;
+        final double maxLon = (double) (x + 1) / tiles * 360 - 180;
+        final double maxLat = y == 0 ? 90 : Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2.0 * y / tiles))));
+        final double minLat = y == tiles - 1 ? -90 : Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2.0 * (y + 1) / tiles))));
+        return new BoundingBox(minLat, maxLat, minLon, maxLon);
+    }
+
+    private static int clamp(final int tile, final int tiles) {
+        return Math.max(0, Math.min(tiles - 1, tile));
+    }
+
+    private static long cellKey(final int x, final int y) {
+        return ((long) x << 32) | y;
+    }
+
+    @FunctionalInterface
+    private interface CellConsumer {
+        void accept(int z, long cellKey);
+    }
+
+}
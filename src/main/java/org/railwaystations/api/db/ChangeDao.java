@@ -0,0 +1,100 @@
+package org.railwaystations.api.db;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.sqlobject.CreateSqlObject;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
+import org.railwaystations.api.model.Station;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Log of changed stations. Every write gets the next version of the changes sequence in its own transaction,
+ * the row lock of the sequence commits the versions in order, so all changes up to the current version are readable.
+ */
+public interface ChangeDao {
+
+    String SEQUENCE = "changes";
+
+    @CreateSqlObject
+    StationDao stationDao();
+
+    @CreateSqlObject
+    PhotoDao photoDao();
+
+    @CreateSqlObject
+    SequenceDao sequenceDao();
+
+    /**
+     * Runs the write with the DAOs of this transaction and logs the given stations as changed
+     * @return the version of the change, the current version if no stations changed
+     */
+    @Transaction
+    default long write(final Collection<Station.Key> keys, final Consumer<ChangeDao> write) {
+        write.accept(this);
+        if (keys.isEmpty()) {
+            return getVersion();
+        }
+        final long version = sequenceDao().allocate(SEQUENCE, 1);
+        insert(keys, version, System.currentTimeMillis());
+        return version;
+    }
+
+    @SqlBatch("insert into station_changes (countryCode, stationId, version, changedAt) values (:country, :id, :version, :changedAt)")
+    void insert(@BindBean final Collection<Station.Key> keys, @Bind("version") final long version, @Bind("changedAt") final long changedAt);
+
+    /**
+     * Latest committed change version
+     */
+    @SqlQuery("select nextValue - 1 from sequences where name = '" + SEQUENCE + "'")
+    long getVersion();
+
+    /**
+     * Oldest version still in the log, older ones are pruned
+     */
+    @SqlQuery("select coalesce(min(version), (select nextValue from sequences where name = '" + SEQUENCE + "')) from station_changes")
+    long getFirstVersion();
+
+    @SqlQuery("select distinct countryCode, stationId from station_changes where version > :since and version <= :until"
+            + " and (:allCountries = true or countryCode in (<countryCodes>))")
+    @RegisterRowMapper(KeyMapper.class)
+    List<Station.Key> findChangedKeys(@Bind("since") final long since, @Bind("until") final long until,
+                                      @Bind("allCountries") final boolean allCountries,
+                                      @BindList(value = "countryCodes", onEmpty = BindList.EmptyHandling.NULL_STRING) final Set<String> countryCodes);
+
+    /**
+     * Deletes the changes logged before the given time, by version, so the remaining log has no gaps
+     * @return the number of deleted entries
+     */
+    default int prune(final long before) {
+        return deleteUntil(getLatestVersionBefore(before));
+    }
+
+    @SqlQuery("select coalesce(max(version), 0) from station_changes where changedAt < :before")
+    long getLatestVersionBefore(@Bind("before") final long before);
+
+    @SqlUpdate("delete from station_changes where version <= :version")
+    int deleteUntil(@Bind("version") final long version);
+
+    class KeyMapper implements RowMapper<Station.Key> {
+
+        @Override
+        public Station.Key map(final ResultSet rs, final StatementContext ctx) throws SQLException {
+            return new Station.Key(rs.getString("countryCode"), rs.getString("stationId"));
+        }
+
+    }
+
+}
@@ -23,9 +23,7 @@ public interface InboxDao {
 
     String JOIN_QUERY = "select u.id, u.countryCode, u.stationId, u.title u_title, s.title s_title, u.lat u_lat, u.lon u_lon, s.lat s_lat, s.lon s_lon, "
                     + "     u.photographerId, p.name photographerNickname, p.email photographerEmail, u.extension, u.comment, u.rejectReason, u.createdAt, "
-                    + "     u.done, u.problemReportType, u.active, u.crc32, u.notified, f.url, "
-                    + "     (select count(*) from inbox u2 where u2.countryCode is not null and u2.countryCode = u.countryCode "
-                    + "         and u2.stationId is not null and u2.stationId = u.stationId and u2.done = false and u2.id != u.id) as conflict"
+                    + "     u.done, u.problemReportType, u.active, u.crc32, u.notified, f.url"
                     + " from inbox u left join stations s on s.countryCode = u.countryCode and s.id = u.stationId "
                     + "     left join users p on p.id = u.photographerId "
                     + "     left join photos f on f.countryCode = u.countryCode and f.id = u.stationId";
@@ -38,6 +36,13 @@ public interface InboxDao {
     @RegisterRowMapper(InboxEntryMapper.class)
     List<InboxEntry> findPendingInboxEntries();
 
+    /**
+     * Only the columns needed for the PendingInboxIndex, with the coordinates as uploaded
+     */
+    @SqlQuery("select id, countryCode, stationId, lat, lon from inbox where done = false")
+    @RegisterRowMapper(PendingInboxEntryMapper.class)
+    List<InboxEntry> findPendingInboxIndexEntries();
+
     @SqlQuery("select u.countryCode, u.stationId, u.title u_title, s.title s_title, u.lat u_lat, u.lon u_lon, s.lat s_lat, s.lon s_lon" +
               " from inbox u left join stations s on s.countryCode = u.countryCode and s.id = u.stationId" +
               " where u.done = false and (u.problemReportType is null or u.problemReportType = '')")
@@ -54,18 +59,6 @@ public interface InboxDao {
     @SqlUpdate("update inbox set done = true where id = :id")
     void done(@Bind("id") int id);
 
-    @SqlQuery("select count(*) from inbox where countryCode = :countryCode and stationId = :stationId and done = false and (:id is null or id <> :id)")
-    int countPendingInboxEntriesForStation(@Bind("id") final Integer id, @Bind("countryCode") final String countryCode, @Bind("stationId") final String stationId);
-
-    @SqlQuery("select count(*) from inbox where done = false")
-    int countPendingInboxEntries();
-
-    /**
-     * Count nearby pending uploads using simple pythagoras (only valid for a few km)
-     */
-    @SqlQuery("select count(*) from inbox where sqrt(power(71.5 * (lon - :coords.lon),2) + power(111.3 * (lat - :coords.lat),2)) < 0.5 and done = false and (:id is null or id <> :id)")
-    int countPendingInboxEntriesForNearbyCoordinates(@Bind("id") final Integer id, @BindBean("coords") final Coordinates coordinates);
-
     @SqlUpdate("update inbox set crc32 = :crc32 where id = :id")
     void updateCrc32(@Bind("id") Integer id, @Bind("crc32") Long crc32);
 
@@ -101,13 +94,23 @@ public interface InboxDao {
                     coordinates, rs.getInt("photographerId"), rs.getString("photographerNickname"), rs.getString("photographerEmail"),
                     extension, rs.getString("comment"), rs.getString("rejectReason"),
                     rs.getLong("createdAt"), done, null, rs.getString("url") != null,
-                    rs.getInt("conflict") > 0,
+                    false,
                     problemReportType != null ? ProblemReportType.valueOf(problemReportType) : null, active,
                     crc32, rs.getBoolean("notified"));
         }
 
     }
 
+    class PendingInboxEntryMapper implements RowMapper<InboxEntry> {
+
+        public InboxEntry map(final ResultSet rs, final StatementContext ctx) throws SQLException {
+            return new InboxEntry(rs.getInt("id"), rs.getString("countryCode"), rs.getString("stationId"), null,
+                    new Coordinates(rs.getDouble("lat"), rs.getDouble("lon")), 0, null, null, null, null, null,
+                    null, false, null, false, false, null, null, null, false);
+        }
+
+    }
+
     class PublicInboxEntryMapper implements RowMapper<PublicInboxEntry> {
 
         public PublicInboxEntry map(final ResultSet rs, final StatementContext ctx) throws SQLException {
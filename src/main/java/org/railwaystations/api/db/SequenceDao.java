@@ -0,0 +1,37 @@
+package org.railwaystations.api.db;
+
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transaction;
+
+/**
+ * Named counters, the row lock of the increment makes concurrent allocations unique across all API nodes
+ */
+public interface SequenceDao {
+
+    @SqlUpdate("update sequences set nextValue = nextValue + :count where name = :name")
+    int increment(@Bind("name") final String name, @Bind("count") final int count);
+
+    @SqlQuery("select nextValue from sequences where name = :name")
+    long getNextValue(@Bind("name") final String name);
+
+    /**
+     * Reserves the next count values of the sequence
+     * @return the first reserved value
+     */
+    @Transaction
+    default long allocate(final String name, final int count) {
+        if (increment(name, count) != 1) {
+            throw new IllegalStateException("Unknown sequence " + name);
+        }
+        return getNextValue(name) - count;
+    }
+
+    /**
+     * Moves the sequence forward to the given next value, never backwards
+     */
+    @SqlUpdate("update sequences set nextValue = :nextValue where name = :name and nextValue < :nextValue")
+    int advance(@Bind("name") final String name, @Bind("nextValue") final long nextValue);
+
+}
@@ -10,19 +10,42 @@ import org.jdbi.v3.sqlobject.config.ValueColumn;
 import org.jdbi.v3.sqlobject.customizer.Bind;
 import org.jdbi.v3.sqlobject.customizer.BindBean;
 import org.jdbi.v3.sqlobject.customizer.BindList;
+import org.jdbi.v3.sqlobject.customizer.FetchSize;
 import org.jdbi.v3.sqlobject.statement.SqlQuery;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import org.railwaystations.api.model.*;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public interface StationDao {
 
-    String JOIN_QUERY = "select s.countryCode, s.id, s.DS100, s.title, s.lat, s.lon, s.active, p.url, p.license, p.createdAt, u.id as photographerId, u.name, u.url as photographerUrl, u.license as photographerLicense, u.anonymous from countries c left join stations s on c.id = s.countryCode left join photos p on p.countryCode = s.countryCode and p.id = s.id left join users u on u.id = p.photographerId";
+    int STREAM_FETCH_SIZE = 1000;
+
+    String FILTER_CONDITION = " where c.active = true and (:allCountries = true or s.countryCode in (<countryCodes>))"
+            + " and (:hasArea = false or (s.lat between :minLat and :maxLat and s.lon between :minLon and :maxLon))"
+            + " and (:hasPhoto is null or coalesce(p.url is not null and (u.anonymous = true or u.name is not null), false) = :hasPhoto)"
+            + " and (:photographer is null or (case when u.anonymous = true then 'Anonym' else u.name end) = :photographer)"
+            + " and (:active is null or s.active = :active)";
+
+    String STATION_COLUMNS = "select s.countryCode, s.id, s.DS100, s.title, s.lat, s.lon, s.active, p.url, p.license, p.createdAt, u.id as photographerId, u.name, u.url as photographerUrl, u.license as photographerLicense, u.anonymous";
+
+    String PHOTO_JOINS = " left join photos p on p.countryCode = s.countryCode and p.id = s.id left join users u on u.id = p.photographerId";
+
+    String JOIN_QUERY = STATION_COLUMNS + " from countries c left join stations s on c.id = s.countryCode" + PHOTO_JOINS;
+
+    /**
+     * The lat/lon range can use the index, the distance by simple pythagoras (only valid for a few km) is only computed within it
+     */
+    String NEARBY_CONDITION = " where s.lat between :area.minLat and :area.maxLat and s.lon between :area.minLon and :area.maxLon"
+            + " and sqrt(power(71.5 * (s.lon - :coords.lon),2) + power(111.3 * (s.lat - :coords.lat),2)) < 0.5"
+            + " and (:allCountries = true or s.countryCode not in (<excludedCountries>))";
 
     @SqlQuery(JOIN_QUERY + " where c.active = true and s.countryCode in (<countryCodes>)")
     @RegisterRowMapper(StationMapper.class)
@@ -32,6 +55,44 @@ public interface StationDao {
     @RegisterRowMapper(StationMapper.class)
     Set<Station> all();
 
+    /**
+     * Streams the stations matching the given criteria, null values are ignored. The area is only applied if hasArea,
+     * as it would drop stations without coordinates. It is only a prefilter, the exact distance has to be checked by the caller.
+     * The stream holds a database connection until it is closed.
+     */
+    @SqlQuery(JOIN_QUERY + FILTER_CONDITION)
+    @RegisterRowMapper(StationMapper.class)
+    @FetchSize(STREAM_FETCH_SIZE)
+    Stream<Station> findByFilter(@Bind("allCountries") final boolean allCountries,
+                               @BindList(value = "countryCodes", onEmpty = BindList.EmptyHandling.NULL_STRING) final Set<String> countryCodes,
+                               @Bind("hasArea") final boolean hasArea,
+                               @BindBean final BoundingBox area,
+                               @Bind("hasPhoto") final Boolean hasPhoto,
+                               @Bind("photographer") final String photographer,
+                               @Bind("active") final Boolean active);
+
+    /**
+     * Finds up to limit stations matching the given criteria after the given key, ordered along the primary key
+     */
+    @SqlQuery(JOIN_QUERY + FILTER_CONDITION
+            + " and (s.countryCode > :afterCountry or (s.countryCode = :afterCountry and s.id > :afterId))"
+            + " order by s.countryCode, s.id limit :limit")
+    @RegisterRowMapper(StationMapper.class)
+    List<Station> findPageByFilter(@Bind("allCountries") final boolean allCountries,
+                                   @BindList(value = "countryCodes", onEmpty = BindList.EmptyHandling.NULL_STRING) final Set<String> countryCodes,
+                                   @Bind("hasArea") final boolean hasArea,
+                                   @BindBean final BoundingBox area,
+                                   @Bind("hasPhoto") final Boolean hasPhoto,
+                                   @Bind("photographer") final String photographer,
+                                   @Bind("active") final Boolean active,
+                                   @Bind("afterCountry") final String afterCountry,
+                                   @Bind("afterId") final String afterId,
+                                   @Bind("limit") final int limit);
+
+    @SqlQuery("select count(*) from countries c join stations s on c.id = s.countryCode where c.active = true and (:allCountries = true or s.countryCode in (<countryCodes>))")
+    int countStations(@Bind("allCountries") final boolean allCountries,
+                      @BindList(value = "countryCodes", onEmpty = BindList.EmptyHandling.NULL_STRING) final Set<String> countryCodes);
+
     @SqlQuery(JOIN_QUERY + " where (s.countryCode = :countryCode or :countryCode is null) and s.id = :id")
     @RegisterRowMapper(StationMapper.class)
     Set<Station> findByKey(@Bind("countryCode") final String countryCode, @Bind("id") final String id);
@@ -40,11 +101,26 @@ public interface StationDao {
     @RegisterRowMapper(StationMapper.class)
     Set<Station> findById(@Bind("id") final String id);
 
+    @SqlQuery(JOIN_QUERY + " where p.photographerId = :photographerId")
+    @RegisterRowMapper(StationMapper.class)
+    Set<Station> findByPhotographerId(@Bind("photographerId") final int photographerId);
+
     @SqlQuery("select count(*) stations, count(p.url) photos, count(distinct p.photographerId) photographers from stations s left join photos p on p.countryCode = s.countryCode and p.id = s.id where s.countryCode = :countryCode or :countryCode is null")
     @RegisterRowMapper(StatisticMapper.class)
     @SingleValue
     Statistic getStatistic(@Bind("countryCode") final String countryCode);
 
+    @SqlQuery("select s.countryCode, count(*) stations, count(p.url) photos, count(distinct p.photographerId) photographers from stations s left join photos p on p.countryCode = s.countryCode and p.id = s.id group by s.countryCode order by s.countryCode")
+    @RegisterRowMapper(CountryStatisticMapper.class)
+    List<Statistic> getStatistics();
+
+    /**
+     * The counts behind getStatistic and getPhotographerMap per country and photographer, to initialize or reconcile the in-memory statistics
+     */
+    @SqlQuery("select s.countryCode, p.photographerId, u.name, count(*) stations, count(p.url) photos from stations s left join photos p on p.countryCode = s.countryCode and p.id = s.id left join users u on u.id = p.photographerId group by s.countryCode, p.photographerId, u.name")
+    @RegisterRowMapper(StatisticCountMapper.class)
+    List<StatisticCount> countByCountryAndPhotographer();
+
     @SqlQuery("select u.name photographer, count(*) photocount from stations s join photos p on p.countryCode = s.countryCode and p.id = s.id join users u on u.id = p.photographerId where s.countryCode = :countryCode or :countryCode is null group by u.name order by count(*) desc")
     @KeyColumn("photographer")
     @ValueColumn("photocount")
@@ -55,6 +131,16 @@ public interface StationDao {
     @ValueColumn("title")
     Map<Station.Key, String> findByName(@Bind("name") final String name);
 
+    /**
+     * Finds the stations of the given active countries with the name in their title or DS100 code, ignoring case
+     */
+    @SqlQuery(JOIN_QUERY + " where c.active = true and (:allCountries = true or s.countryCode in (<countryCodes>))"
+            + " and (LOCATE(LOWER(:name), LOWER(s.title)) > 0 or LOCATE(LOWER(:name), LOWER(s.DS100)) > 0)")
+    @RegisterRowMapper(StationMapper.class)
+    List<Station> findByTitleOrDS100(@Bind("allCountries") final boolean allCountries,
+                                     @BindList(value = "countryCodes", onEmpty = BindList.EmptyHandling.NULL_STRING) final Set<String> countryCodes,
+                                     @Bind("name") final String name);
+
     @SqlUpdate("insert into stations (countryCode, id, title, lat, lon, ds100, active) values (:key.country, :key.id, :title, :coordinates?.lat, :coordinates?.lon, :DS100, :active)")
     void insert(@BindBean final Station station);
 
@@ -64,18 +150,36 @@ public interface StationDao {
     @SqlUpdate("update stations set active = :active where countryCode = :key.country and id = :key.id")
     void updateActive(@BindBean final Station station);
 
-    @SqlQuery(JOIN_QUERY + " where createdAt > :fromTimestampMillis order by createdAt desc")
+    /**
+     * Finds up to limit stations with photos created after fromTimestampMillis, newest first and then by key descending,
+     * starting before the given photo creation time and key
+     */
+    @SqlQuery(JOIN_QUERY + " where p.createdAt > :fromTimestampMillis and (p.createdAt < :beforeCreatedAt or (p.createdAt = :beforeCreatedAt"
+            + " and (s.countryCode < :beforeCountry or (s.countryCode = :beforeCountry and s.id < :beforeId))))"
+            + " order by p.createdAt desc, s.countryCode desc, s.id desc limit :limit")
     @RegisterRowMapper(StationMapper.class)
-    List<Station> findRecentImports(@Bind("fromTimestampMillis") final long fromTimestampMillis);
+    List<Station> findRecentImports(@Bind("fromTimestampMillis") final long fromTimestampMillis, @Bind("beforeCreatedAt") final long beforeCreatedAt,
+                                    @Bind("beforeCountry") final String beforeCountry, @Bind("beforeId") final String beforeId,
+                                    @Bind("limit") final int limit);
 
     /**
-     * Count nearby stations using simple pythagoras (only valid for a few km)
+     * Count stations within 0.5 km, of all countries (active or not) except the excluded ones, unless allCountries.
+     * The area has to contain that distance.
      */
-    @SqlQuery("select count(*) from stations where sqrt(power(71.5 * (lon - :coords.lon),2) + power(111.3 * (lat - :coords.lat),2)) < 0.5")
-    int countNearbyCoordinates(@BindBean("coords") final Coordinates coordinates);
+    @SqlQuery("select count(*) from stations s" + NEARBY_CONDITION)
+    int countNearbyCoordinates(@BindBean("coords") final Coordinates coordinates, @BindBean("area") final BoundingBox area,
+                               @Bind("allCountries") final boolean allCountries,
+                               @BindList(value = "excludedCountries", onEmpty = BindList.EmptyHandling.NULL_STRING) final Set<String> excludedCountries);
 
-    @SqlQuery("SELECT max(cast(substring(id,2) as int)) FROM stations WHERE id like 'Z%'")
-    int getMaxZ();
+    /**
+     * Finds the stations within 0.5 km, of all countries (active or not) except the excluded ones, unless allCountries.
+     * The area has to contain that distance.
+     */
+    @SqlQuery(STATION_COLUMNS + " from stations s" + PHOTO_JOINS + NEARBY_CONDITION)
+    @RegisterRowMapper(StationMapper.class)
+    List<Station> findNearbyCoordinates(@BindBean("coords") final Coordinates coordinates, @BindBean("area") final BoundingBox area,
+                                        @Bind("allCountries") final boolean allCountries,
+                                        @BindList(value = "excludedCountries", onEmpty = BindList.EmptyHandling.NULL_STRING) final Set<String> excludedCountries);
 
     @SqlUpdate("update stations set title = :new_title where countryCode = :key.country and id = :key.id")
     void changeStationTitle(@BindBean final Station station, @Bind("new_title") final String newTitle);
@@ -83,27 +187,59 @@ public interface StationDao {
     @SqlUpdate("update stations set lat = :coords.lat, lon = :coords.lon where countryCode = :key.country and id = :key.id")
     void updateLocation(@BindBean final Station station, @BindBean("coords") final Coordinates coordinates);
 
+    /**
+     * Shares the photographers and license strings between the rows of one result set, like the reload of all stations.
+     * JDBI specializes a new mapper for each result set, so nothing is retained beyond a query and a renamed
+     * photographer is picked up by the next one. The shared photographers must not be modified.
+     */
     class StationMapper implements RowMapper<Station> {
 
         private static String photoBaseUrl = "";
 
+        private final Map<Integer, User> photographers = new HashMap<>();
+        private final Map<String, String> strings = new HashMap<>();
+
         public static void setPhotoBaseUrl(final String url) {
             photoBaseUrl = url;
         }
 
+        @Override
+        public RowMapper<Station> specialize(final ResultSet rs, final StatementContext ctx) {
+            return new StationMapper();
+        }
+
         public Station map(final ResultSet rs, final StatementContext ctx) throws SQLException {
             final Station.Key key = new Station.Key(rs.getString("countryCode"), rs.getString("id"));
             final String photoUrl = rs.getString("url");
             Photo photo = null;
             if (photoUrl != null) {
-                final User photographer = new User(rs.getString("name"), rs.getString("photographerUrl"), rs.getString("photographerLicense"), rs.getInt("photographerId"), null, true, rs.getBoolean("anonymous"), null, null, false, null, false);
-                photo = new Photo(key, photoBaseUrl + photoUrl, photographer, rs.getLong("createdAt"), rs.getString("license"));
+                photo = new Photo(key, photoBaseUrl + photoUrl, photographer(rs), rs.getLong("createdAt"), shared(rs.getString("license")));
             }
             return new Station(key, rs.getString("title"),
                     new Coordinates(rs.getDouble("lat"), rs.getDouble("lon")),
                     rs.getString("DS100"), photo, rs.getBoolean("active"));
         }
 
+        private User photographer(final ResultSet rs) throws SQLException {
+            final int id = rs.getInt("photographerId");
+            final String name = rs.getString("name");
+            final String url = rs.getString("photographerUrl");
+            final String license = rs.getString("photographerLicense");
+            final boolean anonymous = rs.getBoolean("anonymous");
+            final User cached = photographers.get(id);
+            if (cached != null && Objects.equals(cached.getName(), name) && Objects.equals(cached.getUrl(), url)
+                    && Objects.equals(cached.getLicense(), license) && cached.isAnonymous() == anonymous) {
+                return cached;
+            }
+            final User photographer = new User(name, url, shared(license), id, null, true, anonymous, null, null, false, null, false);
+            photographers.put(id, photographer);
+            return photographer;
+        }
+
+        private String shared(final String value) {
+            return value != null ? strings.computeIfAbsent(value, v -> v) : null;
+        }
+
     }
 
     class StatisticMapper implements RowMapper<Statistic> {
@@ -112,4 +248,23 @@ public interface StationDao {
             return new Statistic(rs.getInt("stations"), rs.getInt("photos"), rs.getInt("photographers"));
         }
     }
+
+    class CountryStatisticMapper implements RowMapper<Statistic> {
+        @Override
+        public Statistic map(final ResultSet rs, final StatementContext ctx) throws SQLException {
+            return new Statistic(rs.getString("countryCode"), rs.getInt("stations"), rs.getInt("photos"), rs.getInt("photographers"));
+        }
+    }
+
+    class StatisticCountMapper implements RowMapper<StatisticCount> {
+        @Override
+        public StatisticCount map(final ResultSet rs, final StatementContext ctx) throws SQLException {
+            Integer photographerId = rs.getInt("photographerId");
+            if (rs.wasNull()) {
+                photographerId = null;
+            }
+            return new StatisticCount(rs.getString("countryCode"), photographerId,
+                    rs.getString("name"), rs.getInt("stations"), rs.getInt("photos"));
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package org.railwaystations.api.model;
+
+import java.util.Objects;
+
+public class BoundingBox {
+
+    private static final double EARTH_RADIUS = 6371;
+
+    private final double minLat;
+    private final double maxLat;
+    private final double minLon;
+    private final double maxLon;
+
+    public BoundingBox(final double minLat, final double maxLat, final double minLon, final double maxLon) {
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLon = minLon;
+        this.maxLon = maxLon;
+    }
+
+    /**
+     * Smallest box containing all points within the given distance (in km) of the center,
+     * so it never misses a station which the Haversine distance check would accept.
+     */
+    public static BoundingBox around(final double lat, final double lon, final double distance) {
+        final double angularDistance = Math.toDegrees(distance / EARTH_RADIUS);
+        final double minLat = lat - angularDistance;
+        final double maxLat = lat + angularDistance;
+        final double sinDistance = Math.sin(distance / EARTH_RADIUS);
+        final double cosLat = Math.cos(Math.toRadians(lat));
+        if (minLat <= -90 || maxLat >= 90 || sinDistance >= cosLat) {
+            return new BoundingBox(Math.max(minLat, -90), Math.min(maxLat, 90), -180, 180);
+        }
+        final double lonDistance = Math.toDegrees(Math.asin(sinDistance / cosLat));
+        return new BoundingBox(minLat, maxLat, lon - lonDistance, lon + lonDistance);
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMinLon() {
+        return minLon;
+    }
+
+    public double getMaxLon() {
+        return maxLon;
+    }
+
+    public boolean contains(final Coordinates coordinates) {
+        return contains(coordinates.getLat(), coordinates.getLon());
+    }
+
+    public boolean contains(final double lat, final double lon) {
+        return lat >= minLat && lat <= maxLat && containsLon(lon);
+    }
+
+    private boolean containsLon(final double lon) {
+        if (minLon < -180) {
+            return lon >= minLon + 360 || lon <= maxLon;
+        }
+        if (maxLon > 180) {
+            return lon >= minLon || lon <= maxLon - 360;
+        }
+        return lon >= minLon && lon <= maxLon;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BoundingBox)) {
+            return false;
+        }
+        final BoundingBox that = (BoundingBox) o;
+        return Double.compare(that.minLat, minLat) == 0 && Double.compare(that.maxLat, maxLat) == 0
+                && Double.compare(that.minLon, minLon) == 0 && Double.compare(that.maxLon, maxLon) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(minLat, maxLat, minLon, maxLon);
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.railwaystations.api.model;
+
+/**
+ * Stations closer than a radius (in km) to a center, with the same result as the Haversine check of
+ * {@link Station#distanceTo(double, double)}. Compares the squared chord length between the unit vectors first,
+ * which needs no trigonometry per station, and only calculates the exact distance close to the boundary.
+ */
+public class Circle {
+
+    private static final double EARTH_RADIUS = 6371;
+
+    /**
+     * Tolerance of the chord comparison (about 6 mm on the surface), far above the rounding errors of both calculations
+     */
+    private static final double MARGIN = 1e-9;
+
+    private final double lat;
+    private final double lon;
+    private final double radius;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final double insideChordSquared;
+    private final double outsideChordSquared;
+
+    public Circle(final double lat, final double lon, final double radius) {
+        this.lat = lat;
+        this.lon = lon;
+        this.radius = radius;
+        final double latRadians = Math.toRadians(lat);
+        final double lonRadians = Math.toRadians(lon);
+        this.x = Math.cos(latRadians) * Math.cos(lonRadians);
+        this.y = Math.cos(latRadians) * Math.sin(lonRadians);
+        this.z = Math.sin(latRadians);
+        if (radius <= 0) {
+            // no distance is below, every station is outside
+            this.insideChordSquared = 0;
+            this.outsideChordSquared = -1;
+        } else {
+            final double halfAngle = radius / EARTH_RADIUS / 2;
+            final double chord = halfAngle >= Math.PI / 2 ? 2 : 2 * Math.sin(halfAngle);
+            final double inside = Math.max(0, chord - MARGIN);
+            this.insideChordSquared = inside * inside;
+            this.outsideChordSquared = (chord + MARGIN) * (chord + MARGIN);
+        }
+    }
+
+    public boolean contains(final Station station) {
+        final double chordSquared = station.chordSquaredTo(x, y, z);
+        if (chordSquared < insideChordSquared) {
+            return true;
+        }
+        if (chordSquared > outsideChordSquared) {
+            return false;
+        }
+        return station.distanceTo(lat, lon) < radius;
+    }
+
+}
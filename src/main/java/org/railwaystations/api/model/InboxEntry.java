@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class InboxEntry extends PublicInboxEntry {
@@ -48,6 +50,9 @@ public class InboxEntry extends PublicInboxEntry {
     @JsonProperty(value = "hasConflict", access = JsonProperty.Access.READ_ONLY)
     private boolean conflict;
 
+    @JsonProperty(value = "nearbyStations", access = JsonProperty.Access.READ_ONLY)
+    private List<Station> nearbyStations;
+
     @JsonProperty(value = "problemReportType", access = JsonProperty.Access.READ_ONLY)
     private final ProblemReportType problemReportType;
 
@@ -236,6 +241,17 @@ public class InboxEntry extends PublicInboxEntry {
         this.conflict = conflict;
     }
 
+    public List<Station> getNearbyStations() {
+        return nearbyStations;
+    }
+
+    /**
+     * The stations an upload of a missing station might collide with
+     */
+    public void setNearbyStations(final List<Station> nearbyStations) {
+        this.nearbyStations = nearbyStations;
+    }
+
     public boolean hasCoords() {
         return coordinates != null && !coordinates.hasZeroCoords();
     }
@@ -48,6 +48,9 @@ public class Station {
     @JsonProperty
     private boolean active;
 
+    @JsonIgnore
+    private Position position;
+
     public Station() {
         this(new Key("", "0"), null, new Coordinates(0.0, 0.0), null, true);
     }
@@ -66,6 +69,27 @@ public class Station {
         setPhoto(photo);
     }
 
+    /**
+     * Creates the station from the resolved properties of its photo, e.g. when it is read from a column store
+     */
+    public Station(final Key key, final String title, final Coordinates coordinates, final String ds100, final boolean active,
+                   final int photographerId, final String photographer, final String photographerUrl, final String photoUrl,
+                   final String license, final String licenseUrl, final Long createdAt) {
+        super();
+        this.key = key;
+        this.title = title;
+        this.coordinates = coordinates;
+        this.ds100 = ds100;
+        this.active = active;
+        this.photographerId = photographerId;
+        this.photographer = photographer;
+        this.photographerUrl = photographerUrl;
+        this.photoUrl = photoUrl;
+        this.license = license;
+        this.licenseUrl = licenseUrl;
+        this.createdAt = createdAt;
+    }
+
     public void setPhoto(final Photo photo) {
         if (photo != null) {
             final User user = photo.getPhotographer();
@@ -122,13 +146,39 @@ public class Station {
     public double distanceTo(final double latitude, final double longitude) {
         final double latDistance = Math.toRadians(latitude - this.coordinates.getLat());
         final double lonDistance = Math.toRadians(longitude - this.coordinates.getLon());
-        final double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(this.coordinates.getLat())) * Math.cos(Math.toRadians(latitude))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        final double sinLat = Math.sin(latDistance / 2);
+        final double sinLon = Math.sin(lonDistance / 2);
+        final double a = sinLat * sinLat
+                + position().cosLat * Math.cos(Math.toRadians(latitude))
+                * sinLon * sinLon;
         final double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
         return Station.EARTH_RADIUS * c;
     }
 
+    /**
+     * Squared straight line distance through the earth between this station and the given point of the unit sphere,
+     * which grows with the distance on the surface
+     */
+    public double chordSquaredTo(final double x, final double y, final double z) {
+        final Position p = position();
+        final double dx = p.x - x;
+        final double dy = p.y - y;
+        final double dz = p.z - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * The trigonometry of the current coordinates, recomputed when they are replaced
+     */
+    private Position position() {
+        Position p = position;
+        if (p == null || p.coordinates != coordinates) {
+            p = new Position(coordinates);
+            position = p;
+        }
+        return p;
+    }
+
     public boolean appliesTo(final Boolean hasPhoto, final String photographer, final Integer maxDistance, final Double lat, final Double lon, final Boolean active) {
         boolean result = true;
         if (hasPhoto != null) {
@@ -190,8 +240,32 @@ public class Station {
         this.coordinates = coordinates;
     }
 
+    /**
+     * Cosine of the latitude and point on the unit sphere of the coordinates, computed once per coordinates.
+     * Immutable, so it can be shared between threads without synchronization.
+     */
+    private static final class Position {
+
+        private final Coordinates coordinates;
+        private final double cosLat;
+        private final double x;
+        private final double y;
+        private final double z;
+
+        private Position(final Coordinates coordinates) {
+            this.coordinates = coordinates;
+            final double latRadians = Math.toRadians(coordinates.getLat());
+            final double lonRadians = Math.toRadians(coordinates.getLon());
+            this.cosLat = Math.cos(latRadians);
+            this.x = cosLat * Math.cos(lonRadians);
+            this.y = cosLat * Math.sin(lonRadians);
+            this.z = Math.sin(latRadians);
+        }
+
+    }
+
     @SuppressWarnings("PMD.ShortClassName")
-    public static final class Key {
+    public static final class Key implements Comparable<Key> {
         @JsonProperty
         private final String country;
 
@@ -225,6 +299,15 @@ public class Station {
             }
         }
 
+        /**
+         * Orders by country, then by id
+         */
+        @Override
+        public int compareTo(final Key other) {
+            final int byCountry = country.compareTo(other.country);
+            return byCountry != 0 ? byCountry : id.compareTo(other.id);
+        }
+
         @Override
         public boolean equals(final Object o) {
             if (this == o) {
@@ -0,0 +1,50 @@
+package org.railwaystations.api.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Stations changed or deleted since a given change version
+ */
+public class StationChanges {
+
+    @JsonProperty
+    private final long version;
+
+    @JsonProperty
+    private final boolean full;
+
+    @JsonProperty
+    private final List<Station> upserts;
+
+    @JsonProperty
+    private final List<Station.Key> deletions;
+
+    /**
+     * @param full the upserts are all stations, which replace the ones the client has
+     */
+    public StationChanges(final long version, final boolean full, final List<Station> upserts, final List<Station.Key> deletions) {
+        this.version = version;
+        this.full = full;
+        this.upserts = upserts;
+        this.deletions = deletions;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public List<Station> getUpserts() {
+        return upserts;
+    }
+
+    public List<Station.Key> getDeletions() {
+        return deletions;
+    }
+
+}
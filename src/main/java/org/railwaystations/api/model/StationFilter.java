@@ -0,0 +1,83 @@
+package org.railwaystations.api.model;
+
+import java.util.Objects;
+
+/**
+ * Query criteria of the station list endpoints
+ */
+public class StationFilter {
+
+    private final Boolean hasPhoto;
+    private final String photographer;
+    private final Integer maxDistance;
+    private final Double lat;
+    private final Double lon;
+    private final Boolean active;
+    private final BoundingBox boundingBox;
+    private final Circle circle;
+
+    public StationFilter(final Boolean hasPhoto, final String photographer, final Integer maxDistance, final Double lat,
+                         final Double lon, final Boolean active, final BoundingBox boundingBox) {
+        this.hasPhoto = hasPhoto;
+        this.photographer = photographer;
+        this.maxDistance = maxDistance;
+        this.lat = lat;
+        this.lon = lon;
+        this.active = active;
+        this.boundingBox = boundingBox;
+        this.circle = hasDistance() ? new Circle(lat, lon, maxDistance) : null;
+    }
+
+    public Boolean getHasPhoto() {
+        return hasPhoto;
+    }
+
+    public String getPhotographer() {
+        return photographer;
+    }
+
+    public Boolean getActive() {
+        return active;
+    }
+
+    public boolean hasDistance() {
+        return maxDistance != null && lat != null && lon != null;
+    }
+
+    /**
+     * Gets the area all matching stations are located in, null if the filter has no spatial criteria
+     */
+    public BoundingBox getSearchArea() {
+        if (hasDistance()) {
+            return BoundingBox.around(lat, lon, maxDistance);
+        }
+        return boundingBox;
+    }
+
+    public boolean appliesTo(final Station station) {
+        return (boundingBox == null || boundingBox.contains(station.getCoordinates()))
+                && station.appliesTo(hasPhoto, photographer, null, null, null, active)
+                && (circle == null || circle.contains(station));
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StationFilter)) {
+            return false;
+        }
+        final StationFilter that = (StationFilter) o;
+        return Objects.equals(hasPhoto, that.hasPhoto) && Objects.equals(photographer, that.photographer)
+                && Objects.equals(maxDistance, that.maxDistance) && Objects.equals(lat, that.lat)
+                && Objects.equals(lon, that.lon) && Objects.equals(active, that.active)
+                && Objects.equals(boundingBox, that.boundingBox);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hasPhoto, photographer, maxDistance, lat, lon, active, boundingBox);
+    }
+
+}
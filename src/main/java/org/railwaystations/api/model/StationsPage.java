@@ -0,0 +1,29 @@
+package org.railwaystations.api.model;
+
+import java.util.List;
+
+/**
+ * One page of stations ordered by key
+ */
+public class StationsPage {
+
+    private final List<Station> stations;
+    private final Station.Key next;
+
+    public StationsPage(final List<Station> stations, final Station.Key next) {
+        this.stations = stations;
+        this.next = next;
+    }
+
+    public List<Station> getStations() {
+        return stations;
+    }
+
+    /**
+     * Key after which the next page starts, null if this is the last page
+     */
+    public Station.Key getNext() {
+        return next;
+    }
+
+}
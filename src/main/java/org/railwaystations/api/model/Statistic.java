@@ -1,9 +1,14 @@
 package org.railwaystations.api.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class Statistic {
 
+    @JsonProperty
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String countryCode;
+
     @JsonProperty
     private final int total;
 
@@ -17,12 +22,24 @@ public class Statistic {
     private final int photographers;
 
     public Statistic(final int total, final int withPhoto, final int photographers) {
+        this(null, total, withPhoto, photographers);
+    }
+
+    /**
+     * Statistic of one country, as part of a list of all countries
+     */
+    public Statistic(final String countryCode, final int total, final int withPhoto, final int photographers) {
+        this.countryCode = countryCode;
         this.total = total;
         this.withPhoto = withPhoto;
         this.withoutPhoto = total - withPhoto;
         this.photographers = photographers;
     }
 
+    public String getCountryCode() {
+        return countryCode;
+    }
+
     public int getTotal() {
         return total;
     }
@@ -0,0 +1,43 @@
+package org.railwaystations.api.model;
+
+/**
+ * Number of stations and photos of one photographer in one country, or of the stations without photo if photographerId is null
+ */
+public class StatisticCount {
+
+    private final String countryCode;
+    private final Integer photographerId;
+    private final String photographerName;
+    private final int stations;
+    private final int photos;
+
+    public StatisticCount(final String countryCode, final Integer photographerId, final String photographerName,
+                          final int stations, final int photos) {
+        this.countryCode = countryCode;
+        this.photographerId = photographerId;
+        this.photographerName = photographerName;
+        this.stations = stations;
+        this.photos = photos;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public Integer getPhotographerId() {
+        return photographerId;
+    }
+
+    public String getPhotographerName() {
+        return photographerName;
+    }
+
+    public int getStations() {
+        return stations;
+    }
+
+    public int getPhotos() {
+        return photos;
+    }
+
+}
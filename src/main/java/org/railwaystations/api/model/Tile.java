@@ -0,0 +1,57 @@
+package org.railwaystations.api.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Content of a web mercator map tile, clusters at low zoom levels, single stations at high zoom levels
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Tile {
+
+    @JsonProperty
+    private final int z;
+
+    @JsonProperty
+    private final int x;
+
+    @JsonProperty
+    private final int y;
+
+    @JsonProperty
+    private final List<TileCluster> clusters;
+
+    @JsonProperty
+    private final List<Station> stations;
+
+    public Tile(final int z, final int x, final int y, final List<TileCluster> clusters, final List<Station> stations) {
+        this.z = z;
+        this.x = x;
+        this.y = y;
+        this.clusters = clusters;
+        this.stations = stations;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public List<TileCluster> getClusters() {
+        return clusters;
+    }
+
+    public List<Station> getStations() {
+        return stations;
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.railwaystations.api.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Aggregate of the stations in one grid cell of a map tile, immutable
+ */
+public class TileCluster {
+
+    public static final TileCluster EMPTY = new TileCluster(0, 0, 0, 0);
+
+    @JsonProperty
+    private final int count;
+
+    @JsonProperty
+    private final int withPhoto;
+
+    @JsonIgnore
+    private final double sumLat;
+
+    @JsonIgnore
+    private final double sumLon;
+
+    public TileCluster(final int count, final int withPhoto, final double sumLat, final double sumLon) {
+        this.count = count;
+        this.withPhoto = withPhoto;
+        this.sumLat = sumLat;
+        this.sumLon = sumLon;
+    }
+
+    public TileCluster plus(final Station station) {
+        return new TileCluster(count + 1, withPhoto + (station.hasPhoto() ? 1 : 0),
+                sumLat + station.getCoordinates().getLat(), sumLon + station.getCoordinates().getLon());
+    }
+
+    public TileCluster minus(final Station station) {
+        return new TileCluster(count - 1, withPhoto - (station.hasPhoto() ? 1 : 0),
+                sumLat - station.getCoordinates().getLat(), sumLon - station.getCoordinates().getLon());
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getWithPhoto() {
+        return withPhoto;
+    }
+
+    /**
+     * Latitude of the centroid
+     */
+    @JsonProperty
+    public double getLat() {
+        return count > 0 ? sumLat / count : 0;
+    }
+
+    /**
+     * Longitude of the centroid
+     */
+    @JsonProperty
+    public double getLon() {
+        return count > 0 ? sumLon / count : 0;
+    }
+
+}
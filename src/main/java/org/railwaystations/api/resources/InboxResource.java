@@ -13,6 +13,7 @@ import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 import org.railwaystations.api.ImageUtil;
 import org.railwaystations.api.MastodonBot;
+import org.railwaystations.api.PendingInboxIndex;
 import org.railwaystations.api.PhotoImporter;
 import org.railwaystations.api.StationsRepository;
 import org.railwaystations.api.auth.AuthUser;
@@ -20,7 +21,6 @@ import org.railwaystations.api.auth.UploadTokenAuthenticator;
 import org.railwaystations.api.auth.UploadTokenCredentials;
 import org.railwaystations.api.db.CountryDao;
 import org.railwaystations.api.db.InboxDao;
-import org.railwaystations.api.db.PhotoDao;
 import org.railwaystations.api.db.UserDao;
 import org.railwaystations.api.model.*;
 import org.railwaystations.api.monitoring.Monitor;
@@ -58,9 +58,9 @@ public class InboxResource {
     private final File photoDir;
     private final UploadTokenAuthenticator authenticator;
     private final InboxDao inboxDao;
+    private final PendingInboxIndex pendingInbox;
     private final UserDao userDao;
     private final CountryDao countryDao;
-    private final PhotoDao photoDao;
     private final String inboxBaseUrl;
     private final File inboxToProcessDir;
     private final File inboxProcessedDir;
@@ -70,8 +70,8 @@ public class InboxResource {
     public InboxResource(final StationsRepository repository, final String inboxDir,
                          final String inboxToProcessDir, final String inboxProcessedDir, final String photoDir,
                          final Monitor monitor, final UploadTokenAuthenticator authenticator,
-                         final InboxDao inboxDao, final UserDao userDao, final CountryDao countryDao,
-                         final PhotoDao photoDao, final String inboxBaseUrl, final MastodonBot mastodonBot) {
+                         final InboxDao inboxDao, final PendingInboxIndex pendingInbox, final UserDao userDao, final CountryDao countryDao,
+                         final String inboxBaseUrl, final MastodonBot mastodonBot) {
         this.repository = repository;
         this.inboxDir = new File(inboxDir);
         this.inboxToProcessDir = new File(inboxToProcessDir);
@@ -80,9 +80,9 @@ public class InboxResource {
         this.monitor = monitor;
         this.authenticator = authenticator;
         this.inboxDao = inboxDao;
+        this.pendingInbox = pendingInbox;
         this.userDao = userDao;
         this.countryDao = countryDao;
-        this.photoDao = photoDao;
         this.inboxBaseUrl = inboxBaseUrl;
         this.mastodonBot = mastodonBot;
     }
@@ -185,7 +185,7 @@ public class InboxResource {
         monitor.sendMessage(String.format("New problem report for %s - %s:%s%n%s: %s%nby %s%nvia %s",
                 station.getTitle(), station.getKey().getCountry(), station.getKey().getId(), problemReport.getType(),
                 StringUtils.trimToEmpty(problemReport.getComment()), user.getUser().getName(), userAgent));
-        return new InboxResponse(InboxResponse.InboxResponseState.REVIEW, inboxDao.insert(inboxEntry));
+        return new InboxResponse(InboxResponse.InboxResponseState.REVIEW, pendingInbox.insert(inboxEntry));
     }
 
     @GET
@@ -256,8 +256,16 @@ public class InboxResource {
             if (!inboxEntry.isProblemReport()) {
                 inboxEntry.setInboxUrl(getInboxUrl(filename, inboxEntry.isProcessed()));
             }
-            if (inboxEntry.getStationId() == null && !inboxEntry.getCoordinates().hasZeroCoords()) {
-                inboxEntry.setConflict(hasConflict(inboxEntry.getId(), inboxEntry.getCoordinates()));
+            if (inboxEntry.getStationId() != null) {
+                inboxEntry.setConflict(pendingInbox.countPendingInboxEntriesForStation(inboxEntry.getId(),
+                        new Station.Key(inboxEntry.getCountryCode(), inboxEntry.getStationId())) > 0);
+            } else if (!inboxEntry.getCoordinates().hasZeroCoords()) {
+                final List<Station> nearbyStations = repository.findNearbyStations(inboxEntry.getCoordinates());
+                inboxEntry.setConflict(!nearbyStations.isEmpty()
+                        || pendingInbox.countPendingInboxEntriesForNearbyCoordinates(inboxEntry.getId(), inboxEntry.getCoordinates()) > 0);
+                if (!nearbyStations.isEmpty()) {
+                    inboxEntry.setNearbyStations(nearbyStations);
+                }
             }
         }
         return pendingInboxEntries;
@@ -329,7 +337,7 @@ public class InboxResource {
 
         final Station station = assertStationExists(inboxEntry);
         repository.updateLocation(station, coordinates);
-        inboxDao.done(inboxEntry.getId());
+        pendingInbox.done(inboxEntry.getId());
     }
 
     @GET
@@ -337,7 +345,7 @@ public class InboxResource {
     @Path("adminInboxCount")
     @Produces(MediaType.APPLICATION_JSON)
     public InboxCountResponse adminInboxCount(@Auth final AuthUser user) {
-        return new InboxCountResponse(inboxDao.countPendingInboxEntries());
+        return new InboxCountResponse(pendingInbox.countPendingInboxEntries());
     }
 
     @GET
@@ -351,35 +359,35 @@ public class InboxResource {
         final Station station = assertStationExists(inboxEntry);
         station.setActive(active);
         repository.updateActive(station);
-        inboxDao.done(inboxEntry.getId());
+        pendingInbox.done(inboxEntry.getId());
         LOG.info("Problem report {} station {} set active to {}", inboxEntry.getId(), station.getKey(), active);
     }
 
     private void changeStationTitle(final InboxEntry inboxEntry, final String newTitle) {
         final Station station = assertStationExists(inboxEntry);
         repository.changeStationTitle(station, newTitle);
-        inboxDao.done(inboxEntry.getId());
+        pendingInbox.done(inboxEntry.getId());
         LOG.info("Problem report {} station {} change name to {}", inboxEntry.getId(), station.getKey(), newTitle);
     }
 
     private void deleteStation(final InboxEntry inboxEntry) {
         final Station station = assertStationExists(inboxEntry);
-        photoDao.delete(station.getKey());
+        repository.deletePhoto(station.getKey());
         repository.delete(station);
-        inboxDao.done(inboxEntry.getId());
+        pendingInbox.done(inboxEntry.getId());
         LOG.info("Problem report {} station {} deleted", inboxEntry.getId(), station.getKey());
     }
 
     private void deletePhoto(final InboxEntry inboxEntry) {
         final Station station = assertStationExists(inboxEntry);
-        photoDao.delete(station.getKey());
-        inboxDao.done(inboxEntry.getId());
+        repository.deletePhoto(station.getKey());
+        pendingInbox.done(inboxEntry.getId());
         LOG.info("Problem report {} photo of station {} deleted", inboxEntry.getId(), station.getKey());
     }
 
     private void markProblemReportSolved(final InboxEntry inboxEntry) {
         assertStationExists(inboxEntry);
-        inboxDao.done(inboxEntry.getId());
+        pendingInbox.done(inboxEntry.getId());
         LOG.info("Problem report {} accepted", inboxEntry.getId());
     }
 
@@ -453,10 +461,10 @@ public class InboxResource {
             final File countryDir = new File(photoDir, station.getKey().getCountry());
             final Photo photo = PhotoImporter.createPhoto(station.getKey().getCountry(), country.orElse(null), station.getKey().getId(), user.get(), inboxEntry.getExtension());
             if (station.hasPhoto()) {
-                photoDao.update(photo);
+                repository.updatePhoto(photo);
                 FileUtils.deleteQuietly(new File(countryDir, station.getKey().getId() + "." + inboxEntry.getExtension()));
             } else {
-                photoDao.insert(photo);
+                repository.insertPhoto(photo);
             }
             station.setPhoto(photo);
 
@@ -466,7 +474,7 @@ public class InboxResource {
                 PhotoImporter.copyFile(originalFile, countryDir, station.getKey().getId(), inboxEntry.getExtension());
             }
             FileUtils.moveFileToDirectory(originalFile, new File(inboxDir, "done"), true);
-            inboxDao.done(inboxEntry.getId());
+            pendingInbox.done(inboxEntry.getId());
             LOG.info("Upload {} accepted: {}", inboxEntry.getId(), fileToImport);
             mastodonBot.tootNewPhoto(repository.findByKey(station.getKey()), inboxEntry);
         } catch (final Exception e) {
@@ -476,7 +484,7 @@ public class InboxResource {
     }
 
     private void rejectInboxEntry(final InboxEntry inboxEntry, final String rejectReason) {
-        inboxDao.reject(inboxEntry.getId(), rejectReason);
+        pendingInbox.reject(inboxEntry.getId(), rejectReason);
         if (inboxEntry.isProblemReport()) {
             LOG.info("Rejecting problem report {}, {}", inboxEntry.getId(), rejectReason);
             return;
@@ -528,11 +536,11 @@ public class InboxResource {
         try {
             if (station != null) {
                 // existing station
-                id = inboxDao.insert(new InboxEntry(station.getKey().getCountry(), station.getKey().getId(), stationTitle,
+                id = pendingInbox.insert(new InboxEntry(station.getKey().getCountry(), station.getKey().getId(), stationTitle,
                         null, user.getUser().getId(), extension, comment, null, active));
             } else {
                 // missing station
-                id = inboxDao.insert(new InboxEntry(country, null, stationTitle,
+                id = pendingInbox.insert(new InboxEntry(country, null, stationTitle,
                         coordinates, user.getUser().getId(), extension, comment, null, active));
             }
             file = getUploadFile(InboxEntry.getFilename(id, extension));
@@ -592,14 +600,14 @@ public class InboxResource {
         if (station.hasPhoto()) {
             return true;
         }
-        return inboxDao.countPendingInboxEntriesForStation(id, station.getKey().getCountry(), station.getKey().getId()) > 0;
+        return pendingInbox.countPendingInboxEntriesForStation(id, station.getKey()) > 0;
     }
 
     private boolean hasConflict(final Integer id, final Coordinates coordinates) {
         if (coordinates == null || coordinates.hasZeroCoords()) {
             return false;
         }
-        return inboxDao.countPendingInboxEntriesForNearbyCoordinates(id, coordinates) > 0 || repository.countNearbyCoordinates(coordinates) > 0;
+        return pendingInbox.countPendingInboxEntriesForNearbyCoordinates(id, coordinates) > 0 || repository.countNearbyCoordinates(coordinates) > 0;
     }
 
     private InboxResponse consumeBodyAndReturn(final InputStream body, final InboxResponse response) {
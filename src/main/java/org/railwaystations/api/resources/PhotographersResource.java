@@ -5,12 +5,15 @@ import org.railwaystations.api.writer.PhotographersTxtWriter;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.util.Map;
 
 @Path("/")
 public class PhotographersResource {
 
     private static final String COUNTRY = "country";
+    private static final String OFFSET = "offset";
+    private static final String LIMIT = "limit";
 
     private final StationsRepository repository;
 
@@ -21,15 +24,22 @@ public class PhotographersResource {
     @GET
     @Path("photographers")
     @Produces({MediaType.APPLICATION_JSON + ";charset=UTF-8", PhotographersTxtWriter.TEXT_PLAIN + ";charset=UTF-8"})
-    public Map<String, Long> get(@QueryParam(PhotographersResource.COUNTRY) final String country) {
-        return getWithCountry(country);
+    public Map<String, Long> get(@QueryParam(PhotographersResource.COUNTRY) final String country,
+                                 @QueryParam(PhotographersResource.OFFSET) @DefaultValue("0") final int offset,
+                                 @QueryParam(PhotographersResource.LIMIT) final Integer limit) {
+        return getWithCountry(country, offset, limit);
     }
 
     @GET
     @Path("{country}/photographers")
     @Produces({MediaType.APPLICATION_JSON + ";charset=UTF-8", PhotographersTxtWriter.TEXT_PLAIN + ";charset=UTF-8"})
-    public Map<String, Long> getWithCountry(@PathParam(PhotographersResource.COUNTRY) final String country) {
-        return repository.getPhotographerMap(country);
+    public Map<String, Long> getWithCountry(@PathParam(PhotographersResource.COUNTRY) final String country,
+                                            @QueryParam(PhotographersResource.OFFSET) @DefaultValue("0") final int offset,
+                                            @QueryParam(PhotographersResource.LIMIT) final Integer limit) {
+        if (offset < 0 || limit != null && limit < 1) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return repository.getPhotographerMap(country, offset, limit != null ? limit : Integer.MAX_VALUE);
     }
 
 }
@@ -4,6 +4,7 @@ import io.dropwizard.auth.Auth;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jetty.http.HttpStatus;
+import org.railwaystations.api.StationsRepository;
 import org.railwaystations.api.auth.PasswordUtil;
 import org.railwaystations.api.auth.AuthUser;
 import org.railwaystations.api.db.UserDao;
@@ -19,6 +20,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -30,12 +32,14 @@ public class ProfileResource {
     private final Monitor monitor;
     private final Mailer mailer;
     private final UserDao userDao;
+    private final StationsRepository repository;
     private final String eMailVerificationUrl;
 
-    public ProfileResource(final Monitor monitor, final Mailer mailer, final UserDao userDao, final String eMailVerificationUrl) {
+    public ProfileResource(final Monitor monitor, final Mailer mailer, final UserDao userDao, final StationsRepository repository, final String eMailVerificationUrl) {
         this.monitor = monitor;
         this.mailer = mailer;
         this.userDao = userDao;
+        this.repository = repository;
         this.eMailVerificationUrl = eMailVerificationUrl;
     }
 
@@ -208,9 +212,22 @@ public class ProfileResource {
 
         newProfile.setId(user.getId());
         userDao.update(newProfile);
+        if (isPhotographerChanged(user, newProfile)) {
+            repository.photographerChanged(newProfile);
+        }
         return Response.ok().build();
     }
 
+    /**
+     * Only the name, url, anonymous flag and license of the photographer show up in the stations
+     */
+    private static boolean isPhotographerChanged(final User user, final User newProfile) {
+        return !Objects.equals(user.getName(), newProfile.getName())
+                || !Objects.equals(user.getUrl(), newProfile.getUrl())
+                || user.isAnonymous() != newProfile.isAnonymous()
+                || !Objects.equals(user.getLicense(), newProfile.getLicense());
+    }
+
     @POST
     @Path("resendEmailVerification")
     public Response resendEmailVerification(@HeaderParam("User-Agent") final String userAgent, @Auth final AuthUser authUser) {
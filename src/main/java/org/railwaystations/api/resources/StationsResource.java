@@ -1,17 +1,35 @@
 package org.railwaystations.api.resources;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.railwaystations.api.StationsRepository;
+import org.railwaystations.api.StationsResponseCache;
+import org.railwaystations.api.model.BoundingBox;
+import org.railwaystations.api.model.Coordinates;
 import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationChanges;
+import org.railwaystations.api.model.StationFilter;
+import org.railwaystations.api.model.StationsPage;
+import org.railwaystations.api.writer.CompressionInterceptor;
+import org.railwaystations.api.writer.StationsBinaryWriter;
 import org.railwaystations.api.writer.StationsGpxWriter;
 import org.railwaystations.api.writer.StationsTxtWriter;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Link;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Path("/")
 public class StationsResource {
@@ -22,73 +40,257 @@ public class StationsResource {
     private static final String MAX_DISTANCE = "maxDistance";
     private static final String LAT = "lat";
     private static final String LON = "lon";
+    private static final String MIN_LAT = "minLat";
+    private static final String MAX_LAT = "maxLat";
+    private static final String MIN_LON = "minLon";
+    private static final String MAX_LON = "maxLon";
     private static final String ID = "id";
     private static final String ACTIVE = "active";
     private static final String SINCE_HOURS = "sinceHours";
+    private static final String SINCE = "since";
+    private static final String LIMIT = "limit";
+    private static final String CURSOR = "cursor";
+    private static final String BEFORE = "before";
+    private static final String QUERY = "q";
+
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_SEARCH_LIMIT = 100;
 
     private static final int HOURS_IN_MILLIS = 1000 * 60 * 60;
 
+    private static final List<Variant> VARIANTS = Variant.mediaTypes(
+            MediaType.valueOf(MediaType.APPLICATION_JSON + ";charset=UTF-8"),
+            MediaType.valueOf(StationsGpxWriter.GPX_MIME_TYPE),
+            MediaType.valueOf(StationsTxtWriter.TEXT_PLAIN + ";charset=UTF-8"),
+            MediaType.valueOf(StationsBinaryWriter.BINARY_MIME_TYPE)).build();
+
     private final StationsRepository repository;
+    private final StationsResponseCache responseCache;
 
-    public StationsResource(final StationsRepository repository) {
+    public StationsResource(final StationsRepository repository, final StationsResponseCache responseCache) {
         this.repository = repository;
+        this.responseCache = responseCache;
     }
 
     @GET
     @Path("stations")
     @Produces({MediaType.APPLICATION_JSON + ";charset=UTF-8", StationsGpxWriter.GPX_MIME_TYPE,
-            StationsTxtWriter.TEXT_PLAIN + ";charset=UTF-8"})
-    public List<Station> get(@QueryParam(StationsResource.COUNTRY) final Set<String> countries,
+            StationsTxtWriter.TEXT_PLAIN + ";charset=UTF-8", StationsBinaryWriter.BINARY_MIME_TYPE})
+    public Response get(@QueryParam(StationsResource.COUNTRY) final Set<String> countries,
                              @QueryParam(StationsResource.HAS_PHOTO) final Boolean hasPhoto,
                              @QueryParam(StationsResource.PHOTOGRAPHER) final String photographer,
                              @QueryParam(StationsResource.MAX_DISTANCE) final Integer maxDistance,
                              @QueryParam(StationsResource.LAT) final Double lat,
                              @QueryParam(StationsResource.LON) final Double lon,
-                             @QueryParam(StationsResource.ACTIVE) final Boolean active) {
-        // TODO: can we search this on the DB?
-        return getStationsMap(countries)
-                .values().stream().filter(station -> station.appliesTo(hasPhoto, photographer, maxDistance, lat, lon, active)).collect(Collectors.toList());
+                             @QueryParam(StationsResource.ACTIVE) final Boolean active,
+                             @QueryParam(StationsResource.MIN_LAT) final Double minLat,
+                             @QueryParam(StationsResource.MAX_LAT) final Double maxLat,
+                             @QueryParam(StationsResource.MIN_LON) final Double minLon,
+                             @QueryParam(StationsResource.MAX_LON) final Double maxLon,
+                             @QueryParam(StationsResource.LIMIT) final Integer limit,
+                             @QueryParam(StationsResource.CURSOR) final String cursor,
+                             @Context final Request request,
+                             @Context final HttpHeaders headers,
+                             @Context final UriInfo uriInfo) {
+        final BoundingBox boundingBox = minLat != null && maxLat != null && minLon != null && maxLon != null
+                ? new BoundingBox(minLat, maxLat, minLon, maxLon) : null;
+        if (!repository.hasStations(countries)) {
+            throw new WebApplicationException(404);
+        }
+        final StationFilter filter = new StationFilter(hasPhoto, photographer, maxDistance, lat, lon, active, boundingBox);
+        final Variant variant = request.selectVariant(VARIANTS);
+        final MediaType mediaType = variant != null ? variant.getMediaType() : VARIANTS.get(0).getMediaType();
+        if (limit != null || cursor != null) {
+            return getPage(countries, filter, limit != null ? limit : DEFAULT_LIMIT, cursor, mediaType, uriInfo);
+        }
+        if (filter.getSearchArea() != null || !repository.isInMemory()) {
+            // spatial queries hardly repeat, they would only pollute the cache,
+            // and without a snapshot the changes of other instances wouldn't invalidate it
+            return Response.ok(repository.findStations(countries, filter), mediaType).build();
+        }
+
+        final StationsResponseCache.Entry entry = responseCache.get(countries, filter, mediaType);
+        final boolean gzip = acceptsGzip(headers);
+        final Response.ResponseBuilder notModified = request.evaluatePreconditions(entry.getEtag(gzip));
+        if (notModified != null) {
+            return notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        return Response.ok(gzip ? entry.getGzipped() : entry.getBytes(), mediaType)
+                .tag(entry.getEtag(gzip))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header(HttpHeaders.CONTENT_ENCODING, gzip ? "gzip" : null)
+                .build();
+    }
+
+    private Response getPage(final Set<String> countries, final StationFilter filter, final int limit, final String cursor,
+                             final MediaType mediaType, final UriInfo uriInfo) {
+        if (limit < 1) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        final StationsPage page = repository.findPage(countries, filter, decodeCursor(cursor), limit);
+        final Response.ResponseBuilder response = Response.ok(page.getStations().stream(), mediaType);
+        if (page.getNext() != null) {
+            response.links(Link.fromUriBuilder(uriInfo.getRequestUriBuilder()
+                    .replaceQueryParam(CURSOR, encodeCursor(page.getNext()))).rel("next").build());
+        }
+        return response.build();
+    }
+
+    private static String encodeCursor(final Station.Key key) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key.getCountry() + "/" + key.getId()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Station.Key decodeCursor(final String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            final String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final int separator = key.indexOf('/');
+            if (separator < 0) {
+                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+            }
+            return new Station.Key(key.substring(0, separator), key.substring(separator + 1));
+        } catch (final IllegalArgumentException e) {
+            throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+        }
+    }
+
+    private static boolean acceptsGzip(final HttpHeaders headers) {
+        return CompressionInterceptor.GZIP.equals(CompressionInterceptor.negotiate(headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING)));
     }
 
     @GET
     @Path("{country}/stations")
     @Produces({MediaType.APPLICATION_JSON + ";charset=UTF-8", StationsGpxWriter.GPX_MIME_TYPE,
-            StationsTxtWriter.TEXT_PLAIN + ";charset=UTF-8"})
-    public List<Station> getWithCountry(@PathParam(StationsResource.COUNTRY) final String country,
+            StationsTxtWriter.TEXT_PLAIN + ";charset=UTF-8", StationsBinaryWriter.BINARY_MIME_TYPE})
+    public Response getWithCountry(@PathParam(StationsResource.COUNTRY) final String country,
                                         @QueryParam(StationsResource.HAS_PHOTO) final Boolean hasPhoto,
                                         @QueryParam(StationsResource.PHOTOGRAPHER) final String photographer,
                                         @QueryParam(StationsResource.MAX_DISTANCE) final Integer maxDistance,
                                         @QueryParam(StationsResource.LAT) final Double lat,
                                         @QueryParam(StationsResource.LON) final Double lon,
-                                        @QueryParam(StationsResource.ACTIVE) final Boolean active) {
-        return get(Collections.singleton(country), hasPhoto, photographer, maxDistance, lat, lon, active);
+                                        @QueryParam(StationsResource.ACTIVE) final Boolean active,
+                                        @QueryParam(StationsResource.MIN_LAT) final Double minLat,
+                                        @QueryParam(StationsResource.MAX_LAT) final Double maxLat,
+                                        @QueryParam(StationsResource.MIN_LON) final Double minLon,
+                                        @QueryParam(StationsResource.MAX_LON) final Double maxLon,
+                                        @QueryParam(StationsResource.LIMIT) final Integer limit,
+                                        @QueryParam(StationsResource.CURSOR) final String cursor,
+                                        @Context final Request request,
+                                        @Context final HttpHeaders headers,
+                                        @Context final UriInfo uriInfo) {
+        return get(Collections.singleton(country), hasPhoto, photographer, maxDistance, lat, lon, active, minLat, maxLat, minLon, maxLon,
+                limit, cursor, request, headers, uriInfo);
     }
 
     @GET
     @Path("{country}/stations/{id}")
     @Produces({MediaType.APPLICATION_JSON + ";charset=UTF-8"})
-    public Station getById(@PathParam(StationsResource.COUNTRY) final String country,
-                           @PathParam(StationsResource.ID) final String id) {
-        final Station station = getStationsMap(Collections.singleton(country)).get(new Station.Key(country, id));
+    public Response getById(@PathParam(StationsResource.COUNTRY) final String country,
+                            @PathParam(StationsResource.ID) final String id,
+                            @Context final Request request) {
+        final Station station = repository.getStation(new Station.Key(country, id));
         if (station == null) {
             throw new WebApplicationException(404);
         }
-        return station;
+        final EntityTag etag = etagOf(station);
+        final Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return Response.ok(station).tag(etag).build();
+    }
+
+    /**
+     * Changes whenever one of the served properties of the station or its photo changes
+     */
+    private static EntityTag etagOf(final Station station) {
+        final Coordinates coordinates = station.getCoordinates();
+        return new EntityTag(DigestUtils.sha1Hex(String.join("|",
+                station.getKey().getCountry(), station.getKey().getId(), station.getTitle(),
+                coordinates != null ? coordinates.getLat() + "," + coordinates.getLon() : "",
+                String.valueOf(station.isActive()), String.valueOf(station.getCreatedAt()),
+                String.valueOf(station.getPhotoUrl()), String.valueOf(station.getPhotographer()),
+                String.valueOf(station.getLicense()))));
+    }
+
+    @GET
+    @Path("stations/changes")
+    @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+    public StationChanges getChanges(@QueryParam(StationsResource.SINCE) final Long since,
+                                     @QueryParam(StationsResource.COUNTRY) final Set<String> countries) {
+        return repository.getChanges(since, countries);
+    }
+
+    @GET
+    @Path("stations/search")
+    @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+    public List<Station> search(@QueryParam(StationsResource.QUERY) final String query,
+                                @QueryParam(StationsResource.COUNTRY) final Set<String> countries,
+                                @QueryParam(StationsResource.LIMIT) @DefaultValue("10") final int limit) {
+        if (StringUtils.isBlank(query) || limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return repository.searchStations(query, countries, limit);
     }
 
     @GET
     @Path("recentPhotoImports")
     @Produces(MediaType.APPLICATION_JSON)
-    public List<Station> recentPhotoImports(@QueryParam(StationsResource.SINCE_HOURS)  @DefaultValue("10") final long sinceHours) {
-        return repository.findRecentImports(System.currentTimeMillis() - (HOURS_IN_MILLIS * sinceHours));
+    public Response recentPhotoImports(@QueryParam(StationsResource.SINCE_HOURS)  @DefaultValue("10") final long sinceHours,
+                                       @QueryParam(StationsResource.LIMIT) final Integer limit,
+                                       @QueryParam(StationsResource.BEFORE) final String before,
+                                       @Context final UriInfo uriInfo) {
+        final int pageSize = limit != null ? limit : before != null ? DEFAULT_LIMIT : Integer.MAX_VALUE;
+        if (pageSize < 1) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        final ImportCursor cursor = ImportCursor.decode(before);
+        final List<Station> imports = repository.findRecentImports(System.currentTimeMillis() - (HOURS_IN_MILLIS * sinceHours),
+                cursor != null ? cursor.createdAt : Long.MAX_VALUE, cursor != null ? cursor.key : null, pageSize);
+        final Response.ResponseBuilder response = Response.ok(imports);
+        if (imports.size() == pageSize) {
+            response.links(Link.fromUriBuilder(uriInfo.getRequestUriBuilder()
+                    .replaceQueryParam(BEFORE, ImportCursor.encode(imports.get(imports.size() - 1)))).rel("next").build());
+        }
+        return response.build();
     }
 
-    private Map<Station.Key, Station> getStationsMap(final Set<String> countries) {
-        final Map<Station.Key, Station> stationMap = repository.getStationsByCountry(countries);
-        if (stationMap.isEmpty()) {
-            throw new WebApplicationException(404);
+    /**
+     * Position in the recent imports, by photo creation time and station key
+     */
+    private static final class ImportCursor {
+
+        private final long createdAt;
+        private final Station.Key key;
+
+        private ImportCursor(final long createdAt, final Station.Key key) {
+            this.createdAt = createdAt;
+            this.key = key;
         }
-        return stationMap;
+
+        private static String encode(final Station station) {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString((station.getCreatedAt() + "/" + station.getKey().getCountry()
+                    + "/" + station.getKey().getId()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static ImportCursor decode(final String cursor) {
+            if (cursor == null) {
+                return null;
+            }
+            try {
+                final String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("/", 3);
+                if (parts.length < 3) {
+                    throw new WebApplicationException(Response.Status.BAD_REQUEST);
+                }
+                return new ImportCursor(Long.parseLong(parts[0]), new Station.Key(parts[1], parts[2]));
+            } catch (final IllegalArgumentException e) {
+                throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+            }
+        }
+
     }
 
 }
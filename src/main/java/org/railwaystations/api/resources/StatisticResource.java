@@ -6,11 +6,13 @@ import org.railwaystations.api.writer.StatisticTxtWriter;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 @Path("/")
 public class StatisticResource {
 
     private static final String COUNTRY = "country";
+    private static final String ALL_COUNTRIES = "*";
 
     private final StationsRepository repository;
 
@@ -18,11 +20,17 @@ public class StatisticResource {
         this.repository = repository;
     }
 
+    /**
+     * The overall statistic, the one of the given country or with country=* the statistics of all countries
+     */
     @GET
     @Path("stats")
     @Produces({MediaType.APPLICATION_JSON, StatisticTxtWriter.TEXT_PLAIN})
-    public Statistic get(@QueryParam(StatisticResource.COUNTRY) final String country) {
-        return getWithCountry(country);
+    public Response get(@QueryParam(StatisticResource.COUNTRY) final String country) {
+        if (ALL_COUNTRIES.equals(country)) {
+            return Response.ok(repository.getStatistics().toArray(new Statistic[0])).build();
+        }
+        return Response.ok(getWithCountry(country)).build();
     }
 
     @GET
@@ -0,0 +1,45 @@
+package org.railwaystations.api.resources;
+
+import org.railwaystations.api.StationsRepository;
+import org.railwaystations.api.StationsTilePyramid;
+import org.railwaystations.api.model.Tile;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import java.util.Collections;
+
+@Path("/")
+public class TilesResource {
+
+    private static final String COUNTRY = "country";
+    private static final String Z = "z";
+    private static final String X = "x";
+    private static final String Y = "y";
+
+    private final StationsRepository repository;
+
+    public TilesResource(final StationsRepository repository) {
+        this.repository = repository;
+    }
+
+    @GET
+    @Path("{country}/tiles/{z}/{x}/{y}")
+    @Produces(MediaType.APPLICATION_JSON + ";charset=UTF-8")
+    public Tile get(@PathParam(TilesResource.COUNTRY) final String country,
+                    @PathParam(TilesResource.Z) final int z,
+                    @PathParam(TilesResource.X) final int x,
+                    @PathParam(TilesResource.Y) final int y) {
+        if (z < 0 || z > StationsTilePyramid.MAX_ZOOM || x < 0 || x >= 1 << z || y < 0 || y >= 1 << z) {
+            throw new WebApplicationException(400);
+        }
+        if (!repository.hasStations(Collections.singleton(country))) {
+            throw new WebApplicationException(404);
+        }
+        return repository.getTile(country, z, x, y);
+    }
+
+}
@@ -0,0 +1,263 @@
+package org.railwaystations.api.writer;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses JSON, GPX and text responses with gzip or deflate, as negotiated by the Accept-Encoding header.
+ * Responses stay uncompressed below the threshold, which is detected by buffering their beginning.
+ * Responses which already have a Content-Encoding, like the pre-compressed station lists, are left alone.
+ */
+public class CompressionInterceptor implements ContainerResponseFilter, WriterInterceptor {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final String ENCODING_PROPERTY = CompressionInterceptor.class.getName() + ".encoding";
+
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(MediaType.APPLICATION_JSON, StationsGpxWriter.GPX_MIME_TYPE,
+            MediaType.TEXT_PLAIN);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final int threshold;
+    private final Histogram ratio;
+    private final Counter uncompressedBytes;
+    private final Counter compressedBytes;
+    private final Timer cpuTime;
+
+    public CompressionInterceptor(final int threshold, final MetricRegistry metrics) {
+        this.threshold = threshold;
+        this.ratio = metrics.histogram(MetricRegistry.name(CompressionInterceptor.class, "ratio"));
+        this.uncompressedBytes = metrics.counter(MetricRegistry.name(CompressionInterceptor.class, "uncompressed-bytes"));
+        this.compressedBytes = metrics.counter(MetricRegistry.name(CompressionInterceptor.class, "compressed-bytes"));
+        this.cpuTime = metrics.timer(MetricRegistry.name(CompressionInterceptor.class, "cpu-time"));
+    }
+
+    /**
+     * Gets the quality value the Accept-Encoding header gives the content coding, 0 if it is not acceptable
+     */
+    public static double quality(final String acceptEncoding, final String coding) {
+        if (acceptEncoding == null) {
+            return 0;
+        }
+        double wildcard = 0;
+        for (final String element : acceptEncoding.split(",")) {
+            final String[] parts = element.split(";");
+            final String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                final String parameter = parts[i].trim().toLowerCase(Locale.ENGLISH);
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (final NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals(coding)) {
+                return quality;
+            }
+            if ("*".equals(name)) {
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * Selects gzip or deflate by their quality, preferring gzip, null if the client accepts neither
+     */
+    public static String negotiate(final String acceptEncoding) {
+        final double gzip = quality(acceptEncoding, GZIP);
+        final double deflate = quality(acceptEncoding, DEFLATE);
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext requestContext, final ContainerResponseContext responseContext) {
+        final MediaType mediaType = responseContext.getMediaType();
+        if (!responseContext.hasEntity() || mediaType == null
+                || !COMPRESSIBLE_TYPES.contains(mediaType.getType() + "/" + mediaType.getSubtype())
+                || responseContext.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return;
+        }
+        final MultivaluedMap<String, Object> headers = responseContext.getHeaders();
+        final List<Object> vary = headers.get(HttpHeaders.VARY);
+        if (vary == null || !vary.contains(HttpHeaders.ACCEPT_ENCODING)) {
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        final String encoding = negotiate(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if (encoding != null) {
+            requestContext.setProperty(ENCODING_PROPERTY, encoding);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+        final String encoding = (String) context.getProperty(ENCODING_PROPERTY);
+        if (encoding == null) {
+            context.proceed();
+            return;
+        }
+        final CompressingOutputStream out = new CompressingOutputStream(context, encoding);
+        context.setOutputStream(out);
+        context.proceed();
+        out.close();
+    }
+
+    private static long currentCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Buffers the response until it reaches the threshold, then sets the headers and compresses it.
+     * The headers are committed with the first byte written to the original stream.
+     */
+    private final class CompressingOutputStream extends OutputStream {
+
+        private static final int BUFFER_SIZE = 8192;
+
+        private final WriterInterceptorContext context;
+        private final CountingOutputStream out;
+        private final String encoding;
+        private final byte[] pending;
+        private int pendingLength;
+        private DeflaterOutputStream compressor;
+        private long uncompressed;
+        private long cpuNanos;
+        private boolean closed;
+
+        private CompressingOutputStream(final WriterInterceptorContext context, final String encoding) {
+            this.context = context;
+            this.out = new CountingOutputStream(context.getOutputStream());
+            this.encoding = encoding;
+            this.pending = new byte[threshold];
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            if (compressor == null) {
+                if (pendingLength + length < threshold) {
+                    System.arraycopy(bytes, offset, pending, pendingLength, length);
+                    pendingLength += length;
+                    return;
+                }
+                start();
+            }
+            compress(bytes, offset, length);
+        }
+
+        private void start() throws IOException {
+            final MultivaluedMap<String, Object> headers = context.getHeaders();
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            // the compressed bytes differ, but represent the same entity
+            final Object etag = headers.getFirst(HttpHeaders.ETAG);
+            if (etag != null) {
+                final EntityTag tag = etag instanceof EntityTag ? (EntityTag) etag : EntityTag.valueOf(etag.toString());
+                headers.putSingle(HttpHeaders.ETAG, new EntityTag(tag.getValue(), true));
+            }
+
+            // with sync flush, flush() hands everything written so far to the client
+            compressor = GZIP.equals(encoding) ? new GZIPOutputStream(out, BUFFER_SIZE, true) : new DeflaterOutputStream(out, true);
+            compress(pending, 0, pendingLength);
+        }
+
+        private void compress(final byte[] bytes, final int offset, final int length) throws IOException {
+            uncompressed += length;
+            final long start = currentCpuTime();
+            compressor.write(bytes, offset, length);
+            cpuNanos += currentCpuTime() - start;
+        }
+
+        /**
+         * Keeps buffering below the threshold, as the response is not known to be compressed yet
+         */
+        @Override
+        public void flush() throws IOException {
+            if (compressor != null) {
+                compressor.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (compressor == null) {
+                out.write(pending, 0, pendingLength);
+                out.close();
+                return;
+            }
+            final long start = currentCpuTime();
+            compressor.close();
+            cpuNanos += currentCpuTime() - start;
+            ratio.update(out.count * 100 / uncompressed);
+            uncompressedBytes.inc(uncompressed);
+            compressedBytes.inc(out.count);
+            cpuTime.update(cpuNanos, TimeUnit.NANOSECONDS);
+        }
+
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+
+    }
+
+}
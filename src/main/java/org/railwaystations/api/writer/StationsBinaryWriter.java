@@ -0,0 +1,206 @@
+package org.railwaystations.api.writer;
+
+import org.railwaystations.api.model.Station;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compact binary station list for mobile clients. The stream starts with the magic bytes "RSB" and the format version,
+ * followed by one record per station and a terminating 0 byte. All integers are unsigned LEB128 varints, signed values
+ * zigzag encoded. Strings are written as byte length and UTF-8 bytes.
+ * <p>
+ * A record starts with a flags byte ({@link #RECORD} always set) followed by:
+ * <ul>
+ *     <li>country: dictionary reference</li>
+ *     <li>id: zigzag delta to the previous numeric id if {@link #NUMERIC_ID}, a string otherwise</li>
+ *     <li>title: string, if {@link #HAS_TITLE}</li>
+ *     <li>lat, lon: zigzag delta to the previous station, in 1e-7 degrees</li>
+ *     <li>DS100: string, if {@link #HAS_DS100}</li>
+ *     <li>if {@link #HAS_PHOTO}: photographer, photographerUrl, photo url directory (dictionary references),
+ *     photo file name (string), license, licenseUrl (dictionary references) and createdAt (zigzag varint,
+ *     if {@link #HAS_CREATED_AT})</li>
+ * </ul>
+ * A dictionary reference is 0 for null, otherwise the index of the entry plus one. An index equal to the size of the
+ * dictionary adds a new entry, its string follows the reference. The dictionary is shared by all referenced fields.
+ */
+@Produces(StationsBinaryWriter.BINARY_MIME_TYPE)
+public class StationsBinaryWriter implements MessageBodyWriter<Stream<Station>> {
+
+    public static final String BINARY_MIME_TYPE = "application/x-railway-stations";
+
+    public static final int VERSION = 1;
+    public static final byte[] MAGIC = {'R', 'S', 'B'};
+
+    public static final int RECORD = 0x80;
+    public static final int HAS_PHOTO = 0x01;
+    public static final int ACTIVE = 0x02;
+    public static final int NUMERIC_ID = 0x04;
+    public static final int HAS_DS100 = 0x08;
+    public static final int HAS_CREATED_AT = 0x10;
+    public static final int HAS_TITLE = 0x20;
+
+    public static final double COORDINATE_SCALE = 1e7;
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                               final MediaType mediaType) {
+        return Stream.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(final Stream<Station> t, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
+                        final OutputStream entityStream) throws IOException, WebApplicationException {
+        final OutputStream out = new BufferedOutputStream(entityStream);
+        try (t) {
+            out.write(MAGIC);
+            out.write(VERSION);
+            final Encoder encoder = new Encoder(out);
+            t.forEach(encoder::write);
+            out.write(0);
+            out.flush();
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public long getSize(final Stream<Station> t, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType) {
+        return -1;
+    }
+
+    /**
+     * Numeric ids without leading zeros are delta encoded, anything else would not survive the round trip
+     */
+    private static long parseNumericId(final String id) {
+        if (id.isEmpty() || id.length() > 18 || (id.length() > 1 && id.charAt(0) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static final class Encoder {
+
+        private final OutputStream out;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private long lastId;
+        private long lastLat;
+        private long lastLon;
+
+        private Encoder(final OutputStream out) {
+            this.out = out;
+        }
+
+        private void write(final Station station) {
+            try {
+                final long id = parseNumericId(station.getKey().getId());
+                int flags = RECORD;
+                flags |= station.hasPhoto() ? HAS_PHOTO : 0;
+                flags |= station.isActive() ? ACTIVE : 0;
+                flags |= id >= 0 ? NUMERIC_ID : 0;
+                flags |= station.getDS100() != null ? HAS_DS100 : 0;
+                flags |= station.hasPhoto() && station.getCreatedAt() != null ? HAS_CREATED_AT : 0;
+                flags |= station.getTitle() != null ? HAS_TITLE : 0;
+                out.write(flags);
+
+                writeReference(station.getKey().getCountry());
+                if (id >= 0) {
+                    writeSigned(id - lastId);
+                    lastId = id;
+                } else {
+                    writeString(station.getKey().getId());
+                }
+                if (station.getTitle() != null) {
+                    writeString(station.getTitle());
+                }
+                final long lat = Math.round(station.getCoordinates().getLat() * COORDINATE_SCALE);
+                final long lon = Math.round(station.getCoordinates().getLon() * COORDINATE_SCALE);
+                writeSigned(lat - lastLat);
+                writeSigned(lon - lastLon);
+                lastLat = lat;
+                lastLon = lon;
+                if (station.getDS100() != null) {
+                    writeString(station.getDS100());
+                }
+                if (station.hasPhoto()) {
+                    writePhoto(station);
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writePhoto(final Station station) throws IOException {
+            writeReference(station.getPhotographer());
+            writeReference(station.getPhotographerUrl());
+            final String photoUrl = station.getPhotoUrl() != null ? station.getPhotoUrl() : "";
+            final int fileName = photoUrl.lastIndexOf('/') + 1;
+            writeReference(photoUrl.substring(0, fileName));
+            writeString(photoUrl.substring(fileName));
+            writeReference(station.getLicense());
+            writeReference(station.getLicenseUrl());
+            if (station.getCreatedAt() != null) {
+                writeSigned(station.getCreatedAt());
+            }
+        }
+
+        private void writeReference(final String value) throws IOException {
+            if (value == null) {
+                writeUnsigned(0);
+                return;
+            }
+            final Integer index = dictionary.get(value);
+            if (index != null) {
+                writeUnsigned(index + 1L);
+                return;
+            }
+            final int newIndex = dictionary.size();
+            dictionary.put(value, newIndex);
+            writeUnsigned(newIndex + 1L);
+            writeString(value);
+        }
+
+        private void writeString(final String value) throws IOException {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeUnsigned(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeSigned(final long value) throws IOException {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsigned(final long value) throws IOException {
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                out.write((int) ((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            out.write((int) remaining);
+        }
+    }
+
+}
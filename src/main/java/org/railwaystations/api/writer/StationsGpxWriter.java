@@ -7,43 +7,41 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
-import javax.xml.stream.FactoryConfigurationError;
-import javax.xml.stream.XMLOutputFactory;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamWriter;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.util.List;
+import java.util.stream.Stream;
 
+/**
+ * Writes the stations as GPX waypoints, the markup is written as constant bytes and only the title is escaped
+ */
 @Produces(StationsGpxWriter.GPX_MIME_TYPE)
-public class StationsGpxWriter implements MessageBodyWriter<List<Station>> {
+public class StationsGpxWriter implements MessageBodyWriter<Stream<Station>> {
 
     public static final String GPX_MIME_TYPE = "application/gpx+xml";
 
-    private static final String UTF_8 = "UTF-8";
+    private static final byte[] HEADER = Utf8Writer.ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" version=\"1.1\">\n");
 
-    private static final String NAME_ELEMENT = "name";
+    private static final byte[] WPT_LAT = Utf8Writer.ascii("<wpt lat=\"");
 
-    private static final String WPT_ELEMENT = "wpt";
+    private static final byte[] LON = Utf8Writer.ascii("\" lon=\"");
 
-    private static final String LON_ELEMENT = "lon";
+    private static final byte[] NAME = Utf8Writer.ascii("\"><name>");
 
-    private static final String LAT_ELEMENT = "lat";
+    private static final byte[] END_WPT = Utf8Writer.ascii("</name></wpt>\n");
 
-    private static void stationToXml(final XMLStreamWriter xmlw, final Station station) {
-        try {
-            xmlw.writeStartElement(StationsGpxWriter.WPT_ELEMENT);
-            xmlw.writeAttribute(StationsGpxWriter.LAT_ELEMENT, Double.toString(station.getCoordinates().getLat()));
-            xmlw.writeAttribute(StationsGpxWriter.LON_ELEMENT, Double.toString(station.getCoordinates().getLon()));
-            xmlw.writeStartElement(StationsGpxWriter.NAME_ELEMENT);
-            xmlw.writeCharacters(station.getTitle());
-            xmlw.writeEndElement();
-            xmlw.writeEndElement();
-            xmlw.writeCharacters("\n");
-        } catch (final XMLStreamException e) {
-            throw new WebApplicationException(e);
+    private static final byte[] FOOTER = Utf8Writer.ascii("</gpx>");
+
+    private static void stationToXml(final Utf8Writer writer, final Station station) {
+        writer.write(WPT_LAT).writeCoordinate(station.getCoordinates().getLat())
+                .write(LON).writeCoordinate(station.getCoordinates().getLon())
+                .write(NAME);
+        if (station.getTitle() != null) {
+            writer.writeXml(station.getTitle());
         }
+        writer.write(END_WPT);
     }
 
     @Override
@@ -53,27 +51,22 @@ public class StationsGpxWriter implements MessageBodyWriter<List<Station>> {
     }
 
     @Override
-    public void writeTo(final List<Station> t, final Class<?> type, final Type genericType,
+    public void writeTo(final Stream<Station> t, final Class<?> type, final Type genericType,
                         final Annotation[] annotations, final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
                         final OutputStream entityStream) throws WebApplicationException {
-        try {
-            final XMLStreamWriter xmlw = XMLOutputFactory.newInstance().createXMLStreamWriter(entityStream, StationsGpxWriter.UTF_8);
-            xmlw.writeStartDocument(StationsGpxWriter.UTF_8, "1.0");
-            xmlw.writeCharacters("\n");
-            xmlw.writeStartElement("gpx");
-            xmlw.writeDefaultNamespace("http://www.topografix.com/GPX/1/1");
-            xmlw.writeAttribute("version", "1.1");
-            xmlw.writeCharacters("\n");
-            t.forEach(station -> stationToXml(xmlw, station));
-            xmlw.writeEndElement();
-            xmlw.flush();
-        } catch (final XMLStreamException | FactoryConfigurationError e) {
-            throw new WebApplicationException(e);
+        try (t) {
+            final Utf8Writer writer = new Utf8Writer(entityStream);
+            writer.write(HEADER);
+            t.forEach(station -> stationToXml(writer, station));
+            writer.write(FOOTER);
+            writer.flush();
+        } catch (final UncheckedIOException e) {
+            throw new WebApplicationException(e.getCause());
         }
     }
 
     @Override
-    public long getSize(final List<Station> t, final Class<?> type, final Type genericType,
+    public long getSize(final Stream<Station> t, final Class<?> type, final Type genericType,
                         final Annotation[] annotations, final MediaType mediaType) {
         return 0;
     }
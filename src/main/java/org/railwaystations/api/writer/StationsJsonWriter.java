@@ -0,0 +1,67 @@
+package org.railwaystations.api.writer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.railwaystations.api.model.Station;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.stream.Stream;
+
+/**
+ * Writes the stations one by one as a JSON array, so the list is never held in memory
+ */
+@Produces(MediaType.APPLICATION_JSON)
+public class StationsJsonWriter implements MessageBodyWriter<Stream<Station>> {
+
+    private final ObjectWriter objectWriter;
+
+    public StationsJsonWriter(final ObjectMapper objectMapper) {
+        this.objectWriter = objectMapper.writerFor(Station.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    private void stationToJson(final JsonGenerator generator, final Station station) {
+        try {
+            objectWriter.writeValue(generator, station);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                               final MediaType mediaType) {
+        return Stream.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(final Stream<Station> t, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
+                        final OutputStream entityStream) throws IOException, WebApplicationException {
+        try (t; JsonGenerator generator = objectWriter.getFactory().createGenerator(entityStream)) {
+            generator.writeStartArray();
+            t.forEach(station -> stationToJson(generator, station));
+            generator.writeEndArray();
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public long getSize(final Stream<Station> t, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType) {
+        return -1;
+    }
+
+}
@@ -8,22 +8,29 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.util.stream.Stream;
 
 @Produces(StationsTxtWriter.TEXT_PLAIN)
-public class StationsTxtWriter implements MessageBodyWriter<List<Station>> {
+public class StationsTxtWriter implements MessageBodyWriter<Stream<Station>> {
 
     public static final String TEXT_PLAIN = "text/plain";
 
-    private static void stationToTxt(final PrintWriter pw, final Station station) {
-        pw.println(String.format("%s\t%s\t%s\t%s\t%s\t10,10\t0,-10", station.getCoordinates().getLat(),
-                station.getCoordinates().getLon(), station.getTitle(), station.getTitle(),
-                station.hasPhoto() ? "gruenpunkt.png" : "rotpunkt.png"));
+    private static final byte[] HEADER = Utf8Writer.ascii("lat\tlon\ttitle\tdescription\ticon\ticonSize\ticonOffset\n");
+
+    private static final byte[] WITH_PHOTO = Utf8Writer.ascii("\tgruenpunkt.png\t10,10\t0,-10\n");
+
+    private static final byte[] WITHOUT_PHOTO = Utf8Writer.ascii("\trotpunkt.png\t10,10\t0,-10\n");
+
+    private static void stationToTxt(final Utf8Writer writer, final Station station) {
+        final String title = String.valueOf(station.getTitle());
+        writer.writeCoordinate(station.getCoordinates().getLat()).write('\t')
+                .writeCoordinate(station.getCoordinates().getLon()).write('\t')
+                .write(title).write('\t')
+                .write(title)
+                .write(station.hasPhoto() ? WITH_PHOTO : WITHOUT_PHOTO);
     }
 
     @Override
@@ -33,19 +40,23 @@ public class StationsTxtWriter implements MessageBodyWriter<List<Station>> {
     }
 
     @Override
-    public long getSize(final List<Station> t, final Class<?> type, final Type genericType,
+    public long getSize(final Stream<Station> t, final Class<?> type, final Type genericType,
                         final Annotation[] annotations, final MediaType mediaType) {
         return -1;
     }
 
     @Override
-    public void writeTo(final List<Station> t, final Class<?> type, final Type genericType,
+    public void writeTo(final Stream<Station> t, final Class<?> type, final Type genericType,
                         final Annotation[] annotations, final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
                         final OutputStream entityStream) throws WebApplicationException {
-        final PrintWriter pw = new PrintWriter(new OutputStreamWriter(entityStream, StandardCharsets.UTF_8));
-        pw.println("lat	lon	title	description	icon	iconSize	iconOffset");
-        t.forEach(station -> stationToTxt(pw, station));
-        pw.flush();
+        try (t) {
+            final Utf8Writer writer = new Utf8Writer(entityStream);
+            writer.write(HEADER);
+            t.forEach(station -> stationToTxt(writer, station));
+            writer.flush();
+        } catch (final UncheckedIOException e) {
+            throw new WebApplicationException(e.getCause());
+        }
     }
 
 }
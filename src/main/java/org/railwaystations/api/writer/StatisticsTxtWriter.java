@@ -0,0 +1,48 @@
+package org.railwaystations.api.writer;
+
+import org.railwaystations.api.model.Statistic;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the statistics of all countries as one tab separated row per country
+ */
+@Produces(StatisticTxtWriter.TEXT_PLAIN)
+public class StatisticsTxtWriter implements MessageBodyWriter<Statistic[]> {
+
+    @Override
+    public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations,
+                               final MediaType mediaType) {
+        return true;
+    }
+
+    @Override
+    public long getSize(final Statistic[] statistics, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(final Statistic[] t, final Class<?> type, final Type genericType,
+                        final Annotation[] annotations, final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders,
+                        final OutputStream entityStream) throws WebApplicationException {
+        final PrintWriter pw = new PrintWriter(new OutputStreamWriter(entityStream, StandardCharsets.UTF_8));
+        pw.println("countryCode\ttotal\twithPhoto\twithoutPhoto\tphotographers");
+        for (final Statistic statistic : t) {
+            pw.println(String.format("%s\t%s\t%s\t%s\t%s", statistic.getCountryCode(), statistic.getTotal(),
+                    statistic.getWithPhoto(), statistic.getWithoutPhoto(), statistic.getPhotographers()));
+        }
+        pw.flush();
+    }
+
+}
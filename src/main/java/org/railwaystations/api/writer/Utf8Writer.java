@@ -0,0 +1,200 @@
+package org.railwaystations.api.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer of UTF-8 text to an output stream, encoding strings and numbers directly into its byte buffer
+ * without intermediate strings. Not thread safe, used for one response.
+ */
+final class Utf8Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int COORDINATE_DIGITS = 7;
+    private static final long COORDINATE_SCALE = 10_000_000L;
+
+    private static final byte[] AMP = ascii("&amp;");
+    private static final byte[] LT = ascii("&lt;");
+    private static final byte[] GT = ascii("&gt;");
+    private static final byte[] QUOT = ascii("&quot;");
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    Utf8Writer(final OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Constant ASCII text, encoded once by the caller
+     */
+    static byte[] ascii(final String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    Utf8Writer write(final byte[] bytes) {
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                writeThrough(bytes);
+                return this;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+        return this;
+    }
+
+    /**
+     * Writes an ASCII character
+     */
+    Utf8Writer write(final char c) {
+        ensure(1);
+        buffer[position++] = (byte) c;
+        return this;
+    }
+
+    Utf8Writer write(final String text) {
+        return write(text, false);
+    }
+
+    /**
+     * Writes the text with the XML special characters replaced by entities, valid in element content and in attributes
+     */
+    Utf8Writer writeXml(final String text) {
+        return write(text, true);
+    }
+
+    private Utf8Writer write(final String text, final boolean xml) {
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                if (xml && (c == '&' || c == '<' || c == '>' || c == '"')) {
+                    writeEntity(c);
+                } else {
+                    ensure(1);
+                    buffer[position++] = (byte) c;
+                }
+            } else if (c < 0x800) {
+                ensure(2);
+                buffer[position++] = (byte) (0xc0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                ensure(4);
+                buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                write('?');
+            } else {
+                ensure(3);
+                buffer[position++] = (byte) (0xe0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[position++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return this;
+    }
+
+    private void writeEntity(final char c) {
+        switch (c) {
+            case '&':
+                write(AMP);
+                break;
+            case '<':
+                write(LT);
+                break;
+            case '>':
+                write(GT);
+                break;
+            default:
+                write(QUOT);
+        }
+    }
+
+    /**
+     * Writes the coordinate rounded to 7 decimals (about 1 cm), without trailing zeros but with at least one decimal
+     */
+    Utf8Writer writeCoordinate(final double degrees) {
+        if (!Double.isFinite(degrees)) {
+            return write(Double.toString(degrees));
+        }
+        long scaled = Math.round(degrees * COORDINATE_SCALE);
+        if (scaled < 0) {
+            write('-');
+            scaled = -scaled;
+        }
+        writeDigits(scaled / COORDINATE_SCALE, 1);
+        write('.');
+        long fraction = scaled % COORDINATE_SCALE;
+        int digits = COORDINATE_DIGITS;
+        if (fraction == 0) {
+            return write('0');
+        }
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        writeDigits(fraction, digits);
+        return this;
+    }
+
+    /**
+     * Writes the non negative number, padded with leading zeros to at least minDigits
+     */
+    private void writeDigits(final long number, final int minDigits) {
+        int digits = 1;
+        for (long rest = number / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        ensure(digits);
+        long rest = number;
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+        position += digits;
+    }
+
+    void flush() {
+        flushBuffer();
+        try {
+            out.flush();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ensure(final int bytes) {
+        if (position + bytes > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() {
+        if (position > 0) {
+            writeThrough(buffer, position);
+            position = 0;
+        }
+    }
+
+    private void writeThrough(final byte[] bytes) {
+        writeThrough(bytes, bytes.length);
+    }
+
+    private void writeThrough(final byte[] bytes, final int length) {
+        try {
+            out.write(bytes, 0, length);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.railwaystations.api;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.db.InboxDao;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.InboxEntry;
+import org.railwaystations.api.model.Station;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PendingInboxIndexTest {
+
+    private static final Station.Key KEY = new Station.Key("de", "4711");
+
+    @Test
+    public void countForStationExcludesOwnEntry() {
+        final InboxDao inboxDao = mock(InboxDao.class);
+        when(inboxDao.findPendingInboxIndexEntries()).thenReturn(List.of(createEntry(1, KEY, null), createEntry(2, KEY, null),
+                createEntry(3, new Station.Key("ch", "4711"), null)));
+        final PendingInboxIndex index = new PendingInboxIndex(inboxDao);
+
+        assertThat(index.countPendingInboxEntries(), is(3));
+        assertThat(index.countPendingInboxEntriesForStation(null, KEY), is(2));
+        assertThat(index.countPendingInboxEntriesForStation(1, KEY), is(1));
+        assertThat(index.countPendingInboxEntriesForStation(3, KEY), is(2));
+        assertThat(index.countPendingInboxEntriesForStation(null, new Station.Key("de", "0815")), is(0));
+    }
+
+    @Test
+    public void insertDoneAndReject() {
+        final InboxDao inboxDao = mock(InboxDao.class);
+        when(inboxDao.insert(any())).thenReturn(7, 8);
+        final PendingInboxIndex index = new PendingInboxIndex(inboxDao);
+        final Coordinates coordinates = new Coordinates(50.0, 9.0);
+
+        assertThat(index.insert(new InboxEntry("de", "4711", null, null, 1, "jpg", null, null, null)), is(7));
+        assertThat(index.insert(new InboxEntry("de", null, "Missing", coordinates, 1, "jpg", null, null, null)), is(8));
+        assertThat(index.countPendingInboxEntriesForStation(null, KEY), is(1));
+        assertThat(index.countPendingInboxEntriesForNearbyCoordinates(null, coordinates), is(1));
+        assertThat(index.countPendingInboxEntriesForNearbyCoordinates(8, coordinates), is(0));
+
+        index.done(7);
+        index.reject(8, "duplicate");
+
+        verify(inboxDao).done(7);
+        verify(inboxDao).reject(8, "duplicate");
+        assertThat(index.countPendingInboxEntries(), is(0));
+        assertThat(index.countPendingInboxEntriesForStation(null, KEY), is(0));
+        assertThat(index.countPendingInboxEntriesForNearbyCoordinates(null, coordinates), is(0));
+    }
+
+    @Test
+    public void reloadPicksUpEntriesOfOtherInstances() {
+        final InboxDao inboxDao = mock(InboxDao.class);
+        final Coordinates coordinates = new Coordinates(50.0, 9.0);
+        when(inboxDao.findPendingInboxIndexEntries()).thenReturn(List.of(createEntry(1, KEY, null)),
+                List.of(createEntry(2, null, coordinates)));
+        final PendingInboxIndex index = new PendingInboxIndex(inboxDao);
+
+        index.reload();
+
+        assertThat(index.countPendingInboxEntries(), is(1));
+        assertThat(index.countPendingInboxEntriesForStation(null, KEY), is(0));
+        assertThat(index.countPendingInboxEntriesForNearbyCoordinates(null, coordinates), is(1));
+    }
+
+    @Test
+    public void reloadKeepsChangesDuringRead() {
+        final InboxDao inboxDao = mock(InboxDao.class);
+        final Station.Key other = new Station.Key("ch", "8503000");
+        final AtomicReference<PendingInboxIndex> index = new AtomicReference<>();
+        when(inboxDao.insert(any())).thenReturn(9);
+        when(inboxDao.findPendingInboxIndexEntries()).thenReturn(List.of(createEntry(1, KEY, null))).thenAnswer(invocation -> {
+            // read before the insert and the completion commit, applied to the index before the swap
+            final List<InboxEntry> stale = List.of(createEntry(1, KEY, null));
+            index.get().insert(new InboxEntry("ch", "8503000", null, null, 1, "jpg", null, null, null));
+            index.get().done(1);
+            return stale;
+        });
+        index.set(new PendingInboxIndex(inboxDao));
+
+        index.get().reload();
+
+        assertThat(index.get().countPendingInboxEntries(), is(1));
+        assertThat(index.get().countPendingInboxEntriesForStation(null, KEY), is(0));
+        assertThat(index.get().countPendingInboxEntriesForStation(null, other), is(1));
+    }
+
+    @Test
+    public void nearbyMatchesDistanceOfAllEntries() {
+        final Random random = new Random(42);
+        final List<InboxEntry> entries = new ArrayList<>();
+        for (int id = 1; id <= 2000; id++) {
+            entries.add(createEntry(id, null, randomCoordinates(random)));
+        }
+        final InboxDao inboxDao = mock(InboxDao.class);
+        when(inboxDao.findPendingInboxIndexEntries()).thenReturn(entries);
+        final PendingInboxIndex index = new PendingInboxIndex(inboxDao);
+
+        for (int i = 0; i < 500; i++) {
+            final Coordinates coordinates = randomCoordinates(random);
+            final long expected = entries.stream().filter(entry -> distance(entry.getCoordinates(), coordinates) < 0.5).count();
+            assertThat(index.countPendingInboxEntriesForNearbyCoordinates(null, coordinates), is((int) expected));
+        }
+    }
+
+    /**
+     * Dense around a cell corner, so the neighbour cells matter
+     */
+    private static Coordinates randomCoordinates(final Random random) {
+        return new Coordinates(50.0 + (random.nextDouble() - 0.5) * 0.04, 9.0 + (random.nextDouble() - 0.5) * 0.04);
+    }
+
+    private static double distance(final Coordinates a, final Coordinates b) {
+        return Math.sqrt(Math.pow(71.5 * (a.getLon() - b.getLon()), 2) + Math.pow(111.3 * (a.getLat() - b.getLat()), 2));
+    }
+
+    private static InboxEntry createEntry(final int id, final Station.Key key, final Coordinates coordinates) {
+        return new InboxEntry(id, key != null ? key.getCountry() : null, key != null ? key.getId() : null, null,
+                coordinates, 0, null, null, null, null, null, null, false, null, false, false, null, null, null, false);
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.railwaystations.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PersistentTreeMapTest {
+
+    @Test
+    public void changesKeepPreviousVersions() {
+        final PersistentTreeMap<String, Integer> empty = PersistentTreeMap.empty();
+        final PersistentTreeMap<String, Integer> one = empty.put("a", 1);
+        final PersistentTreeMap<String, Integer> two = one.put("b", 2);
+        final PersistentTreeMap<String, Integer> replaced = two.put("a", 3);
+        final PersistentTreeMap<String, Integer> removed = replaced.remove("b");
+
+        assertThat(empty.isEmpty(), is(true));
+        assertThat(one.get("a"), is(1));
+        assertThat(one.get("b"), nullValue());
+        assertThat(two.size(), is(2));
+        assertThat(replaced.get("a"), is(3));
+        assertThat(replaced.size(), is(2));
+        assertThat(two.get("a"), is(1));
+        assertThat(removed.size(), is(1));
+        assertThat(replaced.get("b"), is(2));
+    }
+
+    @Test
+    public void unchangedValueKeepsMap() {
+        final PersistentTreeMap<String, Integer> map = PersistentTreeMap.<String, Integer>empty().put("a", 1);
+
+        assertThat(map.remove("b"), sameInstance(map));
+        assertThat(map.compute("a", (key, value) -> value), sameInstance(map));
+        assertThat(map.compute("b", (key, value) -> null), sameInstance(map));
+        assertThat(map.compute("a", (key, value) -> null).isEmpty(), is(true));
+        assertThat(map.compute("a", (key, value) -> value + 1).get("a"), is(2));
+    }
+
+    @Test
+    public void matchesTreeMap() {
+        final Random random = new Random(42);
+        final TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+        final List<TreeMap<Integer, Integer>> expectedVersions = new ArrayList<>();
+        final List<PersistentTreeMap<Integer, Integer>> versions = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            final Integer key = random.nextInt(1000);
+            if (random.nextBoolean()) {
+                expected.put(key, i);
+                map = map.put(key, i);
+            } else {
+                expected.remove(key);
+                map = map.remove(key);
+            }
+            if (i % 1000 == 0) {
+                expectedVersions.add(new TreeMap<>(expected));
+                versions.add(map);
+            }
+        }
+        expectedVersions.add(expected);
+        versions.add(map);
+        expectedVersions.add(expected);
+        versions.add(PersistentTreeMap.of(expected));
+
+        for (int i = 0; i < versions.size(); i++) {
+            assertSameEntries(versions.get(i), expectedVersions.get(i));
+        }
+    }
+
+    private static void assertSameEntries(final PersistentTreeMap<Integer, Integer> map, final TreeMap<Integer, Integer> expected) {
+        assertThat(map.size(), is(expected.size()));
+        assertThat(entries(map.iterator()), is(new ArrayList<>(expected.entrySet())));
+        for (int key = -1; key <= 1000; key += 7) {
+            assertThat(map.get(key), is(expected.get(key)));
+            assertThat(entries(map.iterator(key)), is(new ArrayList<>(expected.tailMap(key, true).entrySet())));
+        }
+    }
+
+    private static List<Map.Entry<Integer, Integer>> entries(final Iterator<Map.Entry<Integer, Integer>> iterator) {
+        final List<Map.Entry<Integer, Integer>> entries = new ArrayList<>();
+        iterator.forEachRemaining(entries::add);
+        return entries;
+    }
+
+}
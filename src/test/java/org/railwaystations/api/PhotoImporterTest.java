@@ -66,9 +66,10 @@ public class PhotoImporterTest {
         final Station paris = new Station(new Station.Key("fr", "8768600"), "Paris-Gare-de-Lyon", null, null, true);
         when(stationDao.findByKey(paris.getKey().getCountry(), paris.getKey().getId())).thenReturn(Collections.singleton(paris));
 
-        repository = new StationsRepository(countryDao, stationDao);
+        repository = new StationsRepository(countryDao, stationDao, new MockChangeDao(stationDao, photoDao, mock(SequenceDao.class)),
+                mock(SequenceDao.class));
 
-        importer = new PhotoImporter(repository, userDao, photoDao, countryDao, new LoggingMonitor(), uploadDir.toString(), photoDir.toString(), mock(InboxDao.class));
+        importer = new PhotoImporter(repository, userDao, countryDao, new LoggingMonitor(), uploadDir.toString(), photoDir.toString(), new PendingInboxIndex(mock(InboxDao.class)));
     }
 
     private File createFile(final String countryCode, final String photographer, final String stationId) throws IOException {
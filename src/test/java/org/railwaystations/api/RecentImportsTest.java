@@ -0,0 +1,87 @@
+package org.railwaystations.api;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Photo;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.User;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class RecentImportsTest {
+
+    private static final Station.Key A = new Station.Key("de", "1");
+    private static final Station.Key B = new Station.Key("de", "2");
+    private static final Station.Key C = new Station.Key("de", "3");
+    private static final Station.Key D = new Station.Key("de", "4");
+
+    @Test
+    public void newestFirstAndOncePerStation() {
+        final RecentImports recentImports = new RecentImports(10);
+        recentImports.add(A, 100);
+        recentImports.add(B, 300);
+        recentImports.add(C, 200);
+        recentImports.add(A, 400);
+
+        assertThat(recentImports.find(0, Long.MAX_VALUE, null, 10), is(List.of(A, B, C)));
+        assertThat(recentImports.find(250, Long.MAX_VALUE, null, 10), is(List.of(A, B)));
+
+        recentImports.remove(B);
+        assertThat(recentImports.find(0, Long.MAX_VALUE, null, 10), is(List.of(A, C)));
+    }
+
+    @Test
+    public void pagesBeforeCursorWithEqualTimestamps() {
+        final RecentImports recentImports = new RecentImports(10);
+        recentImports.add(A, 100);
+        recentImports.add(B, 100);
+        recentImports.add(C, 100);
+        recentImports.add(D, 200);
+
+        assertThat(recentImports.find(0, Long.MAX_VALUE, null, 2), is(List.of(D, C)));
+        assertThat(recentImports.find(0, 100, C, 2), is(List.of(B, A)));
+        assertThat(recentImports.find(0, 100, A, 2), is(List.of()));
+    }
+
+    @Test
+    public void olderThanEvictedGoesToDatabase() {
+        final RecentImports recentImports = new RecentImports(2);
+        recentImports.add(A, 100);
+        recentImports.add(B, 200);
+        recentImports.add(C, 300);
+
+        assertThat(recentImports.find(150, Long.MAX_VALUE, null, 10), is(List.of(C, B)));
+        assertThat(recentImports.find(50, Long.MAX_VALUE, null, 2), is(List.of(C, B)));
+        assertThat(recentImports.find(50, Long.MAX_VALUE, null, 10), nullValue());
+    }
+
+    @Test
+    public void olderThanBufferDoesNotEvict() {
+        final RecentImports recentImports = new RecentImports(2);
+        recentImports.add(B, 200);
+        recentImports.add(C, 300);
+        recentImports.add(A, 100);
+
+        assertThat(recentImports.find(100, Long.MAX_VALUE, null, 10), is(List.of(C, B)));
+        assertThat(recentImports.find(50, Long.MAX_VALUE, null, 10), nullValue());
+    }
+
+    @Test
+    public void seededIncompleteCoversAfterOldest() {
+        final RecentImports recentImports = RecentImports.of(2, List.of(createStation(B, 200), createStation(A, 100)), false);
+
+        assertThat(recentImports.find(100, Long.MAX_VALUE, null, 10), is(List.of(B)));
+        assertThat(recentImports.find(99, Long.MAX_VALUE, null, 10), nullValue());
+        assertThat(RecentImports.of(2, List.of(createStation(A, 100)), true).find(0, Long.MAX_VALUE, null, 10), is(List.of(A)));
+    }
+
+    private static Station createStation(final Station.Key key, final long createdAt) {
+        final User photographer = new User("Jim Knopf", null, "CC0", 1, null, true, false, null, null, false, null, false);
+        return new Station(key, "Station", new Coordinates(50.0, 9.0), new Photo(key, "/" + key.getId() + ".jpg", photographer, createdAt, "CC0"), true);
+    }
+
+}
@@ -1,7 +1,9 @@
 package org.railwaystations.api;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.dropwizard.setup.Environment;
 import io.dropwizard.testing.ConfigOverride;
@@ -9,12 +11,18 @@ import io.dropwizard.testing.ResourceHelpers;
 import io.dropwizard.testing.junit5.DropwizardAppExtension;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
 import org.apache.commons.io.IOUtils;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.railwaystations.api.db.ChangeDao;
 import org.railwaystations.api.mail.MockMailer;
 import org.railwaystations.api.model.Station;
+import org.railwaystations.api.writer.CompressionInterceptor;
+import org.railwaystations.api.writer.StationsBinaryDecoder;
+import org.railwaystations.api.writer.StationsBinaryWriter;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -25,6 +33,7 @@ import javax.imageio.ImageIO;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Response;
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.parsers.DocumentBuilder;
@@ -35,13 +44,22 @@ import java.io.*;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SuppressFBWarnings("BC_UNCONFIRMED_CAST_OF_RETURN_VALUE")
 @SuppressWarnings({"PMD.TooManyStaticImports", "PMD.UnnecessaryModifier"})
@@ -138,6 +156,13 @@ public class RsApiAppTest {
         assertThat(stations.length, is(2));
     }
 
+    @Test
+    public void stationsDeWithinBoundingBox() {
+        final Station[] stations = assertLoadStations("/de/stations?minLat=50.0&maxLat=50.5&minLon=9.5&maxLon=10.0", 200);
+        assertThat(stations.length, is(3));
+        assertThat(findByKey(stations, new Station.Key("de", "6721")), notNullValue());
+    }
+
     @Test
     public void stationsJson() throws IOException {
         final Response response = loadRaw("/de/stations.json", 200);
@@ -147,6 +172,41 @@ public class RsApiAppTest {
         assertThat(jsonNode.size(), is(729));
     }
 
+    @Test
+    public void stationsJsonDeflated() throws IOException {
+        final byte[] plain = ((InputStream) loadRaw("/de/stations.json", 200).getEntity()).readAllBytes();
+        final long compressed = RULE.getEnvironment().metrics()
+                .histogram(MetricRegistry.name(CompressionInterceptor.class, "ratio")).getCount();
+
+        final Response response = loadEncoded("/de/stations.json", "gzip;q=0.5, deflate");
+        assertThat(response.getHeaderString("Content-Encoding"), is("deflate"));
+        assertThat(response.getHeaderString("Vary"), is("Accept-Encoding"));
+        try (final InputStream in = new InflaterInputStream((InputStream) response.getEntity())) {
+            assertThat(in.readAllBytes(), is(plain));
+        }
+        assertThat(RULE.getEnvironment().metrics()
+                .histogram(MetricRegistry.name(CompressionInterceptor.class, "ratio")).getCount(), is(compressed + 1));
+    }
+
+    @Test
+    public void stationsWithinBoundingBoxGzipped() throws IOException {
+        final String path = "/de/stations.gpx?minLat=47.0&maxLat=55.0&minLon=5.0&maxLon=15.0";
+        final byte[] plain = ((InputStream) loadRaw(path, 200).getEntity()).readAllBytes();
+
+        final Response response = loadEncoded(path, "deflate;q=0.5, gzip");
+        assertThat(response.getHeaderString("Content-Encoding"), is("gzip"));
+        try (final InputStream in = new GZIPInputStream((InputStream) response.getEntity())) {
+            assertThat(in.readAllBytes(), is(plain));
+        }
+    }
+
+    @Test
+    public void stationByIdBelowCompressionThreshold() {
+        final Response response = loadEncoded("/de/stations/6932", "gzip");
+        assertThat(response.getHeaderString("Content-Encoding"), nullValue());
+        assertThat(response.getHeaderString("Vary"), is("Accept-Encoding"));
+    }
+
     @Test
     public void stationsTxt() throws IOException {
         final Response response = loadRaw(String.format("/de/%s.txt", "stations"), 200);
@@ -196,6 +256,158 @@ public class RsApiAppTest {
         return response.readEntity(Station[].class);
     }
 
+    @Test
+    public void stationsDePaged() {
+        final int total = assertLoadStations("/de/stations", 200).length;
+        final Set<Station.Key> keys = new HashSet<>();
+        String next = String.format("http://localhost:%d/de/stations?limit=100", RULE.getLocalPort());
+        while (next != null) {
+            final Response response = client.target(next).request().get();
+            assertThat(response.getStatus(), is(200));
+            final Station[] page = response.readEntity(Station[].class);
+            assertThat(page.length <= 100, is(true));
+            Arrays.stream(page).forEach(station -> assertThat(keys.add(station.getKey()), is(true)));
+            next = response.getLink("next") != null ? response.getLink("next").getUri().toString() : null;
+        }
+        assertThat(keys.size(), is(total));
+    }
+
+    @Test
+    public void recentPhotoImportsPaged() {
+        final Station[] all = assertLoadStations("/recentPhotoImports?sinceHours=1000000", 200);
+        final List<Station.Key> keys = new ArrayList<>();
+        String next = String.format("http://localhost:%d/recentPhotoImports?sinceHours=1000000&limit=7", RULE.getLocalPort());
+        while (next != null) {
+            final Response response = client.target(next).request().get();
+            assertThat(response.getStatus(), is(200));
+            final Station[] page = response.readEntity(Station[].class);
+            assertThat(page.length <= 7, is(true));
+            Arrays.stream(page).forEach(station -> keys.add(station.getKey()));
+            next = response.getLink("next") != null ? response.getLink("next").getUri().toString() : null;
+        }
+        assertThat(all.length > 7, is(true));
+        assertThat(keys, is(Arrays.stream(all).map(Station::getKey).collect(Collectors.toList())));
+        assertThat(all[0].getCreatedAt() >= all[all.length - 1].getCreatedAt(), is(true));
+        loadRaw("/recentPhotoImports?limit=0", 400);
+    }
+
+    @Test
+    public void stationChanges() throws IOException {
+        final Response response = loadRaw("/stations/changes?since=0&country=de", 200);
+        final JsonNode jsonNode = MAPPER.readTree((InputStream) response.getEntity());
+        assertThat(jsonNode.get("version").isNumber(), is(true));
+        assertThat(jsonNode.get("full").asBoolean(), is(true));
+        assertThat(jsonNode.get("upserts").size() > 0, is(true));
+        assertThat(jsonNode.get("deletions").isArray(), is(true));
+    }
+
+    @Test
+    public void stationChangesLoggedInTransactionOfWrite() {
+        final Jdbi jdbi = Jdbi.create(RULE.getConfiguration().getDataSourceFactory().getUrl(), "sa", "sa")
+                .installPlugin(new SqlObjectPlugin());
+        final ChangeDao changeDao = jdbi.onDemand(ChangeDao.class);
+        final Station.Key key = new Station.Key("de", "6932");
+        final long before = changeDao.getVersion();
+
+        final long version = changeDao.write(List.of(key), dao -> dao.sequenceDao().advance("Z", 1));
+
+        assertThat(version, is(before + 1));
+        assertThat(changeDao.getVersion(), is(version));
+        assertThat(changeDao.findChangedKeys(before, version, true, Set.of()), is(List.of(key)));
+
+        final long nextZ = changeDao.sequenceDao().getNextValue("Z");
+        assertThrows(IllegalStateException.class, () -> changeDao.write(List.of(key), dao -> {
+            dao.sequenceDao().advance("Z", nextZ + 100);
+            throw new IllegalStateException("write failed");
+        }));
+        assertThat(changeDao.sequenceDao().getNextValue("Z"), is(nextZ));
+        assertThat(changeDao.getVersion(), is(version));
+    }
+
+    @Test
+    public void tileClusters() throws IOException {
+        final Station[] stations = assertLoadStations("/de/stations", 200);
+        final Response response = loadRaw("/de/tiles/0/0/0", 200);
+        final JsonNode clusters = MAPPER.readTree((InputStream) response.getEntity()).get("clusters");
+        int count = 0;
+        for (final JsonNode cluster : clusters) {
+            count += cluster.get("count").asInt();
+        }
+        assertThat(count, is(stations.length));
+    }
+
+    @Test
+    public void tileStations() throws IOException {
+        final Response response = loadRaw("/de/tiles/16/34275/21879", 200);
+        final JsonNode tile = MAPPER.readTree((InputStream) response.getEntity());
+        assertThat(tile.get("clusters"), nullValue());
+        assertThat(tile.get("stations").isArray(), is(true));
+    }
+
+    @Test
+    public void tileInvalid() {
+        loadRaw("/de/tiles/2/4/0", 400);
+    }
+
+    @Test
+    public void searchStations() throws IOException {
+        final Response response = loadRaw("/stations/search?q=wuppertal%20ronsd&limit=5", 200);
+        final JsonNode stations = MAPPER.readTree((InputStream) response.getEntity());
+        assertThat(stations.size(), is(1));
+        assertThat(stations.get(0).get("title").asText(), is("Wuppertal-Ronsdorf"));
+    }
+
+    @Test
+    public void searchStationsWithoutQuery() {
+        loadRaw("/stations/search?q=%20", 400);
+    }
+
+    @Test
+    public void nextZ() throws IOException {
+        final String first = MAPPER.readTree((InputStream) loadRaw("/nextZ", 200).getEntity()).get("nextZ").asText();
+        final String second = MAPPER.readTree((InputStream) loadRaw("/nextZ", 200).getEntity()).get("nextZ").asText();
+
+        assertThat(first.matches("Z\\d+"), is(true));
+        assertThat(second, is("Z" + (Integer.parseInt(first.substring(1)) + 1)));
+    }
+
+    @Test
+    public void stationByIdNotModified() {
+        final Response response = loadRaw("/de/stations/6932", 200);
+        final EntityTag etag = response.getEntityTag();
+        assertThat(etag, notNullValue());
+
+        final Response notModified = client.target(
+                String.format("http://localhost:%d%s", RULE.getLocalPort(), "/de/stations/6932"))
+                .request()
+                .header("If-None-Match", etag.toString())
+                .get();
+        assertThat(notModified.getStatus(), is(304));
+    }
+
+    @Test
+    public void stationsDeBinary() throws IOException {
+        final Station[] stations = assertLoadStations("/de/stations", 200);
+        final Response response = loadRaw("/de/stations.bin", 200);
+        assertThat(response.getMediaType().toString(), is(StationsBinaryWriter.BINARY_MIME_TYPE));
+        final byte[] bytes = ((InputStream) response.getEntity()).readAllBytes();
+        assertThat(new StationsBinaryDecoder(bytes).decode().size(), is(stations.length));
+    }
+
+    @Test
+    public void stationsNotModified() {
+        final Response response = loadRaw("/de/stations.gpx?hasPhoto=true", 200);
+        final EntityTag etag = response.getEntityTag();
+        assertThat(etag, notNullValue());
+
+        final Response notModified = client.target(
+                String.format("http://localhost:%d%s", RULE.getLocalPort(), "/de/stations.gpx?hasPhoto=true"))
+                .request()
+                .header("If-None-Match", etag.toString())
+                .get();
+        assertThat(notModified.getStatus(), is(304));
+    }
+
     private Response loadRaw(final String path, final int expectedStatus) {
         final Response response = client.target(
                 String.format("http://localhost:%d%s", RULE.getLocalPort(), path))
@@ -206,6 +418,17 @@ public class RsApiAppTest {
         return response;
     }
 
+    private Response loadEncoded(final String path, final String acceptEncoding) {
+        final Response response = client.target(
+                String.format("http://localhost:%d%s", RULE.getLocalPort(), path))
+                .request()
+                .header("Accept-Encoding", acceptEncoding)
+                .get();
+
+        assertThat(response.getStatus(), is(200));
+        return response;
+    }
+
     private Station findByKey(final Station[] stations, final Station.Key key) {
         for (final Station station : stations) {
             if (station.getKey().equals(key)) {
@@ -233,6 +456,20 @@ public class RsApiAppTest {
         assertThat(jsonNode.size(), is(6));
     }
 
+    @Test
+    public void photographersTopN() throws IOException {
+        final JsonNode all = MAPPER.readTree((InputStream) loadRaw("/photographers.json", 200).getEntity());
+        final JsonNode page = MAPPER.readTree((InputStream) loadRaw("/photographers.json?offset=1&limit=2", 200).getEntity());
+
+        final List<String> names = new ArrayList<>();
+        all.fieldNames().forEachRemaining(names::add);
+        final List<String> pageNames = new ArrayList<>();
+        page.fieldNames().forEachRemaining(pageNames::add);
+        assertThat(pageNames, is(names.subList(1, 3)));
+        assertThat(all.get(names.get(0)).asLong() >= all.get(names.get(1)).asLong(), is(true));
+        loadRaw("/photographers.json?offset=-1", 400);
+    }
+
     @Test
     public void photographersTxt() throws IOException {
         final Response response = loadRaw("/de/photographers.txt", 200);
@@ -265,6 +502,31 @@ public class RsApiAppTest {
         assertThat(jsonNode.size(), is(4));
     }
 
+    @Test
+    public void statisticAllCountriesJson() throws IOException {
+        final JsonNode all = MAPPER.readTree((InputStream) loadRaw("/stats.json?country=*", 200).getEntity());
+        final JsonNode de = MAPPER.readTree((InputStream) loadRaw("/de/stats.json", 200).getEntity());
+
+        assertThat(all.isArray(), is(true));
+        JsonNode deOfAll = null;
+        for (final JsonNode statistic : all) {
+            if ("de".equals(statistic.get("countryCode").asText())) {
+                deOfAll = statistic;
+            }
+        }
+        assertThat(deOfAll, notNullValue());
+        assertThat(((ObjectNode) deOfAll).without("countryCode"), is(de));
+    }
+
+    @Test
+    public void statisticAllCountriesTxt() throws IOException {
+        final String txt = readSaveStringEntity(loadRaw("/stats.txt?country=*", 200));
+        final String[] lines = txt.split("\n");
+
+        assertThat(lines[0], is("countryCode\ttotal\twithPhoto\twithoutPhoto\tphotographers"));
+        assertThat(Arrays.stream(lines).anyMatch(line -> line.matches("de(\t\\d+){4}")), is(true));
+    }
+
     @Test
     public void statisticTxt() throws IOException {
         final Response response = loadRaw("/de/stats.txt", 200);
@@ -368,7 +630,8 @@ public class RsApiAppTest {
         // download uploaded photo from inbox
         final Response photoResponse = client.target(
                 String.format("http://localhost:%d%s%s", RULE.getLocalPort(), "/inbox/", inboxResponse.get("filename").asText()))
-                .request().get();
+                .request().header("Accept-Encoding", "gzip, deflate").get();
+        assertThat(photoResponse.getHeaderString("Content-Encoding"), nullValue());
         final BufferedImage inputImage = ImageIO.read((InputStream)photoResponse.getEntity());
         assertThat(inputImage, notNullValue());
         // we cannot binary compare the result anymore, the photos are re-encoded
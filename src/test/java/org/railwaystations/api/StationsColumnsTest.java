@@ -0,0 +1,178 @@
+package org.railwaystations.api;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.BoundingBox;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Photo;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationFilter;
+import org.railwaystations.api.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StationsColumnsTest {
+
+    private static final String[] PHOTOGRAPHERS = {"@khgdrn", "@storchp", "Anonym"};
+
+    @Test
+    public void findMatchesFilterOfAllStations() {
+        final Random random = new Random(42);
+        final List<Station> stations = createStations(random, 5000);
+        final StationsColumns columns = new StationsColumns(stations);
+        final List<Station> sorted = stations.stream().sorted((a, b) -> a.getKey().compareTo(b.getKey())).collect(Collectors.toList());
+
+        for (int i = 0; i < 200; i++) {
+            final StationFilter filter = createFilter(random);
+            final List<Station> expected = sorted.stream().filter(filter::appliesTo).collect(Collectors.toList());
+            assertThat(columns.find(filter).collect(Collectors.toList()), is(expected));
+        }
+    }
+
+    @Test
+    public void storesAllProperties() {
+        final List<Station> stations = createStations(new Random(42), 100);
+        final StationsColumns columns = new StationsColumns(stations);
+
+        for (final Station expected : stations) {
+            assertSameProperties(columns.get(expected.getKey()), expected);
+        }
+        assertThat(columns.get(new Station.Key("de", "unknown")), nullValue());
+        assertThat(columns.asMap().size(), is(100));
+        assertThat(columns.asMap().containsKey(stations.get(5).getKey()), is(true));
+    }
+
+    @Test
+    public void pageAfterKey() {
+        final List<Station> stations = createStations(new Random(42), 3000);
+        final StationsColumns columns = new StationsColumns(stations);
+        final StationFilter filter = new StationFilter(true, null, null, null, null, null, null);
+        final List<Station> expected = stations.stream().filter(filter::appliesTo)
+                .sorted((a, b) -> a.getKey().compareTo(b.getKey())).collect(Collectors.toList());
+
+        final List<Station> pages = new ArrayList<>();
+        Station.Key after = null;
+        List<Station> page;
+        do {
+            page = columns.find(filter, after, 700);
+            pages.addAll(page);
+            after = page.isEmpty() ? null : page.get(page.size() - 1).getKey();
+        } while (page.size() == 700);
+
+        assertThat(pages, is(expected));
+        assertThat(columns.find(filter, new Station.Key("de", "zzz"), 10).isEmpty(), is(true));
+    }
+
+    @Test
+    public void unknownPhotographerSelectsNothing() {
+        final StationsColumns columns = new StationsColumns(createStations(new Random(42), 100));
+
+        assertThat(columns.find(new StationFilter(null, "@nobody", null, null, null, null, null)).count(), is(0L));
+    }
+
+    @Test
+    public void findCandidates() {
+        final List<Station> stations = createStations(new Random(42), 100);
+        final StationsColumns columns = new StationsColumns(stations);
+        final StationFilter filter = new StationFilter(null, null, null, null, null, true, null);
+        final List<Station.Key> candidates = List.of(stations.get(3).getKey(), stations.get(7).getKey(), new Station.Key("de", "unknown"));
+
+        assertThat(columns.find(filter, candidates).collect(Collectors.toList()),
+                is(stations.subList(0, 8).stream().filter(station -> candidates.contains(station.getKey()))
+                        .filter(filter::appliesTo).collect(Collectors.toList())));
+    }
+
+    @Test
+    public void incrementalUpdatesMatchRebuild() {
+        final Random random = new Random(42);
+        final List<Station> stations = createStations(random, 5000);
+        final StationsColumns previous = new StationsColumns(stations);
+        final Map<Station.Key, Station> expected = new TreeMap<>();
+        stations.forEach(station -> expected.put(station.getKey(), station));
+
+        StationsColumns columns = previous;
+        for (int i = 0; i < 200; i++) {
+            final List<Station.Key> removed = new ArrayList<>();
+            final List<Station> upserted = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                // new keys grow single blocks until they are split
+                final Station station = createStation(random, random.nextInt(3) == 0 ? 5000 + i * 10 + j : random.nextInt(5000));
+                if (random.nextInt(4) == 0) {
+                    removed.add(station.getKey());
+                    expected.remove(station.getKey());
+                } else {
+                    upserted.add(station);
+                    expected.put(station.getKey(), station);
+                }
+            }
+            columns = columns.with(removed, upserted);
+        }
+
+        assertThat(columns.size(), is(expected.size()));
+        final List<Station> actual = columns.stream().collect(Collectors.toList());
+        assertThat(actual, is(new ArrayList<>(expected.values())));
+        for (int i = 0; i < actual.size(); i++) {
+            assertSameProperties(actual.get(i), expected.get(actual.get(i).getKey()));
+        }
+        assertThat(previous.stream().collect(Collectors.toList()),
+                is(stations.stream().sorted((a, b) -> a.getKey().compareTo(b.getKey())).collect(Collectors.toList())));
+        assertSameProperties(previous.get(stations.get(0).getKey()), stations.get(0));
+    }
+
+    private static void assertSameProperties(final Station actual, final Station expected) {
+        assertThat(actual.getKey(), is(expected.getKey()));
+        assertThat(actual.getTitle(), is(expected.getTitle()));
+        assertThat(actual.getCoordinates().getLat(), is(expected.getCoordinates().getLat()));
+        assertThat(actual.getCoordinates().getLon(), is(expected.getCoordinates().getLon()));
+        assertThat(actual.getDS100(), is(expected.getDS100()));
+        assertThat(actual.isActive(), is(expected.isActive()));
+        assertThat(actual.hasPhoto(), is(expected.hasPhoto()));
+        assertThat(actual.getPhotographerId(), is(expected.getPhotographerId()));
+        assertThat(actual.getPhotographer(), is(expected.getPhotographer()));
+        assertThat(actual.getPhotographerUrl(), is(expected.getPhotographerUrl()));
+        assertThat(actual.getPhotoUrl(), is(expected.getPhotoUrl()));
+        assertThat(actual.getLicense(), is(expected.getLicense()));
+        assertThat(actual.getLicenseUrl(), is(expected.getLicenseUrl()));
+        assertThat(actual.getCreatedAt(), is(expected.getCreatedAt()));
+    }
+
+    private StationFilter createFilter(final Random random) {
+        final Boolean hasPhoto = random.nextInt(3) == 0 ? null : random.nextBoolean();
+        final String photographer = random.nextInt(4) == 0 ? PHOTOGRAPHERS[random.nextInt(PHOTOGRAPHERS.length)] : null;
+        final Boolean active = random.nextInt(3) == 0 ? null : random.nextBoolean();
+        if (random.nextBoolean()) {
+            return new StationFilter(hasPhoto, photographer, 1 + random.nextInt(100),
+                    47 + random.nextDouble() * 8, 6 + random.nextDouble() * 9, active, null);
+        }
+        final double minLat = 47 + random.nextDouble() * 8;
+        final double minLon = 6 + random.nextDouble() * 9;
+        final BoundingBox boundingBox = random.nextBoolean() ? new BoundingBox(minLat, minLat + 1, minLon, minLon + 2) : null;
+        return new StationFilter(hasPhoto, photographer, null, null, null, active, boundingBox);
+    }
+
+    private List<Station> createStations(final Random random, final int count) {
+        final List<Station> stations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            stations.add(createStation(random, i));
+        }
+        return stations;
+    }
+
+    private Station createStation(final Random random, final int id) {
+        final Station.Key key = new Station.Key("de", String.valueOf(id));
+        final Photo photo = random.nextBoolean() ? new Photo(key, "/de/" + id + ".jpg",
+                new User(PHOTOGRAPHERS[random.nextInt(PHOTOGRAPHERS.length)], "photographerUrl", "CC0", random.nextInt(3), null, true, false, null, null, false, null, true),
+                random.nextLong(), "CC0") : null;
+        return new Station(key, "Station " + random.nextInt(1000), new Coordinates(47 + random.nextDouble() * 8, 6 + random.nextDouble() * 9),
+                random.nextInt(3) == 0 ? "DS" + id : null, photo, random.nextInt(10) > 0);
+    }
+
+}
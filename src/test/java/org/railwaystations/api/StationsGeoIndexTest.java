@@ -0,0 +1,109 @@
+package org.railwaystations.api;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.BoundingBox;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationFilter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StationsGeoIndexTest {
+
+    @Test
+    public void findInBoundingBox() {
+        final Station inside = createStation("1", 50.15, 9.95);
+        final Station outside = createStation("2", 50.15, 10.65);
+        final StationsGeoIndex index = new StationsGeoIndex(List.of(inside, outside));
+
+        assertThat(index.find(new BoundingBox(50.12, 50.18, 9.92, 9.98)), is(List.of(inside.getKey())));
+        assertThat(index.find(new BoundingBox(50.0, 50.5, 9.5, 10.0)), nullValue());
+    }
+
+    @Test
+    public void findAroundAcrossDateline() {
+        final Station east = createStation("1", -17.0, 179.95);
+        final Station west = createStation("2", -17.0, -179.95);
+        final List<Station> stations = List.of(east, west);
+
+        assertThat(find(new StationsGeoIndex(stations), new StationsColumns(stations), BoundingBox.around(-17.0, 179.99, 20)),
+                is(Set.of(east, west)));
+    }
+
+    @Test
+    public void findAroundMatchesDistanceCheckOfAllStations() {
+        final Random random = new Random(42);
+        final List<Station> stations = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            stations.add(createStation(String.valueOf(i), 47 + random.nextDouble() * 8, 6 + random.nextDouble() * 9));
+        }
+        final StationsGeoIndex index = new StationsGeoIndex(stations);
+        final StationsColumns columns = new StationsColumns(stations);
+
+        for (int i = 0; i < 100; i++) {
+            final double lat = 47 + random.nextDouble() * 8;
+            final double lon = 6 + random.nextDouble() * 9;
+            final int maxDistance = 1 + random.nextInt(50);
+            final Set<Station> expected = stations.stream()
+                    .filter(station -> station.appliesTo(null, null, maxDistance, lat, lon, null))
+                    .collect(Collectors.toSet());
+            final Set<Station> actual = find(index, columns, BoundingBox.around(lat, lon, maxDistance)).stream()
+                    .filter(station -> station.appliesTo(null, null, maxDistance, lat, lon, null))
+                    .collect(Collectors.toSet());
+            assertThat(actual, is(expected));
+        }
+    }
+
+    @Test
+    public void incrementalUpdatesMatchRebuild() {
+        final Random random = new Random(42);
+        final List<Station> stations = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            stations.add(createStation(String.valueOf(i), 50 + random.nextDouble(), 9 + random.nextDouble()));
+        }
+        final StationsGeoIndex previous = new StationsGeoIndex(stations);
+        final List<Station> moved = new ArrayList<>();
+        for (final Station station : stations.subList(0, 300)) {
+            moved.add(createStation(station.getKey().getId(), 50 + random.nextDouble(), 9 + random.nextDouble()));
+        }
+        final List<Station> added = List.of(createStation("new", 50.5, 9.5));
+
+        final StationsGeoIndex index = previous.with(stations.subList(0, 400), moved).with(List.of(), added);
+        final List<Station> expected = new ArrayList<>(moved);
+        expected.addAll(stations.subList(400, 2000));
+        expected.addAll(added);
+
+        final StationsGeoIndex rebuilt = new StationsGeoIndex(expected);
+        for (int i = 0; i < 100; i++) {
+            final double lat = 50 + random.nextDouble();
+            final double lon = 9 + random.nextDouble();
+            final BoundingBox box = new BoundingBox(lat, lat + 0.2, lon, lon + 0.2);
+            assertThat(new HashSet<>(index.find(box)), is(new HashSet<>(rebuilt.find(box))));
+        }
+        assertThat(index.find(new BoundingBox(50.45, 50.55, 9.45, 9.55)).contains(added.get(0).getKey()), is(true));
+        assertThat(previous.find(new BoundingBox(50.45, 50.55, 9.45, 9.55)).contains(added.get(0).getKey()), is(false));
+    }
+
+    /**
+     * The stations inside the box, from the candidates of the index if it has them
+     */
+    private static Set<Station> find(final StationsGeoIndex index, final StationsColumns columns, final BoundingBox box) {
+        final StationFilter filter = new StationFilter(null, null, null, null, null, null, box);
+        final List<Station.Key> candidates = index.find(box);
+        return (candidates != null ? columns.find(filter, candidates) : columns.find(filter)).collect(Collectors.toSet());
+    }
+
+    private static Station createStation(final String id, final double lat, final double lon) {
+        return new Station(new Station.Key("de", id), "Station " + id, new Coordinates(lat, lon), null, true);
+    }
+
+}
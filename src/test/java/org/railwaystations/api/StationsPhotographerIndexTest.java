@@ -0,0 +1,55 @@
+package org.railwaystations.api;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Photo;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.User;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StationsPhotographerIndexTest {
+
+    private static final User KHGDRN = createUser("@khgdrn", 1);
+    private static final User STORCHP = createUser("@storchp", 2);
+
+    @Test
+    public void keysByNameAndId() {
+        final Station first = createStation("de", "2", KHGDRN);
+        final Station second = createStation("ch", "1", KHGDRN);
+        final StationsPhotographerIndex index = StationsPhotographerIndex.of(List.of(first, second,
+                createStation("de", "3", STORCHP), createStation("de", "4", null)));
+
+        assertThat(List.copyOf(index.getKeys("@khgdrn")), is(List.of(second.getKey(), first.getKey())));
+        assertThat(index.getKeys(2), is(Set.of(new Station.Key("de", "3"))));
+        assertThat(index.getKeys("nobody").isEmpty(), is(true));
+    }
+
+    @Test
+    public void withKeepsPreviousVersion() {
+        final Station station = createStation("de", "1", KHGDRN);
+        final StationsPhotographerIndex index = StationsPhotographerIndex.of(List.of(station, createStation("de", "2", STORCHP)));
+
+        final StationsPhotographerIndex changed = index.with(List.of(station), List.of(createStation("de", "1", STORCHP)));
+
+        assertThat(changed.getKeys("@khgdrn").isEmpty(), is(true));
+        assertThat(changed.getKeys(2).size(), is(2));
+        assertThat(index.getKeys("@khgdrn"), is(Set.of(station.getKey())));
+        assertThat(index.getKeys(2).size(), is(1));
+    }
+
+    private static User createUser(final String name, final int id) {
+        return new User(name, "photographerUrl", "CC0", id, null, true, false, null, null, false, null, true);
+    }
+
+    private static Station createStation(final String country, final String id, final User photographer) {
+        final Station.Key key = new Station.Key(country, id);
+        final Photo photo = photographer != null ? new Photo(key, "/" + country + "/" + id + ".jpg", photographer, 0L, "CC0") : null;
+        return new Station(key, "Station " + id, new Coordinates(50.0, 9.0), photo, true);
+    }
+
+}
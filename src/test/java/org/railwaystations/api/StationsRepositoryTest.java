@@ -0,0 +1,436 @@
+package org.railwaystations.api;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.railwaystations.api.db.CountryDao;
+import org.railwaystations.api.db.MockChangeDao;
+import org.railwaystations.api.db.PhotoDao;
+import org.railwaystations.api.db.SequenceDao;
+import org.railwaystations.api.db.StationDao;
+import org.railwaystations.api.model.BoundingBox;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Country;
+import org.railwaystations.api.model.Photo;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationChanges;
+import org.railwaystations.api.model.StationFilter;
+import org.railwaystations.api.model.StatisticCount;
+import org.railwaystations.api.model.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressFBWarnings("UWF_FIELD_NOT_INITIALIZED_IN_CONSTRUCTOR")
+public class StationsRepositoryTest {
+
+    private static final Station.Key KEY_DE = new Station.Key("de", "1");
+    private static final Station.Key KEY_CH = new Station.Key("ch", "2");
+
+    private StationDao stationDao;
+    private PhotoDao photoDao;
+    private MockChangeDao changeDao;
+    private SequenceDao sequenceDao;
+    private StationsRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        final CountryDao countryDao = mock(CountryDao.class);
+        when(countryDao.list(true)).thenReturn(Set.of(new Country("de"), new Country("ch")));
+
+        stationDao = mock(StationDao.class);
+        photoDao = mock(PhotoDao.class);
+        when(stationDao.all()).thenReturn(Set.of(createStation(KEY_DE, "Lummerland", null), createStation(KEY_CH, "Nimmerland", null)));
+
+        sequenceDao = mock(SequenceDao.class);
+        changeDao = new MockChangeDao(stationDao, photoDao, sequenceDao);
+        repository = new StationsRepository(countryDao, stationDao, changeDao, sequenceDao);
+    }
+
+    @Test
+    public void getStationsByCountryFromSnapshot() {
+        assertThat(repository.getStationsByCountry(Collections.singleton("de")).keySet(), is(Set.of(KEY_DE)));
+        assertThat(repository.getStationsByCountry(Set.of("de", "ch")).size(), is(2));
+        assertThat(repository.getStationsByCountry(null).size(), is(2));
+        assertThat(repository.getStationsByCountry(Collections.singleton("xy")).isEmpty(), is(true));
+        verify(stationDao, times(1)).all();
+    }
+
+    @Test
+    public void insertPhotoSwapsSnapshot() {
+        final Map<Station.Key, Station> before = repository.getStationsByCountry(Collections.singleton("de"));
+        final Map<Station.Key, Station> untouched = repository.getStationsByCountry(Collections.singleton("ch"));
+        final long version = repository.getSnapshot().getVersion();
+        final StationsSearchIndex searchIndex = repository.getSnapshot().getSearchIndex("de");
+        final Photo photo = new Photo(KEY_DE, "/de/1.jpg", createTestPhotographer(), 0L, "CC0");
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId())).thenReturn(Set.of(createStation(KEY_DE, "Lummerland", photo)));
+
+        repository.insertPhoto(photo);
+
+        verify(photoDao).insert(photo);
+        assertThat(changeDao.getKeys(changeDao.getVersion()), is(List.of(KEY_DE)));
+        assertThat(repository.getSnapshot().getVersion(), is(version + 1));
+        assertThat(repository.getStationsByCountry(Collections.singleton("de")).get(KEY_DE).hasPhoto(), is(true));
+        assertThat(before.get(KEY_DE).hasPhoto(), is(false));
+        assertThat(repository.getStationsByCountry(Collections.singleton("ch")), sameInstance(untouched));
+        assertThat(repository.getSnapshot().getSearchIndex("de"), sameInstance(searchIndex));
+    }
+
+    @Test
+    public void recentImportsSkipGoneStationsBeforeLimit() {
+        final Photo photo = new Photo(KEY_DE, "/de/1.jpg", createTestPhotographer(), 100L, "CC0");
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId())).thenReturn(Set.of(createStation(KEY_DE, "Lummerland", photo)));
+        repository.insertPhoto(photo);
+        final Station.Key gone = new Station.Key("de", "99");
+        repository.insertPhoto(new Photo(gone, "/de/99.jpg", createTestPhotographer(), 200L, "CC0"));
+
+        final List<Station> stations = repository.findRecentImports(0, Long.MAX_VALUE, null, 1);
+
+        assertThat(stations.size(), is(1));
+        assertThat(stations.get(0).getKey(), is(KEY_DE));
+    }
+
+    @Test
+    public void deleteStationRemovesFromSnapshot() {
+        final Station station = repository.getStationsByCountry(Collections.singleton("ch")).get(KEY_CH);
+
+        repository.delete(station);
+
+        verify(stationDao).delete(station);
+        assertThat(repository.getStationsByCountry(Collections.singleton("ch")).get(KEY_CH), nullValue());
+        assertThat(repository.getStationsByCountry(Collections.singleton("de")).get(KEY_DE), notNullValue());
+    }
+
+    @Test
+    public void insertStationOfInactiveCountryIsIgnored() {
+        final Station.Key key = new Station.Key("xy", "3");
+        final Station station = createStation(key, "Somewhere", null);
+        when(stationDao.findByKey(key.getCountry(), key.getId())).thenReturn(Set.of(station));
+
+        repository.insert(station);
+
+        verify(stationDao).insert(station);
+        assertThat(repository.getStationsByCountry(Collections.singleton("xy")).isEmpty(), is(true));
+    }
+
+    @Test
+    public void findStationsFromSnapshot() {
+        assertThat(findStations(repository, null, new StationFilter(null, null, 20, 50.1, 9.0, null, null)).size(), is(2));
+        assertThat(findStations(repository, Set.of("de"), new StationFilter(null, null, 20, 50.1, 9.0, null, null)).get(0).getKey(), is(KEY_DE));
+        assertThat(findStations(repository, null, new StationFilter(null, null, 20, 52.0, 9.0, null, null)).isEmpty(), is(true));
+        verify(stationDao, never()).findByFilter(anyBoolean(), ArgumentMatchers.any(), anyBoolean(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void findStationsInDatabaseIfNotInMemory() {
+        final StationsRepository dbRepository = new StationsRepository(mock(CountryDao.class), stationDao, changeDao, sequenceDao, false);
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        // without spatial criteria the area is not applied, it would drop stations without coordinates
+        when(stationDao.findByFilter(eq(false), eq(Set.of("de")), eq(false), ArgumentMatchers.any(BoundingBox.class), eq(false), eq(null), eq(null)))
+                .thenReturn(Stream.of(createStation(KEY_DE, "Lummerland", null)).onClose(() -> closed.set(true)));
+
+        final List<Station> stations = findStations(dbRepository, Set.of("de"), new StationFilter(false, null, null, null, null, null, null));
+
+        assertThat(stations.size(), is(1));
+        assertThat(closed.get(), is(true));
+        assertThat(dbRepository.getSnapshot(), nullValue());
+        verify(stationDao, times(1)).all();
+    }
+
+    @Test
+    public void searchStationsInDatabaseIfNotInMemory() {
+        final StationsRepository dbRepository = new StationsRepository(mock(CountryDao.class), stationDao, changeDao, sequenceDao, false);
+        when(stationDao.findByTitleOrDS100(true, Collections.emptySet(), "lummer"))
+                .thenReturn(List.of(createStation(KEY_DE, "Lummerland", null), createStation(KEY_CH, "Schlummerland", null)));
+
+        final List<Station> stations = dbRepository.searchStations("lummer", null, 10);
+
+        assertThat(stations.size(), is(1));
+        assertThat(stations.get(0).getKey(), is(KEY_DE));
+        verify(stationDao, never()).findByKey(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void findByPhotographerFollowsRename() {
+        final Photo photo = new Photo(KEY_DE, "/de/1.jpg", createTestPhotographer(), 0L, "CC0");
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId())).thenReturn(Set.of(createStation(KEY_DE, "Lummerland", photo)));
+        repository.insertPhoto(photo);
+        assertThat(findStations(repository, null, new StationFilter(null, "test", null, null, null, null, null)).get(0).getKey(), is(KEY_DE));
+
+        final User renamed = new User("renamed", "photographerUrl", "CC0", 0, null, true, false, null, null, false, null, true);
+        final Photo renamedPhoto = new Photo(KEY_DE, "/de/1.jpg", renamed, 0L, "CC0");
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId())).thenReturn(Set.of(createStation(KEY_DE, "Lummerland", renamedPhoto)));
+        repository.photographerChanged(renamed);
+
+        assertThat(findStations(repository, null, new StationFilter(null, "test", null, null, null, null, null)).isEmpty(), is(true));
+        assertThat(findStations(repository, Set.of("de"), new StationFilter(null, "renamed", null, null, null, null, null)).get(0).getKey(), is(KEY_DE));
+        assertThat(findStations(repository, Set.of("ch"), new StationFilter(null, "renamed", null, null, null, null, null)).isEmpty(), is(true));
+        assertThat(repository.findPage(null, new StationFilter(null, "renamed", null, null, null, null, null), null, 1).getNext(), is(KEY_DE));
+        verify(stationDao, never()).findByPhotographerId(anyInt());
+    }
+
+    @Test
+    public void searchFollowsTitleChange() {
+        assertThat(repository.searchStations("lumm", null, 10).get(0).getKey(), is(KEY_DE));
+        assertThat(repository.findByName("LUMMER"), is(Map.of(KEY_DE, "Lummerland")));
+
+        final Station station = repository.getStation(KEY_DE);
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId())).thenReturn(Set.of(createStation(KEY_DE, "Kummerland", null)));
+        repository.changeStationTitle(station, "Kummerland");
+
+        assertThat(repository.searchStations("lumm", null, 10).isEmpty(), is(true));
+        assertThat(repository.searchStations("kumm", Set.of("de"), 10).get(0).getTitle(), is("Kummerland"));
+        assertThat(repository.searchStations("kumm", Set.of("ch"), 10).isEmpty(), is(true));
+        assertThat(repository.searchStations("land", null, 10).size(), is(0));
+        assertThat(repository.findByName("kummer").keySet(), is(Set.of(KEY_DE)));
+        verify(stationDao, never()).findByName(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void nearbyStationsFromSnapshot() {
+        assertThat(repository.findNearbyStations(new Coordinates(50.0044, 9.0)).size(), is(2));
+        assertThat(repository.findNearbyStations(new Coordinates(50.003, 9.005)).size(), is(2));
+        assertThat(repository.findNearbyStations(new Coordinates(50.0035, 9.005)).isEmpty(), is(true));
+        assertThat(repository.countNearbyCoordinates(new Coordinates(49.9956, 9.0)), is(2));
+        assertThat(repository.countNearbyCoordinates(new Coordinates(50.0046, 9.0)), is(0));
+        verify(stationDao, never()).findNearbyCoordinates(ArgumentMatchers.any(), ArgumentMatchers.any(), eq(true), ArgumentMatchers.any());
+        verify(stationDao, never()).countNearbyCoordinates(ArgumentMatchers.any(), ArgumentMatchers.any(), eq(true), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void nearbyStationsOfCountriesOutsideSnapshotFromDatabase() {
+        final Coordinates coordinates = new Coordinates(50.0, 9.0);
+        final Station.Key inactive = new Station.Key("xy", "1");
+        when(stationDao.findNearbyCoordinates(eq(coordinates), ArgumentMatchers.any(BoundingBox.class), eq(false), eq(Set.of("de", "ch"))))
+                .thenReturn(List.of(createStation(inactive, "Nirgendwo", null)));
+        when(stationDao.countNearbyCoordinates(eq(coordinates), ArgumentMatchers.any(BoundingBox.class), eq(false), eq(Set.of("de", "ch"))))
+                .thenReturn(1);
+
+        assertThat(repository.findNearbyStations(coordinates).stream().map(Station::getKey).collect(Collectors.toSet()),
+                is(Set.of(KEY_DE, KEY_CH, inactive)));
+        assertThat(repository.countNearbyCoordinates(coordinates), is(3));
+    }
+
+    @Test
+    public void nearbyStationsPrefilteredByArea() {
+        final StationsRepository dbRepository = new StationsRepository(mock(CountryDao.class), stationDao, changeDao, sequenceDao, false);
+        final Coordinates coordinates = new Coordinates(50.0, 9.0);
+        when(stationDao.findNearbyCoordinates(eq(coordinates), ArgumentMatchers.any(BoundingBox.class), eq(true), eq(Set.of())))
+                .thenReturn(List.of(createStation(KEY_DE, "Lummerland", null)));
+
+        assertThat(dbRepository.findNearbyStations(coordinates).get(0).getKey(), is(KEY_DE));
+        dbRepository.countNearbyCoordinates(coordinates);
+
+        verify(stationDao).findNearbyCoordinates(eq(coordinates), argThat(area -> area.contains(50.0044, 9.0) && area.contains(50.0, 8.9931)
+                && !area.contains(50.0046, 9.0) && !area.contains(50.0, 8.9929)), eq(true), eq(Set.of()));
+        verify(stationDao).countNearbyCoordinates(eq(coordinates), argThat(area -> area.contains(49.9956, 9.0069)), eq(true), eq(Set.of()));
+    }
+
+    @Test
+    public void statisticFollowsPhotoChanges() {
+        final Photo photo = new Photo(KEY_DE, "/de/1.jpg", createTestPhotographer(), 0L, "CC0");
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId()))
+                .thenReturn(Set.of(createStation(KEY_DE, "Lummerland", null)), Set.of(createStation(KEY_DE, "Lummerland", photo)));
+
+        repository.insertPhoto(photo);
+
+        assertThat(repository.getStatistic("de").getWithPhoto(), is(1));
+        assertThat(repository.getStatistic(null).getPhotographers(), is(1));
+        verify(stationDao, never()).getStatistic(ArgumentMatchers.any());
+    }
+
+    @Test
+    public void statisticStaysExactUnderConcurrentPhotoChanges() throws Exception {
+        final Photo photo = new Photo(KEY_DE, "/de/1.jpg", createTestPhotographer(), 0L, "CC0");
+        final Station withoutPhoto = createStation(KEY_DE, "Lummerland", null);
+        final Station withPhoto = createStation(KEY_DE, "Lummerland", photo);
+        final AtomicReference<Station> stored = new AtomicReference<>(withoutPhoto);
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId())).thenAnswer(invocation -> Set.of(stored.get()));
+        doAnswer(invocation -> {
+            Thread.yield();
+            stored.set(withPhoto);
+            return null;
+        }).when(photoDao).insert(photo);
+        doAnswer(invocation -> {
+            Thread.yield();
+            stored.set(withoutPhoto);
+            return null;
+        }).when(photoDao).delete(KEY_DE);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> changes = new ArrayList<>();
+            for (int i = 0; i < 1001; i++) {
+                changes.add(executor.submit(i % 2 == 0 ? () -> repository.insertPhoto(photo) : () -> repository.deletePhoto(KEY_DE)));
+            }
+            for (final Future<?> change : changes) {
+                change.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        final int withPhotos = stored.get().hasPhoto() ? 1 : 0;
+        assertThat(repository.getStatistic("de").getWithPhoto(), is(withPhotos));
+        assertThat(repository.getStatistic(null).getWithPhoto(), is(withPhotos));
+        assertThat(repository.getStatistic(null).getPhotographers(), is(withPhotos));
+        assertThat(repository.getStation(KEY_DE).hasPhoto(), is(stored.get().hasPhoto()));
+    }
+
+    @Test
+    public void syncAppliesChangesOfOtherInstances() {
+        final long modifications = repository.getModificationCount("de");
+        final Photo photo = new Photo(KEY_DE, "/de/1.jpg", createTestPhotographer(), 100L, "CC0");
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId())).thenReturn(Set.of(createStation(KEY_DE, "Lummerland", photo)));
+        when(stationDao.countByCountryAndPhotographer()).thenReturn(List.of(
+                new StatisticCount("de", 0, "test", 1, 1), new StatisticCount("ch", null, null, 1, 0)));
+        // written by another instance
+        changeDao.write(List.of(KEY_DE), dao -> { });
+
+        repository.syncChanges();
+
+        assertThat(repository.getStation(KEY_DE).hasPhoto(), is(true));
+        assertThat(repository.getStatistic("de").getWithPhoto(), is(1));
+        assertThat(repository.findRecentImports(0, Long.MAX_VALUE, null, 10).get(0).getKey(), is(KEY_DE));
+        assertThat(repository.getModificationCount("de") > modifications, is(true));
+    }
+
+    @Test
+    public void syncSkipsOwnChanges() {
+        final Photo photo = new Photo(KEY_DE, "/de/1.jpg", createTestPhotographer(), 0L, "CC0");
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId())).thenReturn(Set.of(createStation(KEY_DE, "Lummerland", photo)));
+        repository.insertPhoto(photo);
+
+        repository.syncChanges();
+
+        verify(stationDao, times(1)).countByCountryAndPhotographer();
+        verify(stationDao, times(2)).findByKey(KEY_DE.getCountry(), KEY_DE.getId());
+    }
+
+    @Test
+    public void syncAfterPrunedLogReloads() {
+        changeDao.write(List.of(KEY_DE), dao -> { });
+        changeDao.write(List.of(KEY_CH), dao -> { });
+        repository.pruneChanges(Long.MAX_VALUE);
+        changeDao.write(List.of(KEY_DE), dao -> { });
+
+        repository.syncChanges();
+
+        verify(stationDao, times(2)).all();
+    }
+
+    @Test
+    public void nextZFromAllocatedBlocks() {
+        when(sequenceDao.allocate("Z", 10)).thenReturn(1191L, 1201L);
+
+        final List<String> ids = Stream.generate(repository::getNextZ).limit(11).collect(Collectors.toList());
+
+        assertThat(ids.get(0), is("Z1191"));
+        assertThat(ids.get(9), is("Z1200"));
+        assertThat(ids.get(10), is("Z1201"));
+        verify(sequenceDao, times(2)).allocate("Z", 10);
+    }
+
+    @Test
+    public void newStationClaimsItsZId() {
+        repository.insert(createStation(new Station.Key("de", "Z5000"), "Neuland", null));
+        repository.insert(createStation(new Station.Key("de", "8001"), "Altland", null));
+
+        verify(sequenceDao).advance("Z", 5001L);
+        verify(sequenceDao, times(1)).advance(ArgumentMatchers.any(), anyLong());
+    }
+
+    @Test
+    public void getChangesSince() {
+        changeDao.write(List.of(KEY_DE), dao -> { });
+        changeDao.write(List.of(KEY_CH, new Station.Key("de", "99")), dao -> { });
+
+        final StationChanges changes = repository.getChanges(1L, null);
+
+        assertThat(changes.getVersion(), is(2L));
+        assertThat(changes.isFull(), is(false));
+        assertThat(changes.getUpserts().size(), is(1));
+        assertThat(changes.getUpserts().get(0).getKey(), is(KEY_CH));
+        assertThat(changes.getDeletions(), is(List.of(new Station.Key("de", "99"))));
+    }
+
+    @Test
+    public void getChangesWithoutSinceOnlyReturnsVersion() {
+        changeDao.write(List.of(KEY_DE), dao -> { });
+
+        final StationChanges changes = repository.getChanges(null, Set.of("de"));
+
+        assertThat(changes.getVersion(), is(1L));
+        assertThat(changes.getUpserts().isEmpty(), is(true));
+        assertThat(changes.getDeletions().isEmpty(), is(true));
+    }
+
+    @Test
+    public void getChangesFromZeroReturnsAllStations() {
+        assertThat(repository.getChanges(0L, null).getUpserts().size(), is(2));
+        changeDao.write(List.of(KEY_CH), dao -> { });
+
+        final StationChanges changes = repository.getChanges(0L, Set.of("de"));
+
+        assertThat(changes.getVersion(), is(1L));
+        assertThat(changes.isFull(), is(true));
+        assertThat(changes.getUpserts().stream().map(Station::getKey).collect(Collectors.toList()), is(List.of(KEY_DE)));
+        assertThat(changes.getDeletions().isEmpty(), is(true));
+    }
+
+    @Test
+    public void getChangesBeforePrunedLogReturnsAllStations() {
+        changeDao.write(List.of(KEY_DE), dao -> { });
+        changeDao.write(List.of(KEY_CH), dao -> { });
+        assertThat(repository.pruneChanges(Long.MAX_VALUE), is(2));
+        changeDao.write(List.of(KEY_DE), dao -> { });
+
+        assertThat(repository.getChanges(1L, null).isFull(), is(true));
+        assertThat(repository.getChanges(1L, null).getUpserts().size(), is(2));
+        assertThat(repository.getChanges(2L, null).isFull(), is(false));
+        assertThat(repository.getChanges(2L, null).getUpserts().size(), is(1));
+    }
+
+    private List<Station> findStations(final StationsRepository stationsRepository, final Set<String> countries, final StationFilter filter) {
+        try (Stream<Station> stations = stationsRepository.findStations(countries, filter)) {
+            return stations.collect(Collectors.toList());
+        }
+    }
+
+    private Station createStation(final Station.Key key, final String title, final Photo photo) {
+        return new Station(key, title, new Coordinates(50.0, 9.0), photo, true);
+    }
+
+    private User createTestPhotographer() {
+        return new User("test", "photographerUrl", "CC0", 0, null, true, false, null, null, false, null, true);
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.railwaystations.api;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.db.CountryDao;
+import org.railwaystations.api.db.MockChangeDao;
+import org.railwaystations.api.db.PhotoDao;
+import org.railwaystations.api.db.SequenceDao;
+import org.railwaystations.api.db.StationDao;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Country;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.StationFilter;
+import org.railwaystations.api.writer.StationsTxtWriter;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SuppressFBWarnings("UWF_FIELD_NOT_INITIALIZED_IN_CONSTRUCTOR")
+public class StationsResponseCacheTest {
+
+    private static final Station.Key KEY_DE = new Station.Key("de", "1");
+    private static final Station.Key KEY_CH = new Station.Key("ch", "2");
+    private static final StationFilter NO_FILTER = new StationFilter(null, null, null, null, null, null, null);
+
+    private StationDao stationDao;
+    private StationsRepository repository;
+    private StationsResponseCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        final CountryDao countryDao = mock(CountryDao.class);
+        when(countryDao.list(true)).thenReturn(Set.of(new Country("de"), new Country("ch")));
+        stationDao = mock(StationDao.class);
+        when(stationDao.all()).thenReturn(Set.of(createStation(KEY_DE, "Lummerland"), createStation(KEY_CH, "Nimmerland")));
+
+        repository = new StationsRepository(countryDao, stationDao, new MockChangeDao(stationDao, mock(PhotoDao.class), mock(SequenceDao.class)),
+                mock(SequenceDao.class));
+        cache = new StationsResponseCache(repository, Map.of(MediaType.TEXT_PLAIN_TYPE, new StationsTxtWriter()), 1024 * 1024);
+    }
+
+    @Test
+    public void hitReturnsSameBytes() throws IOException {
+        final StationsResponseCache.Entry first = cache.get(Collections.singleton("de"), NO_FILTER, MediaType.valueOf("text/plain;charset=UTF-8"));
+        final StationsResponseCache.Entry second = cache.get(Collections.singleton("de"), NO_FILTER, MediaType.TEXT_PLAIN_TYPE);
+
+        assertThat(second, sameInstance(first));
+        assertThat(new String(first.getBytes(), StandardCharsets.UTF_8), containsString("Lummerland"));
+        assertThat(gunzip(first.getGzipped()), is(first.getBytes()));
+    }
+
+    @Test
+    public void changeInvalidatesOnlyAffectedCountry() {
+        final StationsResponseCache.Entry de = cache.get(Collections.singleton("de"), NO_FILTER, MediaType.TEXT_PLAIN_TYPE);
+        final StationsResponseCache.Entry ch = cache.get(Collections.singleton("ch"), NO_FILTER, MediaType.TEXT_PLAIN_TYPE);
+        final StationsResponseCache.Entry all = cache.get(null, NO_FILTER, MediaType.TEXT_PLAIN_TYPE);
+
+        final Station renamed = createStation(KEY_DE, "Kummerland");
+        when(stationDao.findByKey(KEY_DE.getCountry(), KEY_DE.getId())).thenReturn(Set.of(renamed));
+        repository.changeStationTitle(renamed, "Kummerland");
+
+        final StationsResponseCache.Entry deAfter = cache.get(Collections.singleton("de"), NO_FILTER, MediaType.TEXT_PLAIN_TYPE);
+        assertThat(deAfter, not(sameInstance(de)));
+        assertThat(new String(deAfter.getBytes(), StandardCharsets.UTF_8), containsString("Kummerland"));
+        assertThat(deAfter.getEtag(false), not(equalTo(de.getEtag(false))));
+        assertThat(cache.get(Collections.singleton("ch"), NO_FILTER, MediaType.TEXT_PLAIN_TYPE), sameInstance(ch));
+        assertThat(cache.get(null, NO_FILTER, MediaType.TEXT_PLAIN_TYPE), not(sameInstance(all)));
+    }
+
+    @Test
+    public void filtersAreCachedSeparately() {
+        final StationsResponseCache.Entry all = cache.get(null, NO_FILTER, MediaType.TEXT_PLAIN_TYPE);
+        final StationsResponseCache.Entry withPhoto = cache.get(null, new StationFilter(true, null, null, null, null, null, null), MediaType.TEXT_PLAIN_TYPE);
+
+        assertThat(withPhoto, not(sameInstance(all)));
+        assertThat(new String(withPhoto.getBytes(), StandardCharsets.UTF_8), not(containsString("Lummerland")));
+    }
+
+    @Test
+    public void concurrentMissesSerializeOnce() throws Exception {
+        final AtomicInteger serializations = new AtomicInteger();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch requested = new CountDownLatch(1);
+        final StationsResponseCache slowCache = new StationsResponseCache(repository, Map.of(MediaType.TEXT_PLAIN_TYPE, new StationsTxtWriter() {
+            @Override
+            public void writeTo(final Stream<Station> t, final Class<?> type, final Type genericType, final Annotation[] annotations,
+                                final MediaType mediaType, final MultivaluedMap<String, Object> httpHeaders, final OutputStream entityStream) {
+                serializations.incrementAndGet();
+                writing.countDown();
+                try {
+                    requested.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.writeTo(t, type, genericType, annotations, mediaType, httpHeaders, entityStream);
+            }
+        }), 1024 * 1024);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<StationsResponseCache.Entry>> entries = new ArrayList<>();
+            entries.add(executor.submit(() -> slowCache.get(null, NO_FILTER, MediaType.TEXT_PLAIN_TYPE)));
+            writing.await();
+            for (int i = 0; i < 7; i++) {
+                entries.add(executor.submit(() -> slowCache.get(null, NO_FILTER, MediaType.TEXT_PLAIN_TYPE)));
+            }
+            Thread.sleep(100);
+            requested.countDown();
+            for (final Future<StationsResponseCache.Entry> entry : entries) {
+                assertThat(entry.get(), sameInstance(entries.get(0).get()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(serializations.get(), is(1));
+    }
+
+    private static byte[] gunzip(final byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private Station createStation(final Station.Key key, final String title) {
+        return new Station(key, title, new Coordinates(50.0, 9.0), null, true);
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.railwaystations.api;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Station;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StationsSearchIndexTest {
+
+    private static final Station FRANKFURT = createStation("1", "Frankfurt (Main) Hbf", "FF");
+    private static final Station MUENCHEN = createStation("2", "München Hbf", "MH");
+    private static final Station MUENSTER = createStation("3", "Münster (Westf) Hbf", "EMST");
+    private static final Station NIMES = createStation("4", "Nîmes", null);
+
+    @Test
+    public void normalize() {
+        assertThat(StationsSearchIndex.normalize("Frankfurt (Main) Hbf"), is("frankfurt main hbf"));
+        assertThat(StationsSearchIndex.normalize("Göttingen"), is("goettingen"));
+        assertThat(StationsSearchIndex.normalize("Straße"), is("strasse"));
+        assertThat(StationsSearchIndex.normalize("Nîmes-Pont-du-Gard"), is("nimes pont du gard"));
+        assertThat(StationsSearchIndex.normalize(null), is(""));
+    }
+
+    @Test
+    public void completeTitleWordsAndDs100() {
+        final StationsSearchIndex index = new StationsSearchIndex(List.of(FRANKFURT, MUENCHEN, MUENSTER, NIMES));
+
+        assertThat(index.complete("Mün", 10), is(List.of(MUENCHEN.getKey(), MUENSTER.getKey())));
+        assertThat(index.complete("muenc", 10), is(List.of(MUENCHEN.getKey())));
+        assertThat(index.complete("main h", 10), is(List.of(FRANKFURT.getKey())));
+        assertThat(index.complete("emst", 10), is(List.of(MUENSTER.getKey())));
+        assertThat(index.complete("hbf", 2).size(), is(2));
+        assertThat(index.complete("nimes", 10), is(List.of(NIMES.getKey())));
+        assertThat(index.complete(" ", 10).isEmpty(), is(true));
+    }
+
+    @Test
+    public void findSubstring() {
+        final StationsSearchIndex index = new StationsSearchIndex(List.of(FRANKFURT, MUENCHEN, MUENSTER, NIMES));
+
+        assertThat(index.find("ENST"), is(Set.of(MUENSTER.getKey())));
+        assertThat(index.find("furt (ma"), is(Set.of(FRANKFURT.getKey())));
+        assertThat(index.find("hbf"), is(Set.of(FRANKFURT.getKey(), MUENCHEN.getKey(), MUENSTER.getKey())));
+        assertThat(index.find("xyz").isEmpty(), is(true));
+    }
+
+    @Test
+    public void findShortSubstring() {
+        final StationsSearchIndex index = new StationsSearchIndex(List.of(FRANKFURT, MUENCHEN, MUENSTER, NIMES));
+
+        assertThat(index.find("nc"), is(Set.of(MUENCHEN.getKey())));
+        assertThat(index.find("Ü"), is(Set.of(MUENCHEN.getKey(), MUENSTER.getKey())));
+        assertThat(index.find("qq").isEmpty(), is(true));
+    }
+
+    @Test
+    public void updateCopy() {
+        final StationsSearchIndex previous = new StationsSearchIndex(List.of(FRANKFURT, MUENCHEN));
+        final Station renamed = createStation("2", "Munich Central", "MH");
+
+        final StationsSearchIndex index = previous.with(List.of(MUENCHEN), List.of(renamed));
+
+        assertThat(previous.complete("münchen", 10), is(List.of(MUENCHEN.getKey())));
+        assertThat(previous.find("central").isEmpty(), is(true));
+        assertThat(index.complete("münchen", 10).isEmpty(), is(true));
+        assertThat(index.find("central"), is(Set.of(renamed.getKey())));
+        assertThat(index.complete("mh", 10), is(List.of(renamed.getKey())));
+        assertThat(StationsSearchIndex.isChanged(MUENCHEN, renamed), is(true));
+        assertThat(StationsSearchIndex.isChanged(renamed, createStation("2", "Munich Central", "MH")), is(false));
+    }
+
+    private static Station createStation(final String id, final String title, final String ds100) {
+        return new Station(new Station.Key("de", id), title, new Coordinates(50.0, 9.0), ds100, null, true);
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.railwaystations.api;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Photo;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.Statistic;
+import org.railwaystations.api.model.StatisticCount;
+import org.railwaystations.api.model.User;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StationsStatisticsTest {
+
+    private static final List<StatisticCount> COUNTS = List.of(
+            new StatisticCount("de", null, null, 5, 0),
+            new StatisticCount("de", 1, "photographer1", 3, 3),
+            new StatisticCount("de", 2, "photographer2", 1, 1),
+            new StatisticCount("ch", 1, "photographer1", 2, 2),
+            new StatisticCount("ch", null, null, 1, 0));
+
+    @Test
+    public void countsPerCountryAndTotal() {
+        final StationsStatistics statistics = StationsStatistics.of(COUNTS);
+
+        assertStatistic(statistics.get("de"), 9, 4, 2);
+        assertStatistic(statistics.get("ch"), 3, 2, 1);
+        assertStatistic(statistics.get(null), 12, 6, 2);
+        assertStatistic(statistics.get("xy"), 0, 0, 0);
+    }
+
+    @Test
+    public void changeStations() {
+        final StationsStatistics statistics = StationsStatistics.of(COUNTS);
+        final Station.Key key = new Station.Key("de", "4711");
+        final Station withoutPhoto = createStation(key, null);
+        final Station withPhoto = createStation(key, createUser(3));
+
+        statistics.change(null, withoutPhoto);
+        assertStatistic(statistics.get("de"), 10, 4, 2);
+        statistics.change(withoutPhoto, withPhoto);
+        assertStatistic(statistics.get("de"), 10, 5, 3);
+        assertStatistic(statistics.get(null), 13, 7, 3);
+        statistics.change(withPhoto, null);
+        assertStatistic(statistics.get("de"), 9, 4, 2);
+
+        final Station fr = createStation(new Station.Key("fr", "1"), createUser(2));
+        statistics.change(null, fr);
+        assertStatistic(statistics.get("fr"), 1, 1, 1);
+        assertStatistic(statistics.get(null), 13, 7, 2);
+    }
+
+    @Test
+    public void leaderboardFollowsPhotosAndRenames() {
+        final StationsStatistics statistics = StationsStatistics.of(COUNTS);
+        assertThat(statistics.getPhotographers(null, 0, 10), is(Map.of("photographer1", 5L, "photographer2", 1L)));
+
+        for (int i = 0; i < 5; i++) {
+            statistics.change(null, createStation(new Station.Key("fr", String.valueOf(i)), createUser(2)));
+        }
+        statistics.photographerChanged(3, "newbie");
+        statistics.change(null, createStation(new Station.Key("fr", "9"), createUser(3)));
+
+        assertThat(List.copyOf(statistics.getPhotographers(null, 0, 10).entrySet()),
+                is(List.of(Map.entry("photographer2", 6L), Map.entry("photographer1", 5L), Map.entry("newbie", 1L))));
+        assertThat(statistics.getPhotographers(null, 1, 1), is(Map.of("photographer1", 5L)));
+        assertThat(List.copyOf(statistics.getPhotographers("fr", 0, 10).keySet()), is(List.of("photographer2", "newbie")));
+
+        statistics.photographerChanged(1, "renamed");
+        assertThat(statistics.getPhotographers("de", 0, 10), is(Map.of("renamed", 3L, "photographer2", 1L)));
+        assertThat(statistics.getPhotographers("xy", 0, 10).isEmpty(), is(true));
+    }
+
+    @Test
+    public void reconcileReportsDrift() {
+        final StationsStatistics statistics = StationsStatistics.of(COUNTS);
+        assertThat(statistics.reconcile(StationsStatistics.of(COUNTS)).isEmpty(), is(true));
+
+        statistics.change(null, createStation(new Station.Key("ch", "9"), createUser(2)));
+        final List<String> drift = statistics.reconcile(StationsStatistics.of(COUNTS));
+
+        assertThat(drift, is(List.of("ch: total 4 -> 3, withPhoto 3 -> 2, photographers 2 -> 1",
+                "all: total 13 -> 12, withPhoto 7 -> 6, photographers 2 -> 2")));
+        assertStatistic(statistics.get("ch"), 3, 2, 1);
+    }
+
+    private static void assertStatistic(final Statistic statistic, final int total, final int withPhoto, final int photographers) {
+        assertThat(statistic.getTotal(), is(total));
+        assertThat(statistic.getWithPhoto(), is(withPhoto));
+        assertThat(statistic.getPhotographers(), is(photographers));
+    }
+
+    private static Station createStation(final Station.Key key, final User photographer) {
+        final Photo photo = photographer != null ? new Photo(key, "/photo.jpg", photographer, 0L, "CC0") : null;
+        return new Station(key, "Station", new Coordinates(50.0, 9.0), photo, true);
+    }
+
+    private static User createUser(final int id) {
+        return new User("photographer" + id, "photographerUrl", "CC0", id, null, true, false, null, null, false, null, true);
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.railwaystations.api;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.BoundingBox;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Photo;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.TileCluster;
+import org.railwaystations.api.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+
+public class StationsTilePyramidTest {
+
+    @Test
+    public void tileOfCoordinates() {
+        assertThat(StationsTilePyramid.lonToTile(-180, 1), is(0));
+        assertThat(StationsTilePyramid.lonToTile(180, 1), is(1));
+        assertThat(StationsTilePyramid.latToTile(89.9, 1), is(0));
+        assertThat(StationsTilePyramid.latToTile(-89.9, 1), is(1));
+        // Frankfurt (Main) Hbf
+        assertThat(StationsTilePyramid.lonToTile(8.6625, 10), is(536));
+        assertThat(StationsTilePyramid.latToTile(50.107, 10), is(346));
+    }
+
+    @Test
+    public void tileBoundsContainTheirStations() {
+        final BoundingBox bounds = StationsTilePyramid.tileBounds(10, 536, 346);
+        assertThat(bounds.contains(new Coordinates(50.107, 8.6625)), is(true));
+        assertThat(bounds.contains(new Coordinates(50.107, 9.2)), is(false));
+    }
+
+    @Test
+    public void zoomZeroCountsAllStations() {
+        final List<Station> stations = createStations(new Random(42), 1000);
+        final StationsTilePyramid pyramid = new StationsTilePyramid(stations);
+
+        final List<TileCluster> clusters = pyramid.getClusters(0, 0, 0);
+        assertThat(clusters.stream().mapToInt(TileCluster::getCount).sum(), is(1000));
+        assertThat(clusters.stream().mapToInt(TileCluster::getWithPhoto).sum(),
+                is((int) stations.stream().filter(Station::hasPhoto).count()));
+    }
+
+    @Test
+    public void incrementalUpdatesMatchRebuild() {
+        final Random random = new Random(42);
+        final List<Station> stations = createStations(random, 2000);
+        final StationsTilePyramid previous = new StationsTilePyramid(stations.subList(0, 1500));
+        final StationsTilePyramid added = previous.with(List.of(), stations.subList(1500, 2000));
+        final StationsTilePyramid pyramid = added.with(stations.subList(0, 300), List.of());
+        assertThat(previous.getClusters(0, 0, 0).stream().mapToInt(TileCluster::getCount).sum(), is(1500));
+        assertThat(added.getClusters(0, 0, 0).stream().mapToInt(TileCluster::getCount).sum(), is(2000));
+        final List<Station> remaining = new ArrayList<>(stations.subList(300, 2000));
+
+        final StationsTilePyramid rebuilt = new StationsTilePyramid(remaining);
+        for (int z = 0; z <= 8; z++) {
+            final int x = StationsTilePyramid.lonToTile(10.5, z);
+            final int y = StationsTilePyramid.latToTile(51, z);
+            assertSameClusters(pyramid.getClusters(z, x, y), rebuilt.getClusters(z, x, y));
+            assertSameClusters(pyramid.getClusters(z, x, y), StationsTilePyramid.cluster(remaining, z, x, y));
+        }
+    }
+
+    private void assertSameClusters(final List<TileCluster> actual, final List<TileCluster> expected) {
+        assertThat(counts(actual), is(counts(expected)));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).getLat(), closeTo(expected.get(i).getLat(), 1e-9));
+            assertThat(actual.get(i).getLon(), closeTo(expected.get(i).getLon(), 1e-9));
+        }
+    }
+
+    private List<String> counts(final List<TileCluster> clusters) {
+        return clusters.stream().map(cluster -> cluster.getCount() + "/" + cluster.getWithPhoto()).collect(Collectors.toList());
+    }
+
+    private List<Station> createStations(final Random random, final int count) {
+        final User photographer = new User("test", "photographerUrl", "CC0", 0, null, true, false, null, null, false, null, true);
+        final List<Station> stations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final Station.Key key = new Station.Key("de", String.valueOf(i));
+            final Photo photo = random.nextBoolean() ? new Photo(key, "/de/" + i + ".jpg", photographer, 0L, "CC0") : null;
+            stations.add(new Station(key, "Station " + i, new Coordinates(47 + random.nextDouble() * 8, 6 + random.nextDouble() * 9), photo, true));
+        }
+        return stations;
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.railwaystations.api.db;
+
+import org.railwaystations.api.model.Station;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Change log in memory, which runs the writes on the given DAOs
+ */
+public class MockChangeDao implements ChangeDao {
+
+    private final StationDao stationDao;
+    private final PhotoDao photoDao;
+    private final SequenceDao sequenceDao;
+    private final List<Change> changes = new ArrayList<>();
+    private long version;
+
+    public MockChangeDao(final StationDao stationDao, final PhotoDao photoDao, final SequenceDao sequenceDao) {
+        this.stationDao = stationDao;
+        this.photoDao = photoDao;
+        this.sequenceDao = sequenceDao;
+    }
+
+    @Override
+    public StationDao stationDao() {
+        return stationDao;
+    }
+
+    @Override
+    public PhotoDao photoDao() {
+        return photoDao;
+    }
+
+    @Override
+    public SequenceDao sequenceDao() {
+        return sequenceDao;
+    }
+
+    /**
+     * Like the database, only the logging of the change is serialized
+     */
+    @Override
+    public long write(final Collection<Station.Key> keys, final Consumer<ChangeDao> write) {
+        write.accept(this);
+        synchronized (this) {
+            if (!keys.isEmpty()) {
+                insert(keys, ++version, System.currentTimeMillis());
+            }
+            return version;
+        }
+    }
+
+    @Override
+    public synchronized void insert(final Collection<Station.Key> keys, final long version, final long changedAt) {
+        keys.forEach(key -> changes.add(new Change(key, version, changedAt)));
+    }
+
+    @Override
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    @Override
+    public synchronized long getFirstVersion() {
+        return changes.isEmpty() ? version + 1 : changes.get(0).version;
+    }
+
+    @Override
+    public synchronized List<Station.Key> findChangedKeys(final long since, final long until, final boolean allCountries, final Set<String> countryCodes) {
+        return changes.stream()
+                .filter(change -> change.version > since && change.version <= until)
+                .map(change -> change.key)
+                .filter(key -> allCountries || countryCodes.contains(key.getCountry()))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized long getLatestVersionBefore(final long before) {
+        return changes.stream().filter(change -> change.changedAt < before).mapToLong(change -> change.version).max().orElse(0);
+    }
+
+    @Override
+    public synchronized int deleteUntil(final long version) {
+        final int size = changes.size();
+        changes.removeIf(change -> change.version <= version);
+        return size - changes.size();
+    }
+
+    /**
+     * The logged keys of the given version
+     */
+    public synchronized List<Station.Key> getKeys(final long version) {
+        return changes.stream().filter(change -> change.version == version).map(change -> change.key).collect(Collectors.toList());
+    }
+
+    private static final class Change {
+        private final Station.Key key;
+        private final long version;
+        private final long changedAt;
+
+        private Change(final Station.Key key, final long version, final long changedAt) {
+            this.key = key;
+            this.version = version;
+            this.changedAt = changedAt;
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.railwaystations.api.db;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.Station;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StationMapperTest {
+
+    private final StationDao.StationMapper mapper = new StationDao.StationMapper();
+
+    @Test
+    public void rowsShareThePhotographerAndLicense() throws SQLException {
+        final Station first = mapper.map(createRow("4711", 1, "Jim Knopf", new String("CC0 1.0 Universell (CC0 1.0)")), null);
+        final Station second = mapper.map(createRow("4712", 1, "Jim Knopf", new String("CC0 1.0 Universell (CC0 1.0)")), null);
+
+        assertThat(first.getPhotographer(), is("Jim Knopf"));
+        assertThat(second.getPhotographer(), sameInstance(first.getPhotographer()));
+        assertThat(second.getPhotographerUrl(), sameInstance(first.getPhotographerUrl()));
+        assertThat(second.getLicense(), sameInstance(first.getLicense()));
+    }
+
+    @Test
+    public void renamedPhotographerIsNotShared() throws SQLException {
+        final Station before = mapper.map(createRow("4711", 2, "Lukas", "CC0 1.0 Universell (CC0 1.0)"), null);
+        final Station after = mapper.map(createRow("4711", 2, "Lukas der Lokomotivführer", "CC0 1.0 Universell (CC0 1.0)"), null);
+
+        assertThat(before.getPhotographer(), is("Lukas"));
+        assertThat(after.getPhotographer(), is("Lukas der Lokomotivführer"));
+    }
+
+    @Test
+    public void resultSetsDoNotShareThePhotographer() throws SQLException {
+        final Station first = mapper.specialize(null, null).map(createRow("4711", 3, "Frau Waas", "CC0 1.0 Universell (CC0 1.0)"), null);
+        final Station second = mapper.specialize(null, null).map(createRow("4712", 3, "Frau Waas", "CC0 1.0 Universell (CC0 1.0)"), null);
+
+        assertThat(second.getPhotographer(), is(first.getPhotographer()));
+        assertThat(second.getPhotographer(), not(sameInstance(first.getPhotographer())));
+    }
+
+    private static ResultSet createRow(final String id, final int photographerId, final String name, final String license) throws SQLException {
+        final ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("countryCode")).thenReturn("de");
+        when(rs.getString("id")).thenReturn(id);
+        when(rs.getString("title")).thenReturn("Station " + id);
+        when(rs.getDouble("lat")).thenReturn(50.0);
+        when(rs.getDouble("lon")).thenReturn(9.0);
+        when(rs.getBoolean("active")).thenReturn(true);
+        when(rs.getString("url")).thenReturn("/de/" + id + ".jpg");
+        when(rs.getString("license")).thenReturn(license);
+        when(rs.getLong("createdAt")).thenReturn(1L);
+        when(rs.getInt("photographerId")).thenReturn(photographerId);
+        when(rs.getString("name")).thenReturn(new String(name));
+        when(rs.getString("photographerUrl")).thenReturn(new String("https://example.com/" + photographerId));
+        when(rs.getString("photographerLicense")).thenReturn(license);
+        return rs;
+    }
+
+}
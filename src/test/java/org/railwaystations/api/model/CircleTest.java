@@ -0,0 +1,99 @@
+package org.railwaystations.api.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CircleTest {
+
+    private static final Station.Key TEST_KEY = new Station.Key("", "0");
+
+    @Test
+    public void containsLikeHaversine() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final double lat = random.nextDouble() * 180 - 90;
+            final double lon = random.nextDouble() * 360 - 180;
+            final int radius = random.nextInt(3) == 0 ? random.nextInt(25000) - 100 : random.nextInt(200);
+            final Station station = createStation(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            assertContainsLikeHaversine(new Circle(lat, lon, radius), station, lat, lon, radius);
+        }
+    }
+
+    @Test
+    public void containsLikeHaversineAtBoundary() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final double lat = random.nextDouble() * 170 - 85;
+            final double lon = random.nextDouble() * 360 - 180;
+            final int radius = 1 + random.nextInt(500);
+            final double bearing = random.nextDouble() * 2 * Math.PI;
+            final double distance = radius * (1 + (random.nextDouble() - 0.5) * 1e-12);
+            final Station station = createStation(destination(lat, lon, bearing, distance));
+            assertContainsLikeHaversine(new Circle(lat, lon, radius), station, lat, lon, radius);
+        }
+    }
+
+    @Test
+    public void containsCenterAndFollowsCoordinates() {
+        final Circle circle = new Circle(50.0, 9.0, 1);
+        final Station station = createStation(50.0, 9.0);
+        assertThat(circle.contains(station), is(true));
+        assertThat(new Circle(50.0, 9.0, 0).contains(station), is(false));
+
+        station.setCoordinates(new Coordinates(51.0, 9.0));
+        assertThat(circle.contains(station), is(false));
+        assertThat(new Circle(50.0, 9.0, 112).contains(station), is(true));
+    }
+
+    @Test
+    public void distanceToUnchanged() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final double lat = random.nextDouble() * 180 - 90;
+            final double lon = random.nextDouble() * 360 - 180;
+            final Station station = createStation(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            assertThat(station.distanceTo(lat, lon), is(haversine(station.getCoordinates(), lat, lon)));
+        }
+    }
+
+    private static void assertContainsLikeHaversine(final Circle circle, final Station station, final double lat, final double lon, final int radius) {
+        assertThat(station.getCoordinates().getLat() + "," + station.getCoordinates().getLon() + " within " + radius + " km of " + lat + "," + lon,
+                circle.contains(station), is(haversine(station.getCoordinates(), lat, lon) < radius));
+    }
+
+    /**
+     * The distance calculation before the trigonometry of the station was precomputed
+     */
+    private static double haversine(final Coordinates coordinates, final double latitude, final double longitude) {
+        final double latDistance = Math.toRadians(latitude - coordinates.getLat());
+        final double lonDistance = Math.toRadians(longitude - coordinates.getLon());
+        final double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(coordinates.getLat())) * Math.cos(Math.toRadians(latitude))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        final double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return 6371 * c;
+    }
+
+    private static Coordinates destination(final double lat, final double lon, final double bearing, final double distance) {
+        final double angle = distance / 6371;
+        final double latRadians = Math.toRadians(lat);
+        final double destinationLat = Math.asin(Math.sin(latRadians) * Math.cos(angle)
+                + Math.cos(latRadians) * Math.sin(angle) * Math.cos(bearing));
+        final double destinationLon = Math.toRadians(lon) + Math.atan2(Math.sin(bearing) * Math.sin(angle) * Math.cos(latRadians),
+                Math.cos(angle) - Math.sin(latRadians) * Math.sin(destinationLat));
+        return new Coordinates(Math.toDegrees(destinationLat), Math.toDegrees(destinationLon));
+    }
+
+    private static Station createStation(final double lat, final double lon) {
+        return createStation(new Coordinates(lat, lon));
+    }
+
+    private static Station createStation(final Coordinates coordinates) {
+        return new Station(TEST_KEY, "", coordinates, null, null, true);
+    }
+
+}
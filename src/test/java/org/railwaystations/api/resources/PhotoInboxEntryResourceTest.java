@@ -8,11 +8,11 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.ArgumentCaptor;
 import org.railwaystations.api.MastodonBot;
+import org.railwaystations.api.PendingInboxIndex;
 import org.railwaystations.api.StationsRepository;
 import org.railwaystations.api.auth.AuthUser;
 import org.railwaystations.api.db.CountryDao;
 import org.railwaystations.api.db.InboxDao;
-import org.railwaystations.api.db.PhotoDao;
 import org.railwaystations.api.db.UserDao;
 import org.railwaystations.api.model.*;
 import org.railwaystations.api.monitoring.MockMonitor;
@@ -61,7 +61,6 @@ public class PhotoInboxEntryResourceTest {
         when(userDao.findByEmail("someuser@example.com")).thenReturn(Optional.of(userSomeuser));
         inboxDao = mock(InboxDao.class);
         final CountryDao countryDao = mock(CountryDao.class);
-        final PhotoDao photoDao = mock(PhotoDao.class);
 
         tempDir = Files.createTempDirectory("rsapi");
         final Path photoDir = Files.createTempDirectory("rsapi-photos");
@@ -74,7 +73,7 @@ public class PhotoInboxEntryResourceTest {
 
         resource = new InboxResource(repository, tempDir.toString(), tempDir.resolve( "toprocess").toString(),
                 tempDir.resolve("processed").toString(), photoDir.toString(), monitor, null,
-                inboxDao, userDao, countryDao, photoDao, "http://inbox.railway-stations.org", new MastodonBot());
+                inboxDao, new PendingInboxIndex(inboxDao), userDao, countryDao, "http://inbox.railway-stations.org", new MastodonBot());
     }
 
     private InboxResponse whenPostImage(final String content, final String nickname, final int userId, final String email, final String stationId, final String country,
@@ -168,8 +167,8 @@ public class PhotoInboxEntryResourceTest {
 
     @Test
     public void testPostDuplicateInbox() throws IOException {
-        when(inboxDao.insert(any())).thenReturn(2);
-        when(inboxDao.countPendingInboxEntriesForStation(null, "de", "4711")).thenReturn(1);
+        when(inboxDao.insert(any())).thenReturn(1, 2);
+        whenPostImage("image-content", "@someuser", 10, "someuser@example.com","4711", "de", null, null, null, null);
 
         final InboxResponse response = whenPostImage("image-content", "@nick name", 42, "nickname@example.com","4711", "de", null, null, null, null);
 
@@ -177,7 +176,7 @@ public class PhotoInboxEntryResourceTest {
         assertThat(response.getId(), equalTo(2));
         assertThat(response.getFilename(), equalTo("2.jpg"));
         assertFileWithContentExistsInInbox("image-content", "2.jpg");
-        assertThat(monitor.getMessages().get(0), equalTo("New photo upload for Lummerland - de:4711\n\nhttp://inbox.railway-stations.org/2.jpg (possible duplicate!)\nby @nick name\nvia UserAgent"));
+        assertThat(monitor.getMessages().get(1), equalTo("New photo upload for Lummerland - de:4711\n\nhttp://inbox.railway-stations.org/2.jpg (possible duplicate!)\nby @nick name\nvia UserAgent"));
     }
 
     @Test
@@ -4,6 +4,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.railwaystations.api.StationsRepository;
 import org.railwaystations.api.auth.PasswordUtil;
 import org.railwaystations.api.auth.AuthUser;
 import org.railwaystations.api.db.UserDao;
@@ -29,6 +30,7 @@ public class ProfileResourceTest {
     private MockMailer mailer;
     private ProfileResource resource;
     private UserDao userDao;
+    private StationsRepository repository;
 
     @BeforeEach
     public void setUp() {
@@ -36,7 +38,9 @@ public class ProfileResourceTest {
         mailer = new MockMailer();
         userDao = mock(UserDao.class);
 
-        resource = new ProfileResource(monitor, mailer, userDao, EMAIL_VERIFICATION_URL);
+        repository = mock(StationsRepository.class);
+
+        resource = new ProfileResource(monitor, mailer, userDao, repository, EMAIL_VERIFICATION_URL);
     }
 
     @Test
@@ -192,6 +196,19 @@ public class ProfileResourceTest {
 
         assertThat(response.getStatus(), equalTo(200));
         verify(userDao).update(newProfile);
+        verify(repository).photographerChanged(newProfile);
+    }
+
+    @Test
+    public void testUpdateMyProfileWithoutPhotographerChange() {
+        when(userDao.findByEmail("newname@example.com")).thenReturn(Optional.empty());
+        final User user = new User("existing", "existing@example.com", "CC0", true, "http://twitter.com/", false, null, true);
+        final User newProfile = new User("existing", "newname@example.com", "CC0", true, "http://twitter.com/", false, null, false);
+        final Response response = resource.updateMyProfile("UserAgent", newProfile, new AuthUser(user));
+
+        assertThat(response.getStatus(), equalTo(200));
+        verify(userDao).update(newProfile);
+        verify(repository, never()).photographerChanged(newProfile);
     }
 
     @Test
@@ -3,20 +3,46 @@ package org.railwaystations.api.resources;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.railwaystations.api.StationsRepository;
+import org.railwaystations.api.StationsResponseCache;
+import org.railwaystations.api.db.ChangeDao;
+import org.railwaystations.api.db.CountryDao;
+import org.railwaystations.api.db.SequenceDao;
+import org.railwaystations.api.db.StationDao;
 import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Country;
 import org.railwaystations.api.model.Photo;
 import org.railwaystations.api.model.Station;
 import org.railwaystations.api.model.User;
+import org.railwaystations.api.writer.StationsJsonWriter;
 
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class StationsResourceTest {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private StationsResource resource;
 
     @BeforeEach
@@ -29,17 +55,19 @@ public class StationsResourceTest {
         final Station.Key key3 = new Station.Key("ab", "3");
         stationsAB.put(key3, new Station(key3, "Nimmerland", new Coordinates(40.0, 6.0), "ABC", new Photo(key3, "/fotos/ab/3.jpg", createTestPhotographer("Peter Pan", "photographerUrl2", "CC0 by SA"), null, "CC0 by SA"), true));
 
-        final Map<Station.Key, Station> stationsAll = new HashMap<>(2);
-        stationsAll.putAll(stationsAB);
-        stationsAll.putAll(stationsXY);
+        final Set<Station> stationsAll = new HashSet<>(2);
+        stationsAll.addAll(stationsAB.values());
+        stationsAll.addAll(stationsXY.values());
 
-        final StationsRepository repository = Mockito.mock(StationsRepository.class);
-        Mockito.when(repository.getStationsByCountry(Collections.singleton("xy"))).thenReturn(stationsXY);
-        Mockito.when(repository.getStationsByCountry(Collections.singleton("ab"))).thenReturn(stationsAB);
-        Mockito.when(repository.getStationsByCountry(null)).thenReturn(stationsAll);
-        Mockito.when(repository.getStationsByCountry(allCountries())).thenReturn(stationsAll);
+        final CountryDao countryDao = Mockito.mock(CountryDao.class);
+        Mockito.when(countryDao.list(true)).thenReturn(Set.of(new Country("ab"), new Country("xy")));
+        final StationDao stationDao = Mockito.mock(StationDao.class);
+        Mockito.when(stationDao.all()).thenReturn(stationsAll);
 
-        resource = new StationsResource(repository);
+        final StationsRepository repository = new StationsRepository(countryDao, stationDao, Mockito.mock(ChangeDao.class),
+                Mockito.mock(SequenceDao.class));
+        resource = new StationsResource(repository, new StationsResponseCache(repository,
+                Map.of(MediaType.APPLICATION_JSON_TYPE, new StationsJsonWriter(MAPPER)), 1024 * 1024));
     }
 
     private Set<String> allCountries() {
@@ -51,7 +79,7 @@ public class StationsResourceTest {
 
     @Test
     public void testGetXY() {
-        final List<Station> resultXY = resource.get(Collections.singleton("xy"), null, null, null, null, null, null);
+        final List<Station> resultXY = get(Collections.singleton("xy"), null, null, null, null, null, null, null, null, null, null);
         final Station stationXY = resultXY.get(0);
         assertThat(stationXY, notNullValue());
         assertThat(stationXY.getKey(), equalTo(new Station.Key("xy", "5")));
@@ -68,20 +96,20 @@ public class StationsResourceTest {
 
     @Test
     public void testGetXYWithFilterActive() {
-        final List<Station> resultXY = resource.get(Collections.singleton("xy"), null, null, null, null, null, true);
+        final List<Station> resultXY = get(Collections.singleton("xy"), null, null, null, null, null, true, null, null, null, null);
         assertThat(resultXY.isEmpty(), equalTo(true));
     }
 
     @Test
     public void testGetAB() {
-        final List<Station> resultAB = resource.get(Collections.singleton("ab"), null, null, null, null, null, null);
+        final List<Station> resultAB = get(Collections.singleton("ab"), null, null, null, null, null, null, null, null, null, null);
         final Station station = resultAB.get(0);
         assertNimmerland(station);
     }
 
     @Test
     public void testGetABXY() {
-        final List<Station> resultAB = resource.get(allCountries(), null, null, null, null, null, null);
+        final List<Station> resultAB = get(allCountries(), null, null, null, null, null, null, null, null, null, null);
         assertThat(resultAB.size(), equalTo(2));
     }
 
@@ -101,16 +129,147 @@ public class StationsResourceTest {
 
     @Test
     public void testGetById() {
-        final Station station = resource.getById("ab", "3");
-        assertNimmerland(station);
+        final Response response = resource.getById("ab", "3", Mockito.mock(Request.class));
+        assertThat(response.getStatus(), equalTo(200));
+        assertThat(response.getEntityTag(), notNullValue());
+        assertNimmerland((Station) response.getEntity());
+    }
+
+    @Test
+    public void testGetByIdNotModified() {
+        final Request request = Mockito.mock(Request.class);
+        Mockito.when(request.evaluatePreconditions(Mockito.any(EntityTag.class))).thenReturn(Response.notModified());
+        assertThat(resource.getById("ab", "3", request).getStatus(), equalTo(304));
+    }
+
+    @Test
+    public void testGetByIdUnknown() {
+        assertThrows(WebApplicationException.class, () -> resource.getById("ab", "4", Mockito.mock(Request.class)));
     }
 
     @Test
     public void testGetAll() {
-        final List<Station> resultAll = resource.get(null, null, null, null, null, null, null);
+        final List<Station> resultAll = get(null, null, null, null, null, null, null, null, null, null, null);
         assertThat(resultAll.size(), equalTo(2));
     }
 
+    @Test
+    public void testGetWithinBoundingBox() {
+        final List<Station> result = get(null, null, null, null, null, null, null, 39.5, 40.5, 5.5, 6.5);
+        assertThat(result.size(), equalTo(1));
+        assertNimmerland(result.get(0));
+    }
+
+    @Test
+    public void testGetUnknownCountry() {
+        assertThrows(WebApplicationException.class, () -> get(Collections.singleton("zz"), null, null, null, null, null, null, null, null, null, null));
+    }
+
+    @Test
+    public void testGetGzippedFromCache() {
+        final HttpHeaders headers = Mockito.mock(HttpHeaders.class);
+        Mockito.when(headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip, deflate");
+        final Response plain = resource.get(null, null, null, null, null, null, null, null, null, null, null, null, null,
+                Mockito.mock(Request.class), Mockito.mock(HttpHeaders.class), Mockito.mock(UriInfo.class));
+        final Response gzipped = resource.get(null, null, null, null, null, null, null, null, null, null, null, null, null,
+                Mockito.mock(Request.class), headers, Mockito.mock(UriInfo.class));
+
+        assertThat(gzipped.getHeaderString(HttpHeaders.CONTENT_ENCODING), equalTo("gzip"));
+        assertThat(plain.getHeaderString(HttpHeaders.CONTENT_ENCODING), nullValue());
+        assertThat(gzipped.getEntityTag(), not(equalTo(plain.getEntityTag())));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetStreamedWithoutSnapshot() {
+        final Station.Key key = new Station.Key("ab", "3");
+        final StationDao stationDao = Mockito.mock(StationDao.class);
+        Mockito.when(stationDao.countStations(false, Set.of("ab"))).thenReturn(1);
+        Mockito.when(stationDao.findByFilter(Mockito.eq(false), Mockito.eq(Set.of("ab")), Mockito.eq(false), Mockito.any(),
+                Mockito.any(), Mockito.any(), Mockito.any()))
+                .thenReturn(Stream.of(new Station(key, "Nimmerland", new Coordinates(40.0, 6.0), null, true)));
+        final StationsRepository repository = new StationsRepository(Mockito.mock(CountryDao.class), stationDao,
+                Mockito.mock(ChangeDao.class), Mockito.mock(SequenceDao.class), false);
+        final StationsResponseCache responseCache = Mockito.mock(StationsResponseCache.class);
+        final StationsResource databaseResource = new StationsResource(repository, responseCache);
+
+        final Response response = databaseResource.get(Collections.singleton("ab"), null, null, null, null, null, null, null, null, null, null,
+                null, null, Mockito.mock(Request.class), Mockito.mock(HttpHeaders.class), Mockito.mock(UriInfo.class));
+
+        assertThat(((Stream<Station>) response.getEntity()).map(Station::getKey).collect(Collectors.toList()), equalTo(List.of(key)));
+        assertThat(response.getEntityTag(), nullValue());
+        Mockito.verifyNoInteractions(responseCache);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetPaged() {
+        final UriInfo uriInfo = Mockito.mock(UriInfo.class);
+        Mockito.when(uriInfo.getRequestUriBuilder()).thenAnswer(invocation -> UriBuilder.fromUri("http://localhost/stations?limit=1"));
+        final Response first = resource.get(null, null, null, null, null, null, null, null, null, null, null, 1, null,
+                Mockito.mock(Request.class), Mockito.mock(HttpHeaders.class), uriInfo);
+        final List<Station> firstPage = ((Stream<Station>) first.getEntity()).collect(Collectors.toList());
+        assertThat(firstPage.size(), equalTo(1));
+        assertNimmerland(firstPage.get(0));
+        final Link next = first.getLink("next");
+        assertThat(next, notNullValue());
+
+        final String cursor = cursorOf(next);
+        final Response second = resource.get(null, null, null, null, null, null, null, null, null, null, null, 1, cursor,
+                Mockito.mock(Request.class), Mockito.mock(HttpHeaders.class), uriInfo);
+        final List<Station> secondPage = ((Stream<Station>) second.getEntity()).collect(Collectors.toList());
+        assertThat(secondPage.size(), equalTo(1));
+        assertThat(secondPage.get(0).getKey(), equalTo(new Station.Key("xy", "5")));
+        assertThat(second.getLink("next"), notNullValue());
+
+        final Response third = resource.get(null, null, null, null, null, null, null, null, null, null, null, 1,
+                cursorOf(second.getLink("next")),
+                Mockito.mock(Request.class), Mockito.mock(HttpHeaders.class), uriInfo);
+        assertThat(((Stream<Station>) third.getEntity()).count(), equalTo(0L));
+        assertThat(third.getLink("next"), nullValue());
+    }
+
+    private String cursorOf(final Link link) {
+        return Arrays.stream(link.getUri().getQuery().split("&"))
+                .filter(param -> param.startsWith("cursor="))
+                .map(param -> param.substring("cursor=".length()))
+                .findFirst().orElse(null);
+    }
+
+    @Test
+    public void testGetInvalidCursor() {
+        assertThrows(WebApplicationException.class, () -> resource.get(null, null, null, null, null, null, null, null, null, null, null, 10, "%%%",
+                Mockito.mock(Request.class), Mockito.mock(HttpHeaders.class), Mockito.mock(UriInfo.class)));
+    }
+
+    @Test
+    public void testGetNotModified() {
+        final Request request = Mockito.mock(Request.class);
+        Mockito.when(request.evaluatePreconditions(Mockito.any(EntityTag.class))).thenReturn(Response.notModified());
+        final Response response = resource.get(Collections.singleton("ab"), null, null, null, null, null, null, null, null, null, null, null, null,
+                request, Mockito.mock(HttpHeaders.class), Mockito.mock(UriInfo.class));
+        assertThat(response.getStatus(), equalTo(304));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Station> get(final Set<String> countries, final Boolean hasPhoto, final String photographer, final Integer maxDistance,
+                              final Double lat, final Double lon, final Boolean active, final Double minLat, final Double maxLat,
+                              final Double minLon, final Double maxLon) {
+        final Response response = resource.get(countries, hasPhoto, photographer, maxDistance, lat, lon, active, minLat, maxLat, minLon, maxLon,
+                null, null, Mockito.mock(Request.class), Mockito.mock(HttpHeaders.class), Mockito.mock(UriInfo.class));
+        assertThat(response.getStatus(), equalTo(200));
+        if (response.getEntity() instanceof byte[]) {
+            try {
+                return Arrays.asList(MAPPER.readValue((byte[]) response.getEntity(), Station[].class));
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        try (Stream<Station> stations = (Stream<Station>) response.getEntity()) {
+            return stations.collect(Collectors.toList());
+        }
+    }
+
     private User createTestPhotographer(final String name, final String url, final String license) {
         return new User(name, url, license, 0, null, true, false, null, null, false, null, true);
     }
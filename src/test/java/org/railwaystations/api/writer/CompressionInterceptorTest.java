@@ -0,0 +1,157 @@
+package org.railwaystations.api.writer;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CompressionInterceptorTest {
+
+    private static final int THRESHOLD = 1024;
+
+    @Test
+    public void quality() {
+        assertThat(CompressionInterceptor.quality("gzip, deflate", "gzip"), is(1.0));
+        assertThat(CompressionInterceptor.quality("deflate, GZIP;q=0.5", "gzip"), is(0.5));
+        assertThat(CompressionInterceptor.quality("gzip;q=0, *", "gzip"), is(0.0));
+        assertThat(CompressionInterceptor.quality("br, *;q=0.2", "deflate"), is(0.2));
+        assertThat(CompressionInterceptor.quality("gzip;q=x", "gzip"), is(0.0));
+        assertThat(CompressionInterceptor.quality("identity", "gzip"), is(0.0));
+        assertThat(CompressionInterceptor.quality(null, "gzip"), is(0.0));
+    }
+
+    @Test
+    public void negotiate() {
+        assertThat(CompressionInterceptor.negotiate("gzip, deflate"), is("gzip"));
+        assertThat(CompressionInterceptor.negotiate("gzip;q=0.5, deflate"), is("deflate"));
+        assertThat(CompressionInterceptor.negotiate("deflate"), is("deflate"));
+        assertThat(CompressionInterceptor.negotiate("*"), is("gzip"));
+        assertThat(CompressionInterceptor.negotiate("br, identity"), nullValue());
+        assertThat(CompressionInterceptor.negotiate(null), nullValue());
+    }
+
+    @Test
+    public void gzipRoundTrip() throws IOException {
+        final byte[] entity = entity(1000);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final MultivaluedMap<String, Object> headers = intercept(CompressionInterceptor.GZIP, out, stream -> stream.write(entity));
+
+        assertThat(headers.getFirst("Content-Encoding"), is("gzip"));
+        try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(in.readAllBytes(), is(entity));
+        }
+    }
+
+    @Test
+    public void deflateRoundTrip() throws IOException {
+        final byte[] entity = entity(1000);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final MultivaluedMap<String, Object> headers = intercept(CompressionInterceptor.DEFLATE, out, stream -> {
+            for (final byte b : entity) {
+                stream.write(b);
+            }
+        });
+
+        assertThat(headers.getFirst("Content-Encoding"), is("deflate"));
+        try (final InputStream in = new InflaterInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(in.readAllBytes(), is(entity));
+        }
+    }
+
+    @Test
+    public void belowThresholdUncompressed() throws IOException {
+        final byte[] entity = entity(10);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final MultivaluedMap<String, Object> headers = intercept(CompressionInterceptor.GZIP, out, stream -> {
+            stream.write(entity);
+            stream.flush();
+        });
+
+        assertThat(headers.getFirst("Content-Encoding"), nullValue());
+        assertThat(out.toByteArray(), is(entity));
+    }
+
+    @Test
+    public void flushHandsOutEverythingWritten() throws IOException {
+        final byte[] first = entity(10);
+        final byte[] second = entity(100);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        intercept(CompressionInterceptor.GZIP, out, stream -> {
+            stream.write(first);
+            stream.flush();
+            // still buffered below the threshold
+            assertThat(out.size(), is(0));
+
+            stream.write(second);
+            stream.flush();
+            try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+                assertThat(in.readNBytes(first.length + second.length), is(concat(first, second)));
+            }
+        });
+
+        try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(in.readAllBytes(), is(concat(first, second)));
+        }
+    }
+
+    private static MultivaluedMap<String, Object> intercept(final String encoding, final OutputStream out,
+                                                            final EntityWriter writer) throws IOException {
+        final WriterInterceptorContext context = mock(WriterInterceptorContext.class);
+        final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        final AtomicReference<OutputStream> stream = new AtomicReference<>(out);
+        when(context.getProperty(anyString())).thenReturn(encoding);
+        when(context.getHeaders()).thenReturn(headers);
+        when(context.getOutputStream()).thenAnswer(invocation -> stream.get());
+        doAnswer(invocation -> {
+            stream.set(invocation.getArgument(0));
+            return null;
+        }).when(context).setOutputStream(any());
+        doAnswer(invocation -> {
+            writer.write(stream.get());
+            return null;
+        }).when(context).proceed();
+
+        new CompressionInterceptor(THRESHOLD, new MetricRegistry()).aroundWriteTo(context);
+        return headers;
+    }
+
+    private static byte[] entity(final int lines) {
+        final StringBuilder entity = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            entity.append("{\"country\":\"de\",\"idStr\":\"").append(i).append("\",\"title\":\"Station ").append(i).append("\"}\n");
+        }
+        return entity.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        final byte[] bytes = new byte[first.length + second.length];
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+    private interface EntityWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+}
@@ -0,0 +1,156 @@
+package org.railwaystations.api.writer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.railwaystations.api.writer.StationsBinaryWriter.ACTIVE;
+import static org.railwaystations.api.writer.StationsBinaryWriter.COORDINATE_SCALE;
+import static org.railwaystations.api.writer.StationsBinaryWriter.HAS_CREATED_AT;
+import static org.railwaystations.api.writer.StationsBinaryWriter.HAS_DS100;
+import static org.railwaystations.api.writer.StationsBinaryWriter.HAS_PHOTO;
+import static org.railwaystations.api.writer.StationsBinaryWriter.HAS_TITLE;
+import static org.railwaystations.api.writer.StationsBinaryWriter.MAGIC;
+import static org.railwaystations.api.writer.StationsBinaryWriter.NUMERIC_ID;
+import static org.railwaystations.api.writer.StationsBinaryWriter.RECORD;
+import static org.railwaystations.api.writer.StationsBinaryWriter.VERSION;
+
+/**
+ * Reference decoder of the {@link StationsBinaryWriter} format, as a blueprint for client implementations
+ */
+public class StationsBinaryDecoder {
+
+    private final ByteBuffer in;
+    private final List<String> dictionary = new ArrayList<>();
+    private long lastId;
+    private long lastLat;
+    private long lastLon;
+
+    public StationsBinaryDecoder(final byte[] bytes) {
+        this.in = ByteBuffer.wrap(bytes);
+    }
+
+    public List<Record> decode() throws IOException {
+        final byte[] magic = readBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC) || readByte() != VERSION) {
+            throw new IOException("Unsupported format");
+        }
+        final List<Record> records = new ArrayList<>();
+        int flags = readByte();
+        while (flags != 0) {
+            records.add(readRecord(flags));
+            flags = readByte();
+        }
+        return records;
+    }
+
+    private Record readRecord(final int flags) throws IOException {
+        if ((flags & RECORD) == 0) {
+            throw new IOException("Invalid record flags " + flags);
+        }
+        final Record record = new Record();
+        record.active = (flags & ACTIVE) != 0;
+        record.country = readReference();
+        if ((flags & NUMERIC_ID) != 0) {
+            lastId += readSigned();
+            record.id = Long.toString(lastId);
+        } else {
+            record.id = readString();
+        }
+        if ((flags & HAS_TITLE) != 0) {
+            record.title = readString();
+        }
+        lastLat += readSigned();
+        lastLon += readSigned();
+        record.lat = lastLat / COORDINATE_SCALE;
+        record.lon = lastLon / COORDINATE_SCALE;
+        if ((flags & HAS_DS100) != 0) {
+            record.ds100 = readString();
+        }
+        if ((flags & HAS_PHOTO) != 0) {
+            record.photographer = readReference();
+            record.photographerUrl = readReference();
+            record.photoUrl = readReference() + readString();
+            record.license = readReference();
+            record.licenseUrl = readReference();
+            if ((flags & HAS_CREATED_AT) != 0) {
+                record.createdAt = readSigned();
+            }
+        }
+        return record;
+    }
+
+    private String readReference() throws IOException {
+        final int reference = (int) readUnsigned();
+        if (reference == 0) {
+            return null;
+        }
+        if (reference == dictionary.size() + 1) {
+            dictionary.add(readString());
+        }
+        return dictionary.get(reference - 1);
+    }
+
+    private String readString() throws IOException {
+        final int length = (int) readUnsigned();
+        if (in.remaining() < length) {
+            throw new IOException("Unexpected end of stream");
+        }
+        final String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private byte[] readBytes(final int length) throws IOException {
+        if (in.remaining() < length) {
+            throw new IOException("Unexpected end of stream");
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private long readSigned() throws IOException {
+        final long value = readUnsigned();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readUnsigned() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private int readByte() throws IOException {
+        if (!in.hasRemaining()) {
+            throw new IOException("Unexpected end of stream");
+        }
+        return in.get() & 0xFF;
+    }
+
+    public static final class Record {
+        public String country;
+        public String id;
+        public String title;
+        public double lat;
+        public double lon;
+        public String ds100;
+        public boolean active;
+        public String photographer;
+        public String photographerUrl;
+        public String photoUrl;
+        public String license;
+        public String licenseUrl;
+        public Long createdAt;
+    }
+
+}
@@ -0,0 +1,129 @@
+package org.railwaystations.api.writer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Photo;
+import org.railwaystations.api.model.Station;
+import org.railwaystations.api.model.User;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class StationsBinaryWriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void roundTrip() throws IOException {
+        final User photographer = new User("@khgdrn", "https://example.com/khgdrn", "CC0", 0, null, true, false, null, null, false, null, true);
+        final Photo photo = new Photo(new Station.Key("de", "4711"), "https://api.railway-stations.org/photos/de/4711.jpg",
+                photographer, 1500000000000L, "CC0 1.0 Universell (CC0 1.0)");
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        final List<Station> stations = List.of(
+                new Station(new Station.Key("de", "4711"), "Lummerland", new Coordinates(50.1234567, 9.7654321), "LL", photo, true),
+                new Station(new Station.Key("de", "42"), "Nimmerland", new Coordinates(-33.5, -70.25), null, null, false),
+                new Station(new Station.Key("ch", "Z12"), "Zürich Süd", new Coordinates(47.37, 8.54), null, null, true),
+                new Station(new Station.Key("ch", "Z13"), null, new Coordinates(47.38, 8.55), null, null, true),
+                new Station(new Station.Key("de", "0815"), "Leading Zero", new Coordinates(51.0, 7.0), null, photo, true));
+
+        final List<StationsBinaryDecoder.Record> records = decode(write(stations.stream().onClose(() -> closed.set(true))));
+
+        assertThat(closed.get(), is(true));
+        assertThat(records.size(), is(stations.size()));
+        for (int i = 0; i < stations.size(); i++) {
+            final Station station = stations.get(i);
+            final StationsBinaryDecoder.Record record = records.get(i);
+            assertThat(record.country, is(station.getKey().getCountry()));
+            assertThat(record.id, is(station.getKey().getId()));
+            assertThat(record.title, is(station.getTitle()));
+            assertThat(record.lat, closeTo(station.getCoordinates().getLat(), 1e-7));
+            assertThat(record.lon, closeTo(station.getCoordinates().getLon(), 1e-7));
+            assertThat(record.ds100, is(station.getDS100()));
+            assertThat(record.active, is(station.isActive()));
+            assertThat(record.photographer, is(station.getPhotographer()));
+            assertThat(record.photographerUrl, is(station.getPhotographerUrl()));
+            assertThat(record.photoUrl, is(station.getPhotoUrl()));
+            assertThat(record.license, is(station.getLicense()));
+            assertThat(record.licenseUrl, is(station.getLicenseUrl()));
+            assertThat(record.createdAt, is(station.getCreatedAt()));
+        }
+    }
+
+    @Test
+    public void writeEmpty() throws IOException {
+        final byte[] bytes = write(Stream.empty());
+
+        assertThat(bytes.length, is(StationsBinaryWriter.MAGIC.length + 2));
+        assertThat(decode(bytes).isEmpty(), is(true));
+    }
+
+    /**
+     * The throughput compared to JSON is measured by the StationsWriterBenchmark and StationsReaderBenchmark
+     */
+    @Test
+    public void smallerThanJson() throws IOException {
+        final List<Station> stations = loadScaledTestStations(50);
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        new StationsJsonWriter(MAPPER).writeTo(stations.stream(), null, null, null, null, null, json);
+        final byte[] binary = write(stations.stream());
+
+        assertThat(decode(binary).size(), is(stations.size()));
+        assertThat(MAPPER.readTree(json.toByteArray()).size(), is(stations.size()));
+        assertThat(binary.length, lessThan(json.size() / 3));
+    }
+
+    private static byte[] write(final Stream<Station> stations) throws IOException {
+        final ByteArrayOutputStream entityStream = new ByteArrayOutputStream();
+        new StationsBinaryWriter().writeTo(stations, null, null, null, null, null, entityStream);
+        return entityStream.toByteArray();
+    }
+
+    private static List<StationsBinaryDecoder.Record> decode(final byte[] bytes) throws IOException {
+        return new StationsBinaryDecoder(bytes).decode();
+    }
+
+    /**
+     * Copies of the stations in test_stations.csv with distinct ids, every other one with a photo of one of ten photographers
+     */
+    private static List<Station> loadScaledTestStations(final int copies) throws IOException {
+        final List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                StationsBinaryWriterTest.class.getResourceAsStream("/test_stations.csv"), StandardCharsets.UTF_8))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                rows.add(line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)"));
+            }
+        }
+        final List<User> photographers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            photographers.add(new User("photographer" + i, "https://example.com/" + i, "CC0", i, null, true, false, null, null, false, null, true));
+        }
+        final List<Station> stations = new ArrayList<>(rows.size() * copies);
+        for (int copy = 0; copy < copies; copy++) {
+            for (final String[] row : rows) {
+                final String id = row[1].matches("\\d+") ? String.valueOf(Long.parseLong(row[1]) + copy * 100_000_000L) : row[1] + "_" + copy;
+                final Station.Key key = new Station.Key(row[0], id);
+                final Photo photo = stations.size() % 2 == 0 ? new Photo(key, "https://api.railway-stations.org/photos/" + row[0] + "/" + id + ".jpg",
+                        photographers.get(stations.size() % 10), 1500000000000L + stations.size(), "CC0 1.0 Universell (CC0 1.0)") : null;
+                stations.add(new Station(key, row[5].replace("\"", ""), new Coordinates(Double.parseDouble(row[6]), Double.parseDouble(row[7])),
+                        "NULL".equals(row[4]) ? null : row[4], photo, true));
+            }
+        }
+        return stations;
+    }
+
+}
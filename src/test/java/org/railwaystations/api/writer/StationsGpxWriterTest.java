@@ -23,7 +23,7 @@ public class StationsGpxWriterTest {
 		
 		final StationsGpxWriter writer = new StationsGpxWriter();
 		final ByteArrayOutputStream entityStream = new ByteArrayOutputStream();
-		writer.writeTo(stations, null, null, null, null, null, entityStream);
+		writer.writeTo(stations.stream(), null, null, null, null, null, entityStream);
 		
 		final String gpx = entityStream.toString(StandardCharsets.UTF_8);
 		assertThat(gpx,
@@ -0,0 +1,50 @@
+package org.railwaystations.api.writer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.Coordinates;
+import org.railwaystations.api.model.Station;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StationsJsonWriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testWriteTo() throws IOException {
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        final Stream<Station> stations = Stream.of(
+                new Station(new Station.Key("de", "4711"), "Test", new Coordinates(50d, 9d), null, null, true),
+                new Station(new Station.Key("de", "4712"), "Foo", new Coordinates(51d, 8d), null, null, false))
+                .onClose(() -> closed.set(true));
+
+        final StationsJsonWriter writer = new StationsJsonWriter(MAPPER);
+        final ByteArrayOutputStream entityStream = new ByteArrayOutputStream();
+        writer.writeTo(stations, null, null, null, null, null, entityStream);
+
+        final JsonNode json = MAPPER.readTree(entityStream.toByteArray());
+        assertThat(json.isArray(), is(true));
+        assertThat(json.size(), is(2));
+        assertThat(json.get(0).get("title").asText(), is("Test"));
+        assertThat(json.get(1).get("idStr").asText(), is("4712"));
+        assertThat(json.get(1).get("active").asBoolean(), is(false));
+        assertThat(closed.get(), is(true));
+    }
+
+    @Test
+    public void testWriteEmpty() throws IOException {
+        final ByteArrayOutputStream entityStream = new ByteArrayOutputStream();
+        new StationsJsonWriter(MAPPER).writeTo(Stream.empty(), null, null, null, null, null, entityStream);
+
+        assertThat(entityStream.toString(), is("[]"));
+    }
+
+}
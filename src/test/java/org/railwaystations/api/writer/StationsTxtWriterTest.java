@@ -26,7 +26,7 @@ public class StationsTxtWriterTest {
 
         final StationsTxtWriter writer = new StationsTxtWriter();
         final ByteArrayOutputStream entityStream = new ByteArrayOutputStream();
-        writer.writeTo(stations, null, null, null, null, null, entityStream);
+        writer.writeTo(stations.stream(), null, null, null, null, null, entityStream);
 
         final String txt = entityStream.toString(StandardCharsets.UTF_8);
         final String[] lines = txt.split("\n");
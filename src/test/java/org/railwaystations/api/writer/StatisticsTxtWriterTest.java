@@ -0,0 +1,28 @@
+package org.railwaystations.api.writer;
+
+import org.junit.jupiter.api.Test;
+import org.railwaystations.api.model.Statistic;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class StatisticsTxtWriterTest {
+
+    @Test
+    public void test() {
+        final Statistic[] statistics = {new Statistic("ch", 800, 300, 12), new Statistic("de", 1500, 500, 20)};
+
+        final ByteArrayOutputStream entityStream = new ByteArrayOutputStream();
+        new StatisticsTxtWriter().writeTo(statistics, null, null, null, null, null, entityStream);
+
+        final String[] lines = entityStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines.length, is(3));
+        assertThat(lines[0], is("countryCode\ttotal\twithPhoto\twithoutPhoto\tphotographers"));
+        assertThat(lines[1], is("ch\t800\t300\t500\t12"));
+        assertThat(lines[2], is("de\t1500\t500\t1000\t20"));
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.railwaystations.api.writer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class Utf8WriterTest {
+
+    @Test
+    public void coordinates() {
+        assertThat(write(50.0), is("50.0"));
+        assertThat(write(-8.5), is("-8.5"));
+        assertThat(write(49.0065325041363), is("49.0065325"));
+        assertThat(write(0.00001), is("0.00001"));
+        assertThat(write(-0.0000001), is("-0.0000001"));
+        assertThat(write(179.99999999), is("180.0"));
+        assertThat(write(Double.NaN), is("NaN"));
+    }
+
+    @Test
+    public void coordinatesRoundTripToSevenDecimals() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            final double degrees = (random.nextDouble() - 0.5) * 360;
+            assertThat(Math.abs(Double.parseDouble(write(degrees)) - degrees) <= 0.5e-7, is(true));
+        }
+    }
+
+    @Test
+    public void textAsUtf8() {
+        final String text = "Bahnhof Zürich – 🚂 \"<&>\"";
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Utf8Writer writer = new Utf8Writer(out);
+        writer.write(text).write('|').writeXml(text);
+        writer.flush();
+
+        assertThat(out.toString(StandardCharsets.UTF_8),
+                is(text + "|Bahnhof Zürich – 🚂 &quot;&lt;&amp;&gt;&quot;"));
+    }
+
+    @Test
+    public void longerThanBuffer() {
+        final String text = "Bahnhöfe ".repeat(2000);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Utf8Writer writer = new Utf8Writer(out);
+        writer.write(Utf8Writer.ascii("x".repeat(10000))).write(text);
+        writer.flush();
+
+        assertThat(out.toString(StandardCharsets.UTF_8), is("x".repeat(10000) + text));
+    }
+
+    private static String write(final double degrees) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final Utf8Writer writer = new Utf8Writer(out);
+        writer.writeCoordinate(degrees);
+        writer.flush();
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+}